@@ -0,0 +1,95 @@
+#!/bin/sh
+
+# Compares order creation in the Cart Demo service with one transaction per request and with group commit,
+# printing throughput, latency and the number of transactions committed by PostgreSQL during each run.
+# Requires Java 21 and Docker.
+
+POSTGRES_IMAGE="postgres:18-alpine"
+POSTGRES_CONTAINER="epieffe-cart-demo-benchmark-postgres"
+
+CLIENTS="${CLIENTS:-200 1000}"
+DURATION="${DURATION:-60}"
+WARMUP="${WARMUP:-20}"
+ORDER_RATIO="${ORDER_RATIO:-1.0}"
+
+set -e
+
+APP_PID=""
+
+cleanup() {
+    echo ""
+    if [ -n "$APP_PID" ]; then
+        echo "Shutting down Cart Demo service..."
+        kill $APP_PID >/dev/null 2>&1 || true
+    fi
+    echo "Shutting down $POSTGRES_CONTAINER container..."
+    docker stop $POSTGRES_CONTAINER >/dev/null 2>&1 || true
+    echo "Done"
+}
+
+trap cleanup EXIT INT
+
+# Retrieve the absolute path of this script's directory
+SCRIPT_PATH="$0"
+case "$SCRIPT_PATH" in
+    /*) SCRIPT_PATH="$SCRIPT_PATH" ;;
+    *) SCRIPT_PATH="$(pwd)/$SCRIPT_PATH" ;;
+esac
+SCRIPT_DIR="$(dirname "$SCRIPT_PATH")"
+PROJECT_DIR="$(cd "$SCRIPT_DIR/.." 2>/dev/null && pwd)"
+
+cd "$PROJECT_DIR"
+
+echo "Building Cart Demo service..."
+./mvnw -q -e package -DskipTests
+./mvnw -q -e test-compile
+
+# Start Postgresql container, using the same port as the local profile
+echo "Starting Postgresql Docker container..."
+docker run -d \
+    --name $POSTGRES_CONTAINER \
+    --rm \
+    -e POSTGRES_USER=postgres \
+    -e POSTGRES_PASSWORD=mypassword \
+    -e POSTGRES_DB=cart-demo \
+    -p 15432:5432 \
+    $POSTGRES_IMAGE
+
+commits() {
+    docker exec $POSTGRES_CONTAINER psql -U postgres -d cart-demo -tA \
+        -c "SELECT xact_commit FROM pg_stat_database WHERE datname = 'cart-demo'"
+}
+
+for MODE in per-request group-commit; do
+    GROUP_COMMIT="false"
+    if [ "$MODE" = "group-commit" ]; then
+        GROUP_COMMIT="true"
+    fi
+
+    echo "Starting Cart Demo service with $MODE..."
+    java -jar target/cart-demo.jar \
+        --spring.profiles.active=local \
+        --cart.orders.group-commit.enabled=$GROUP_COMMIT \
+        --logging.level.dev.epieffe.demo.cart=WARN \
+        --logging.level.sql=WARN \
+        > "target/benchmark-$MODE.log" 2>&1 &
+    APP_PID=$!
+
+    until curl -sf http://127.0.0.1:8081/actuator/health >/dev/null; do
+        sleep 1
+    done
+
+    for N in $CLIENTS; do
+        echo "Running benchmark with $MODE and $N clients..."
+        BEFORE=$(commits)
+        ./mvnw -q exec:java -Dexec.classpathScope=test \
+            -Dexec.mainClass=dev.epieffe.demo.cart.LoadBenchmark \
+            -Dexec.args="--url=http://127.0.0.1:8080 --clients=$N --duration=$DURATION --warmup=$WARMUP --order-ratio=$ORDER_RATIO --label=$MODE"
+        AFTER=$(commits)
+        echo "Transactions committed (including warmup): $((AFTER - BEFORE))"
+    done
+
+    kill $APP_PID
+    wait $APP_PID 2>/dev/null || true
+    APP_PID=""
+done
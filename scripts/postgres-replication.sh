@@ -0,0 +1,5 @@
+#!/bin/sh
+
+# Run by the PostgreSQL container on its first start, lets the read replica of the Docker Compose "replica"
+# profile stream the write-ahead log from the primary.
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
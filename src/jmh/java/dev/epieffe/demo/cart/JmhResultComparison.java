@@ -0,0 +1,88 @@
+package dev.epieffe.demo.cart;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Compares two JMH result files written in JSON, for example by two runs on different commits, printing the
+ * change in time and in allocated bytes per operation of each benchmark. Changes larger than the sum of the
+ * two score errors are marked with an asterisk.
+ * <p>
+ * Run with:
+ * <pre>
+ * ./mvnw -Pjmh test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=dev.epieffe.demo.cart.JmhResultComparison -Dexec.args="baseline.json target/jmh-result.json"
+ * </pre>
+ */
+public class JmhResultComparison {
+
+	private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.err.println("Usage: JmhResultComparison <baseline.json> <current.json>");
+			System.exit(2);
+		}
+		var mapper = JsonMapper.builder().build();
+		Map<String, JsonNode> baseline = byName(mapper.readTree(new File(args[0])));
+		Map<String, JsonNode> current = byName(mapper.readTree(new File(args[1])));
+		System.out.printf("%-70s %12s %12s %8s %12s %12s %8s%n",
+				"benchmark", "baseline", "current", "change", "base B/op", "B/op", "change");
+		current.forEach((name, result) -> {
+			JsonNode base = baseline.get(name);
+			double score = result.at("/primaryMetric/score").asDouble();
+			double bytes = allocation(result);
+			if (base == null) {
+				System.out.printf("%-70s %12s %12.3f %8s %12s %12.0f %8s%n", name, "-", score, "new", "-", bytes, "new");
+				return;
+			}
+			double baseScore = base.at("/primaryMetric/score").asDouble();
+			double error = base.at("/primaryMetric/scoreError").asDouble(0) + result.at("/primaryMetric/scoreError").asDouble(0);
+			boolean significant = Math.abs(score - baseScore) > error;
+			double baseBytes = allocation(base);
+			System.out.printf("%-70s %12.3f %12.3f %7.1f%%%s %12.0f %12.0f %7.1f%%%n",
+					name, baseScore, score, change(baseScore, score), significant ? "*" : " ",
+					baseBytes, bytes, change(baseBytes, bytes));
+		});
+		baseline.keySet().stream()
+				.filter(name -> !current.containsKey(name))
+				.forEach(name -> System.out.printf("%-70s only in baseline%n", name));
+	}
+
+	/**
+	 * Results keyed by benchmark name and parameters.
+	 */
+	private static Map<String, JsonNode> byName(JsonNode results) {
+		var byName = new LinkedHashMap<String, JsonNode>();
+		for (JsonNode result : results) {
+			String name = result.get("benchmark").asString().replaceFirst("^dev\\.epieffe\\.demo\\.cart\\.", "");
+			JsonNode params = result.get("params");
+			if (params != null) {
+				name += params.properties().stream()
+						.map(param -> param.getKey() + "=" + param.getValue().asString())
+						.collect(Collectors.joining(",", " [", "]"));
+			}
+			byName.put(name, result);
+		}
+		return byName;
+	}
+
+	private static double allocation(JsonNode result) {
+		for (var metric : result.path("secondaryMetrics").properties()) {
+			// Older JMH versions prefix profiler metrics with a middle dot
+			if (metric.getKey().replace("·", "").equals(ALLOCATION_METRIC)) {
+				return metric.getValue().path("score").asDouble();
+			}
+		}
+		return Double.NaN;
+	}
+
+	private static double change(double baseline, double current) {
+		return (current - baseline) / baseline * 100;
+	}
+}
@@ -0,0 +1,84 @@
+package dev.epieffe.demo.cart.order;
+
+import dev.epieffe.demo.cart.util.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU work done for each order outside the database: mapping the request and the fetched products
+ * to an {@link Order}, mapping the order to an {@link OrderResponse}, and serializing the response to JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBenchmark {
+
+	@Param({"1", "10", "100"})
+	private int cartSize;
+
+	private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+	private OrderRequest request;
+	private List<ProductQueryDto> products;
+	private Order order;
+	private OrderResponse response;
+
+	@Setup
+	public void setUp() throws InvalidOrderException {
+		var random = new SplittableRandom(cartSize);
+		var lines = new ArrayList<OrderRequest.Product>(cartSize);
+		products = new ArrayList<>(cartSize);
+		for (int i = 0; i < cartSize; i++) {
+			long id = 1 + i * 7L;
+			lines.add(new OrderRequest.Product(id, 1 + random.nextInt(3)));
+			int rateUnits = random.nextBoolean() ? 2200 : 1000;
+			long totalCents = random.nextLong(100, 500_000);
+			products.add(new ProductQueryDto(id, "Product " + id, Money.fromCents(totalCents), Money.fromRateUnits(rateUnits),
+					Money.fromCents(Money.vatAmount(totalCents, rateUnits))));
+		}
+		// The database returns products in no particular order
+		Collections.shuffle(products, random);
+		request = new OrderRequest("via Roma, 5", lines);
+		order = OrderMapper.fromRequest(request, OrderLines.of(request), products);
+		order.setId(101L);
+		order.setCreatedAt(LocalDateTime.of(2026, 2, 18, 10, 30));
+		response = OrderMapper.toResponse(order);
+	}
+
+	@Benchmark
+	public Order fromRequest() throws InvalidOrderException {
+		OrderLines lines = OrderLines.of(request);
+		lines.checkAllPresent(products);
+		return OrderMapper.fromRequest(request, lines, products);
+	}
+
+	@Benchmark
+	public OrderResponse toResponse() {
+		return OrderMapper.toResponse(order);
+	}
+
+	@Benchmark
+	public byte[] toJson() {
+		return jsonMapper.writeValueAsBytes(response);
+	}
+}
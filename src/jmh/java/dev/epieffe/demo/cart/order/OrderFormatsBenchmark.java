@@ -0,0 +1,116 @@
+package dev.epieffe.demo.cart.order;
+
+import dev.epieffe.demo.cart.util.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares serializing and parsing {@link OrderResponse} bodies with 100 lines in each format supported by the order
+ * endpoints. The average size of the bodies, with and without gzip, is printed before the measurements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderFormatsBenchmark {
+
+	private static final int LINES = 100;
+	// A power of two, so that the next order is picked with a mask
+	private static final int ORDERS = 64;
+
+	@Param({"json", "cbor", "smile"})
+	private String format;
+
+	private ObjectMapper mapper;
+	private List<OrderResponse> orders;
+	private byte[][] bodies;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		mapper = switch (format) {
+			case "json" -> JsonMapper.builder().build();
+			case "cbor" -> CBORMapper.builder().build();
+			case "smile" -> SmileMapper.builder().build();
+			default -> throw new IllegalArgumentException("Unknown format: " + format);
+		};
+		orders = randomOrders(new SplittableRandom(42));
+		bodies = new byte[ORDERS][];
+		long bytes = 0;
+		long gzipBytes = 0;
+		for (int i = 0; i < ORDERS; i++) {
+			bodies[i] = mapper.writeValueAsBytes(orders.get(i));
+			bytes += bodies[i].length;
+			gzipBytes += gzip(bodies[i]).length;
+		}
+		System.out.printf("%s: %d bytes, %d gzip bytes%n", format, bytes / ORDERS, gzipBytes / ORDERS);
+	}
+
+	@Benchmark
+	public byte[] write() {
+		return mapper.writeValueAsBytes(orders.get(next++ & (ORDERS - 1)));
+	}
+
+	@Benchmark
+	public OrderResponse read() {
+		return mapper.readValue(bodies[next++ & (ORDERS - 1)], OrderResponse.class);
+	}
+
+	private static byte[] gzip(byte[] body) {
+		var bytes = new ByteArrayOutputStream();
+		try (var out = new GZIPOutputStream(bytes)) {
+			out.write(body);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static List<OrderResponse> randomOrders(SplittableRandom random) {
+		var orders = new ArrayList<OrderResponse>(ORDERS);
+		for (int o = 0; o < ORDERS; o++) {
+			var products = new ArrayList<OrderResponse.Product>(LINES);
+			long orderTotal = 0;
+			long orderVat = 0;
+			for (int i = 0; i < LINES; i++) {
+				int quantity = 1 + random.nextInt(5);
+				int rateUnits = random.nextBoolean() ? 2200 : 1000;
+				long total = quantity * random.nextLong(100, 500_000);
+				long vat = total - Money.netPrice(total, rateUnits);
+				orderTotal += total;
+				orderVat += vat;
+				products.add(new OrderResponse.Product(random.nextLong(1, 100_000), quantity,
+						"Product " + random.nextInt(100_000) + " with a realistic name",
+						Money.fromCents(total), Money.fromCents(vat), Money.fromRateUnits(rateUnits)));
+			}
+			orders.add(new OrderResponse((long) o, "via Roma, " + o, LocalDateTime.of(2026, 2, 18, 10, 30).plusSeconds(o),
+					Money.fromCents(orderTotal), Money.fromCents(orderVat), products));
+		}
+		return orders;
+	}
+}
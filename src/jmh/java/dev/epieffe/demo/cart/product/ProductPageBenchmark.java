@@ -0,0 +1,89 @@
+package dev.epieffe.demo.cart.product;
+
+import dev.epieffe.demo.cart.util.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU work done for each page of product search results outside the database: mapping the products
+ * to {@link ProductResponse} records, with all fields or a few of them, and serializing the page to JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductPageBenchmark {
+
+	private static final Set<ProductField> LIST_FIELDS = EnumSet.of(ProductField.ID, ProductField.NAME, ProductField.TOTAL_PRICE);
+
+	@Param({"20", "100"})
+	private int pageSize;
+
+	private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+	private List<Product> products;
+	private List<ProductResponse> responses;
+	private List<ProductResponse> listResponses;
+
+	@Setup
+	public void setUp() {
+		var random = new SplittableRandom(pageSize);
+		products = new ArrayList<>(pageSize);
+		for (int i = 0; i < pageSize; i++) {
+			int rateUnits = random.nextBoolean() ? 2200 : 1000;
+			long totalCents = random.nextLong(100, 500_000);
+			long netCents = Money.netPrice(totalCents, rateUnits);
+			var product = new Product();
+			product.setId(1L + i);
+			product.setName("Product " + i);
+			product.setDescription("Description of product " + i + " ".repeat(random.nextInt(200)));
+			product.setTotalPrice(Money.fromCents(totalCents));
+			product.setVatRate(Money.fromRateUnits(rateUnits));
+			product.setNetPrice(Money.fromCents(netCents));
+			product.setVatAmount(Money.fromCents(totalCents - netCents));
+			product.setVersion(0L);
+			products.add(product);
+		}
+		responses = toResponses();
+		listResponses = toListResponses();
+	}
+
+	@Benchmark
+	public List<ProductResponse> toResponses() {
+		return products.stream().map(ProductMapper::toResponse).toList();
+	}
+
+	@Benchmark
+	public List<ProductResponse> toListResponses() {
+		return products.stream().map(p -> ProductMapper.toResponse(p, LIST_FIELDS)).toList();
+	}
+
+	@Benchmark
+	public byte[] toJson() {
+		return jsonMapper.writeValueAsBytes(responses);
+	}
+
+	@Benchmark
+	public byte[] toListJson() {
+		return jsonMapper.writeValueAsBytes(listResponses);
+	}
+}
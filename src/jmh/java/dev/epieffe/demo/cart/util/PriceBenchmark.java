@@ -0,0 +1,64 @@
+package dev.epieffe.demo.cart.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link BigDecimal} price computations in {@link PriceUtil} with the fixed-point computations
+ * in {@link Money}, as performed when mapping a product to a response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceBenchmark {
+
+	private static final int PRICES = 1024;
+
+	private final BigDecimal[] totals = new BigDecimal[PRICES];
+	private final BigDecimal[] rates = new BigDecimal[PRICES];
+
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < PRICES; i++) {
+			totals[i] = BigDecimal.valueOf(999 + i * 7919L, 2);
+			rates[i] = new BigDecimal(i % 2 == 0 ? "0.2200" : "0.1000");
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PRICES)
+	public void bigDecimal(Blackhole blackhole) {
+		for (int i = 0; i < PRICES; i++) {
+			BigDecimal netPrice = PriceUtil.computeNetPrice(totals[i], rates[i]);
+			blackhole.consume(netPrice);
+			blackhole.consume(totals[i].subtract(netPrice));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PRICES)
+	public void money(Blackhole blackhole) {
+		for (int i = 0; i < PRICES; i++) {
+			long totalCents = Money.toCents(totals[i]);
+			long netCents = Money.netPrice(totalCents, Money.toRateUnits(rates[i]));
+			blackhole.consume(Money.fromCents(netCents));
+			blackhole.consume(Money.fromCents(totalCents - netCents));
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Fills the {@code net_price} and {@code vat_amount} columns of existing products.
+ * <p>
+ * Rows are updated in chunks of consecutive ids, each committed in its own transaction, so that a large
+ * catalog is never locked as a whole and the work done so far is kept if the migration is interrupted.
+ * PostgreSQL {@code round} rounds half away from zero, matching the HALF_UP rounding used by the application.
+ */
+public class V1_3__backfill_product_net_price extends BaseJavaMigration {
+	private static final Logger LOG = LoggerFactory.getLogger(V1_3__backfill_product_net_price.class);
+
+	private static final int CHUNK_SIZE = 10_000;
+
+	private static final String NEXT_CHUNK_END = """
+			SELECT max(id) FROM (
+				SELECT id FROM product WHERE id > ? ORDER BY id LIMIT ?
+			) chunk
+			""";
+
+	private static final String UPDATE_CHUNK = """
+			UPDATE product
+			SET net_price = round(total_price / (1 + vat_rate), 2),
+				vat_amount = total_price - round(total_price / (1 + vat_rate), 2)
+			WHERE id > ? AND id <= ? AND net_price IS NULL
+			""";
+
+	@Override
+	public boolean canExecuteInTransaction() {
+		return false;
+	}
+
+	@Override
+	public void migrate(Context context) throws SQLException {
+		Connection connection = context.getConnection();
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try (PreparedStatement nextChunkEnd = connection.prepareStatement(NEXT_CHUNK_END);
+			 PreparedStatement updateChunk = connection.prepareStatement(UPDATE_CHUNK)) {
+			long lastId = Long.MIN_VALUE;
+			long updated = 0;
+			while (true) {
+				nextChunkEnd.setLong(1, lastId);
+				nextChunkEnd.setInt(2, CHUNK_SIZE);
+				long chunkEnd;
+				try (ResultSet rs = nextChunkEnd.executeQuery()) {
+					rs.next();
+					chunkEnd = rs.getLong(1);
+					if (rs.wasNull()) {
+						break;
+					}
+				}
+				updateChunk.setLong(1, lastId);
+				updateChunk.setLong(2, chunkEnd);
+				updated += updateChunk.executeUpdate();
+				connection.commit();
+				lastId = chunkEnd;
+			}
+			LOG.info("Backfilled net price and VAT amount of {} products", updated);
+		} catch (SQLException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package dev.epieffe.demo.cart.order;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of a lookup in one of the order caches, including the loading of the missing entries if any.
+ */
+@Name("dev.epieffe.demo.cart.CacheLookup")
+@Label("Cache Lookup")
+@Category({"Cart", "Orders"})
+@Enabled(false)
+@StackTrace(false)
+class CacheLookupEvent extends Event {
+
+	@Label("Cache")
+	String cache;
+
+	@Label("Keys")
+	@Description("Number of entries looked up")
+	int keys;
+
+	@Label("Hits")
+	@Description("Number of entries found in the cache")
+	int hits;
+}
@@ -0,0 +1,17 @@
+package dev.epieffe.demo.cart.order;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "Batch order request payload")
+public record OrderBatchRequest(
+		// Orders are validated one by one by the service, so that each order gets its own result
+		@Schema(description = "List of orders to create")
+		@NotEmpty(message = "Batch must contain at least one order")
+		@Size(max = OrderService.MAX_BATCH_SIZE, message = "Batch must contain at most " + OrderService.MAX_BATCH_SIZE + " orders")
+		List<@NotNull(message = "Batch must not contain null orders") OrderRequest> orders
+) { }
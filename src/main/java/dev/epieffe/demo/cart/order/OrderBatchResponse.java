@@ -0,0 +1,32 @@
+package dev.epieffe.demo.cart.order;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+
+@Schema(description = "Batch order response payload")
+public record OrderBatchResponse(
+		@Schema(description = "Number of orders created", example = "2")
+		int created,
+
+		@Schema(description = "Number of orders rejected", example = "1")
+		int rejected,
+
+		@Schema(description = "Result for each order, in the same order as the request")
+		List<Item> results
+) {
+	@Schema(name = "OrderBatchItemResponse")
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public record Item(
+			@Schema(description = "Position of the order in the request", example = "0")
+			int index,
+
+			@Schema(description = "Created order, missing if the order was rejected")
+			@Nullable OrderResponse order,
+
+			@Schema(description = "Reason the order was rejected, missing if the order was created", example = "Product not found: 999")
+			@Nullable String error
+	) { }
+}
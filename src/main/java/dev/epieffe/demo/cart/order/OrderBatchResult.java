@@ -0,0 +1,19 @@
+package dev.epieffe.demo.cart.order;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Outcome of a single order in a batch: either the created order or the reason it was rejected.
+ */
+public record OrderBatchResult(
+		@Nullable Order order,
+		@Nullable String error
+) {
+	public static OrderBatchResult created(Order order) {
+		return new OrderBatchResult(order, null);
+	}
+
+	public static OrderBatchResult rejected(String error) {
+		return new OrderBatchResult(null, error);
+	}
+}
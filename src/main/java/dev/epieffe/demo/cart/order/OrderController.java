@@ -1,32 +1,66 @@
 package dev.epieffe.demo.cart.order;
 
+import dev.epieffe.demo.cart.util.InvalidCursorException;
+import dev.epieffe.demo.cart.util.ResponseFormat;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
 	private static final Logger LOG = LoggerFactory.getLogger(OrderController.class);
 
+	private static final int MAX_PAGE_SIZE = 100;
+	private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+	private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+
 	private final OrderService orderService;
+	private final OrderExportService exportService;
+	private final OrderResponseCache responseCache;
+	private final @Nullable OrderGroupCommitWriter groupCommitWriter;
 
-	public OrderController(OrderService orderService) {
+	public OrderController(
+			OrderService orderService,
+			OrderExportService exportService,
+			OrderResponseCache responseCache,
+			@Nullable OrderGroupCommitWriter groupCommitWriter
+	) {
 		this.orderService = orderService;
+		this.exportService = exportService;
+		this.responseCache = responseCache;
+		this.groupCommitWriter = groupCommitWriter;
 	}
 
 	@Operation(
@@ -45,14 +79,47 @@ public class OrderController {
 							description = "Invalid order data",
 							content = @Content(mediaType = "application/json"))})
 	@PostMapping
-	public ResponseEntity<OrderResponse> createOrder(
+	public ResponseEntity<byte[]> createOrder(
+			@RequestHeader(value = HttpHeaders.ACCEPT, required = false) @Nullable String accept,
 			@RequestBody @Valid OrderRequest request
 	) throws InvalidOrderException {
 		LOG.info("Received request to create order: {}", request);
-		Order order = orderService.createOrder(request);
+		Order order = groupCommitWriter != null
+				? groupCommitWriter.createOrder(request)
+				: orderService.createOrder(request);
 		LOG.info("Created order with id: {}", order.getId());
+		// Orders are immutable, so the response can be cached right away for later reads
+		ResponseFormat format = ResponseFormat.negotiate(accept);
+		OrderResponseCache.CachedOrder cached = responseCache.put(OrderMapper.toResponse(order), format);
 		return ResponseEntity.status(HttpStatus.CREATED)
-				.body(OrderMapper.toResponse(order));
+				.contentType(format.mediaType())
+				.varyBy(HttpHeaders.ACCEPT)
+				.eTag(cached.etag())
+				.body(cached.body());
+	}
+
+	@Operation(
+			summary = "Create a batch of orders",
+			description = "Create up to " + OrderService.MAX_BATCH_SIZE + " orders at once. Each order is validated on its own, "
+					+ "and the response reports for each order either the created order or the reason it was rejected.")
+	@ApiResponses(
+			value = {
+					@ApiResponse(
+							responseCode = "200",
+							description = "Batch processed, see the result of each order",
+							content = @Content(
+									mediaType = "application/json",
+									schema = @Schema(implementation = OrderBatchResponse.class))),
+					@ApiResponse(
+							responseCode = "400",
+							description = "Invalid batch",
+							content = @Content(mediaType = "application/json"))})
+	@PostMapping("/batch")
+	public ResponseEntity<OrderBatchResponse> createOrders(@RequestBody @Valid OrderBatchRequest request) {
+		LOG.info("Received request to create a batch of {} orders", request.orders().size());
+		OrderBatchResponse response = OrderMapper.toBatchResponse(orderService.createOrders(request.orders()));
+		LOG.info("Created {} orders, rejected {} orders", response.created(), response.rejected());
+		return ResponseEntity.ok(response);
 	}
 
 	@Operation(
@@ -69,13 +136,129 @@ public class OrderController {
 					description = "Order not found",
 					content = @Content(mediaType = "application/json"))})
 	@GetMapping("/{id}")
-	public ResponseEntity<OrderResponse> getProductById(
-			@Parameter(description = "Order id", example = "1") @PathVariable Long id
+	public ResponseEntity<byte[]> getOrderById(
+			@Parameter(description = "Order id", example = "1") @PathVariable Long id,
+			@RequestHeader(value = HttpHeaders.ACCEPT, required = false) @Nullable String accept
 	) {
 		LOG.info("Received request to get order by id: {}", id);
-		return orderService.getOrderById(id)
-				.map(OrderMapper::toResponse)
-				.map(ResponseEntity::ok)
-				.orElse(ResponseEntity.notFound().build());
+		ResponseFormat format = ResponseFormat.negotiate(accept);
+		OrderResponseCache.CachedOrder cached = responseCache.get(id, format);
+		if (cached == null) {
+			Optional<Order> order = orderService.getOrderById(id);
+			if (order.isEmpty()) {
+				return ResponseEntity.notFound().build();
+			}
+			cached = responseCache.put(OrderMapper.toResponse(order.get()), format);
+		}
+		// A matching If-None-Match header results in a 304 Not Modified response
+		return ResponseEntity.ok()
+				.contentType(format.mediaType())
+				.varyBy(HttpHeaders.ACCEPT)
+				.eTag(cached.etag())
+				.cacheControl(IMMUTABLE)
+				.body(cached.body());
+	}
+
+	@Operation(
+			summary = "Search orders",
+			description = "Search orders from the newest to the oldest, with optional filter criteria. "
+					+ "Results are paginated with cursors: when more results are available, the X-Next-Cursor header "
+					+ "contains the cursor to pass to get the next page.")
+	@ApiResponses(value = {
+			@ApiResponse(
+					responseCode = "200",
+					description = "List of matching orders",
+					content = @Content(
+							mediaType = "application/json",
+							array = @ArraySchema(schema = @Schema(implementation = OrderResponse.class)))),
+			@ApiResponse(
+					responseCode = "400",
+					description = "Invalid cursor",
+					content = @Content(mediaType = "application/json"))})
+	@GetMapping
+	public ResponseEntity<List<OrderResponse>> searchOrders(
+			OrderSearch search,
+			@Parameter(description = "Cursor returned in the X-Next-Cursor header of the previous page")
+			@RequestParam(required = false) @Nullable String cursor,
+			@Parameter(description = "Max number of results, up to " + MAX_PAGE_SIZE, example = "20")
+			@RequestParam(defaultValue = "20") int size
+	) throws InvalidCursorException {
+		LOG.info("Received request to search orders: {}, cursor={}, size={}", search, cursor, size);
+		OrderCursor after = cursor != null ? OrderCursor.decode(cursor) : null;
+		Slice<Order> result = orderService.searchOrders(search, after, Math.clamp(size, 1, MAX_PAGE_SIZE));
+		var response = ResponseEntity.ok()
+				.header("X-Has-Next", String.valueOf(result.hasNext()));
+		if (result.hasNext()) {
+			response.header("X-Next-Cursor", OrderCursor.of(result.getContent().getLast()).encode());
+		}
+		return response.body(result.map(OrderMapper::toResponse).getContent());
+	}
+
+	@Operation(
+			summary = "Export orders",
+			description = "Export all the orders matching the optional filter criteria as newline-delimited JSON, "
+					+ "one order per line, ordered by id. The response is streamed and gzip compressed when the client "
+					+ "accepts gzip encoding.")
+	@ApiResponses(value = {
+			@ApiResponse(
+					responseCode = "200",
+					description = "Matching orders, one per line",
+					content = @Content(
+							mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+							schema = @Schema(implementation = OrderResponse.class)))})
+	@GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public void exportOrders(
+			OrderSearch search,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) @Nullable String acceptEncoding,
+			HttpServletResponse response
+	) throws IOException {
+		LOG.info("Received request to export orders: {}", search);
+		boolean gzip = acceptsGzip(acceptEncoding);
+		response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		long count;
+		if (gzip) {
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+			var out = new GZIPOutputStream(response.getOutputStream(), EXPORT_BUFFER_SIZE);
+			count = exportService.exportOrders(search, out);
+			out.finish();
+		} else {
+			count = exportService.exportOrders(search, response.getOutputStream());
+		}
+		LOG.info("Exported {} orders", count);
+	}
+
+	/**
+	 * Whether the given Accept-Encoding header accepts gzip with a non-zero quality, either by name or, when gzip is
+	 * not listed, with a wildcard.
+	 */
+	private static boolean acceptsGzip(@Nullable String acceptEncoding) {
+		if (acceptEncoding == null || acceptEncoding.isBlank()) {
+			return false;
+		}
+		double gzipQuality = -1;
+		double wildcardQuality = -1;
+		for (String element : acceptEncoding.split(",")) {
+			String[] parts = element.split(";");
+			String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+			double quality = 1;
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].trim();
+				if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+					try {
+						quality = Double.parseDouble(parameter.substring(2).trim());
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+			if (coding.equals("gzip") || coding.equals("x-gzip")) {
+				gzipQuality = Math.max(gzipQuality, quality);
+			} else if (coding.equals("*")) {
+				wildcardQuality = Math.max(wildcardQuality, quality);
+			}
+		}
+		return gzipQuality >= 0 ? gzipQuality > 0 : wildcardQuality > 0;
 	}
 }
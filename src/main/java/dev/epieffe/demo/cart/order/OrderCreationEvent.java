@@ -0,0 +1,32 @@
+package dev.epieffe.demo.cart.order;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of the creation of an order, up to its flush. The phases of the creation and the commit are recorded
+ * as separate events.
+ */
+@Name("dev.epieffe.demo.cart.OrderCreation")
+@Label("Order Creation")
+@Category({"Cart", "Orders"})
+@Enabled(false)
+@StackTrace(false)
+class OrderCreationEvent extends Event {
+
+	@Label("Order Id")
+	long orderId;
+
+	@Label("Products")
+	@Description("Number of distinct products in the order")
+	int products;
+
+	@Label("Quantity")
+	@Description("Total quantity of the products in the order")
+	long quantity;
+}
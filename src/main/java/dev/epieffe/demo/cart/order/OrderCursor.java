@@ -0,0 +1,32 @@
+package dev.epieffe.demo.cart.order;
+
+import dev.epieffe.demo.cart.util.CursorCodec;
+import dev.epieffe.demo.cart.util.InvalidCursorException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Position in the list of orders sorted by creation time and id, both descending.
+ */
+public record OrderCursor(
+		LocalDateTime createdAt,
+		long id
+) {
+	public static OrderCursor of(Order order) {
+		return new OrderCursor(order.getCreatedAt(), order.getId());
+	}
+
+	public static OrderCursor decode(String token) throws InvalidCursorException {
+		String[] values = CursorCodec.decode(token, 2);
+		try {
+			return new OrderCursor(LocalDateTime.parse(values[0]), Long.parseLong(values[1]));
+		} catch (DateTimeParseException | NumberFormatException e) {
+			throw new InvalidCursorException("Invalid cursor");
+		}
+	}
+
+	public String encode() {
+		return CursorCodec.encode(createdAt.toString(), Long.toString(id));
+	}
+}
@@ -0,0 +1,145 @@
+package dev.epieffe.demo.cart.order;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+
+/**
+ * Exports orders as newline-delimited JSON, one order with its products per line.
+ * <p>
+ * Rows are read with a server-side cursor and written to the output as they arrive, so memory usage does not
+ * depend on the number of exported orders.
+ */
+@Service
+@Transactional(readOnly = true)
+public class OrderExportService {
+
+	// PostgreSQL only uses a cursor inside a transaction and with a positive fetch size
+	private static final int FETCH_SIZE = 1000;
+
+	private static final String EXPORT_QUERY = """
+			SELECT o.id, o.shipping_address, o.created_at, o.total_price, o.vat_amount,
+				op.product_id, op.quantity, op.name, op.total_price, op.vat_amount, op.vat_rate
+			FROM orders o
+			JOIN order_product op ON op.order_id = o.id
+			""";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final JsonMapper jsonMapper;
+
+	public OrderExportService(DataSource dataSource, JsonMapper jsonMapper) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+		this.jsonMapper = jsonMapper;
+	}
+
+	/**
+	 * Writes all the orders matching the search criteria to the given stream, ordered by id.
+	 * The stream is flushed but not closed.
+	 *
+	 * @return the number of exported orders
+	 */
+	public long exportOrders(OrderSearch search, OutputStream out) {
+		var sql = new StringBuilder(EXPORT_QUERY);
+		var conditions = new ArrayList<String>();
+		var args = new ArrayList<Object>();
+		if (search.createdFrom() != null) {
+			conditions.add("o.created_at >= ?");
+			args.add(search.createdFrom());
+		}
+		if (search.createdTo() != null) {
+			conditions.add("o.created_at < ?");
+			args.add(search.createdTo());
+		}
+		if (search.minTotalPrice() != null) {
+			conditions.add("o.total_price >= ?");
+			args.add(search.minTotalPrice());
+		}
+		if (search.maxTotalPrice() != null) {
+			conditions.add("o.total_price <= ?");
+			args.add(search.maxTotalPrice());
+		}
+		if (!conditions.isEmpty()) {
+			sql.append("WHERE ").append(String.join(" AND ", conditions)).append('\n');
+		}
+		sql.append("ORDER BY o.id, op.id");
+
+		ObjectWriter ndjsonWriter = jsonMapper.writer()
+				.without(StreamWriteFeature.AUTO_CLOSE_TARGET)
+				.withRootValueSeparator("\n");
+		try (JsonGenerator generator = ndjsonWriter.createGenerator(out)) {
+			var writer = new OrderLineWriter(generator);
+			jdbcTemplate.query(sql.toString(), writer, args.toArray());
+			writer.finish();
+			return writer.orderCount;
+		}
+	}
+
+	/**
+	 * Writes the rows of the export query, which are sorted by order id, opening a new line at each new order.
+	 */
+	private static class OrderLineWriter implements RowCallbackHandler {
+		private final JsonGenerator generator;
+		private long currentOrderId = -1;
+		private long orderCount = 0;
+
+		private OrderLineWriter(JsonGenerator generator) {
+			this.generator = generator;
+		}
+
+		@Override
+		public void processRow(ResultSet rs) throws SQLException {
+			long orderId = rs.getLong(1);
+			if (orderId != currentOrderId) {
+				endOrder();
+				generator.writeStartObject();
+				generator.writeNumberProperty("id", orderId);
+				generator.writeStringProperty("shippingAddress", rs.getString(2));
+				generator.writeStringProperty("createdAt", rs.getObject(3, LocalDateTime.class).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+				generator.writeNumberProperty("totalPrice", rs.getBigDecimal(4));
+				generator.writeNumberProperty("vatAmount", rs.getBigDecimal(5));
+				generator.writeName("products");
+				generator.writeStartArray();
+				currentOrderId = orderId;
+				orderCount++;
+			}
+			generator.writeStartObject();
+			generator.writeNumberProperty("productId", rs.getLong(6));
+			generator.writeNumberProperty("quantity", rs.getInt(7));
+			generator.writeStringProperty("name", rs.getString(8));
+			generator.writeNumberProperty("totalPrice", rs.getBigDecimal(9));
+			generator.writeNumberProperty("vatAmount", rs.getBigDecimal(10));
+			generator.writeNumberProperty("vatRate", rs.getBigDecimal(11));
+			generator.writeEndObject();
+		}
+
+		private void finish() {
+			endOrder();
+			if (orderCount > 0) {
+				// Terminate the last line too
+				generator.writeRaw('\n');
+			}
+			generator.flush();
+		}
+
+		private void endOrder() {
+			if (orderCount > 0) {
+				generator.writeEndArray();
+				generator.writeEndObject();
+			}
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package dev.epieffe.demo.cart.order;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Creates orders submitted concurrently by different requests in shared transactions, so that many orders pay
+ * for a single commit.
+ * <p>
+ * Submitted orders are queued, and a background thread creates them in batches with
+ * {@link OrderService#createOrders(List)}. A batch is flushed when it reaches the max batch size or when the max
+ * delay has passed since its first order was queued. An invalid order is rejected without affecting the others.
+ * If the batch transaction fails as a whole, its orders are retried one at a time in transactions of their own.
+ * <p>
+ * Enabled by the {@code cart.orders.group-commit.enabled} property.
+ */
+@Component
+@ConditionalOnBooleanProperty("cart.orders.group-commit.enabled")
+public class OrderGroupCommitWriter implements SmartLifecycle {
+	private static final Logger LOG = LoggerFactory.getLogger(OrderGroupCommitWriter.class);
+
+	private static final String METRIC_PREFIX = "cart.orders.group.commit";
+	private static final long POLL_TIMEOUT_MILLIS = 100;
+	private static final long STOP_TIMEOUT_MILLIS = 10_000;
+
+	private final OrderService orderService;
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+	private final BlockingQueue<PendingOrder> queue;
+	private final Counter transactions;
+	private final Counter fallbacks;
+	private final DistributionSummary batchSizes;
+
+	private volatile boolean running = false;
+	private @Nullable Thread flusher;
+
+	public OrderGroupCommitWriter(
+			OrderService orderService,
+			MeterRegistry registry,
+			@Value("${cart.orders.group-commit.max-batch-size:100}") int maxBatchSize,
+			@Value("${cart.orders.group-commit.max-delay:2ms}") Duration maxDelay,
+			@Value("${cart.orders.group-commit.queue-capacity:10000}") int queueCapacity
+	) {
+		this.orderService = orderService;
+		this.maxBatchSize = Math.min(maxBatchSize, OrderService.MAX_BATCH_SIZE);
+		this.maxDelayNanos = maxDelay.toNanos();
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.transactions = Counter.builder(METRIC_PREFIX + ".transactions")
+				.description("Transactions committed to create queued orders")
+				.register(registry);
+		this.fallbacks = Counter.builder(METRIC_PREFIX + ".fallbacks")
+				.description("Batches retried one order at a time after the batch transaction failed")
+				.register(registry);
+		this.batchSizes = DistributionSummary.builder(METRIC_PREFIX + ".batch.size")
+				.description("Number of orders created in each batch")
+				.register(registry);
+	}
+
+	/**
+	 * Queues the order and waits until its batch is committed. When the queue is full, or the writer is stopped,
+	 * the order is created right away in a transaction of its own.
+	 */
+	public Order createOrder(OrderRequest request) throws InvalidOrderException {
+		var pending = new PendingOrder(request, new CompletableFuture<>());
+		if (!running || !queue.offer(pending)) {
+			return orderService.createOrder(request);
+		}
+		try {
+			while (true) {
+				try {
+					return pending.result().get(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					// The writer was stopped after the order was queued, and the flusher will not pick it up
+					if (!running && queue.remove(pending)) {
+						return orderService.createOrder(request);
+					}
+				}
+			}
+		} catch (ExecutionException e) {
+			switch (e.getCause()) {
+				case InvalidOrderException invalid -> throw invalid;
+				case RuntimeException runtime -> throw runtime;
+				default -> throw new IllegalStateException("Failed to create order", e.getCause());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the order to be created", e);
+		}
+	}
+
+	@Override
+	public synchronized void start() {
+		running = true;
+		flusher = Thread.ofPlatform().name("order-group-commit").daemon().start(this::flushLoop);
+		LOG.info("Group commit of orders enabled, max batch size {}, max delay {} us",
+				maxBatchSize, TimeUnit.NANOSECONDS.toMicros(maxDelayNanos));
+	}
+
+	@Override
+	public synchronized void stop() {
+		running = false;
+		if (flusher != null) {
+			// The flusher creates the orders still in the queue before terminating
+			try {
+				flusher.join(STOP_TIMEOUT_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			flusher = null;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	private void flushLoop() {
+		var batch = new ArrayList<PendingOrder>(maxBatchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				PendingOrder first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + maxDelayNanos;
+				while (batch.size() < maxBatchSize) {
+					queue.drainTo(batch, maxBatchSize - batch.size());
+					long remaining = deadline - System.nanoTime();
+					if (batch.size() >= maxBatchSize || remaining <= 0) {
+						break;
+					}
+					PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+				flush(batch);
+			} catch (InterruptedException e) {
+				LOG.warn("Group commit flusher interrupted, creating queued orders one at a time");
+				queue.drainTo(batch);
+				batch.forEach(this::createAlone);
+				return;
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	private void flush(List<PendingOrder> batch) {
+		batchSizes.record(batch.size());
+		List<OrderBatchResult> results;
+		try {
+			results = orderService.createOrders(batch.stream().map(PendingOrder::request).toList());
+			transactions.increment();
+		} catch (RuntimeException e) {
+			LOG.warn("Failed to create a batch of {} orders, retrying them one at a time", batch.size(), e);
+			fallbacks.increment();
+			batch.forEach(this::createAlone);
+			return;
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			OrderBatchResult result = results.get(i);
+			if (result.order() != null) {
+				batch.get(i).result().complete(result.order());
+			} else {
+				batch.get(i).result().completeExceptionally(new InvalidOrderException(String.valueOf(result.error())));
+			}
+		}
+	}
+
+	private void createAlone(PendingOrder pending) {
+		if (pending.result().isDone()) {
+			return;
+		}
+		try {
+			pending.result().complete(orderService.createOrder(pending.request()));
+			transactions.increment();
+		} catch (InvalidOrderException | RuntimeException e) {
+			pending.result().completeExceptionally(e);
+		}
+	}
+
+	private record PendingOrder(OrderRequest request, CompletableFuture<Order> result) { }
+}
@@ -0,0 +1,79 @@
+package dev.epieffe.demo.cart.order;
+
+import dev.epieffe.demo.cart.util.LongIndexMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index of the product lines in an {@link OrderRequest}, keyed by product id.
+ * Building the index, looking up quantities and checking fetched products are all linear in the number of lines.
+ */
+public class OrderLines {
+
+	private final List<OrderRequest.Product> lines;
+	private final List<Long> productIds;
+	private final LongIndexMap positions;
+
+	private OrderLines(List<OrderRequest.Product> lines) {
+		this.lines = lines;
+		this.productIds = new ArrayList<>(lines.size());
+		this.positions = new LongIndexMap(lines.size());
+	}
+
+	/**
+	 * Indexes the lines of the request in a single pass.
+	 *
+	 * @throws InvalidOrderException if a product appears more than once
+	 */
+	public static OrderLines of(OrderRequest request) throws InvalidOrderException {
+		var orderLines = new OrderLines(request.products());
+		for (int i = 0; i < orderLines.lines.size(); i++) {
+			Long productId = orderLines.lines.get(i).productId();
+			if (orderLines.positions.putIfAbsent(productId, i) != LongIndexMap.ABSENT) {
+				throw new InvalidOrderException("Duplicate product: " + productId);
+			}
+			orderLines.productIds.add(productId);
+		}
+		return orderLines;
+	}
+
+	public List<Long> productIds() {
+		return productIds;
+	}
+
+	public int size() {
+		return lines.size();
+	}
+
+	/**
+	 * @return the quantity requested for the product, or zero if the product is not part of the order
+	 */
+	public int quantityOf(long productId) {
+		int position = positions.get(productId);
+		return position == LongIndexMap.ABSENT ? 0 : lines.get(position).quantity();
+	}
+
+	/**
+	 * @throws InvalidOrderException if a requested product is missing from the given products
+	 */
+	public void checkAllPresent(List<ProductQueryDto> products) throws InvalidOrderException {
+		boolean[] found = new boolean[lines.size()];
+		int foundCount = 0;
+		for (ProductQueryDto product : products) {
+			int position = positions.get(product.id());
+			if (position != LongIndexMap.ABSENT && !found[position]) {
+				found[position] = true;
+				foundCount++;
+			}
+		}
+		if (foundCount == lines.size()) {
+			return;
+		}
+		for (int i = 0; i < found.length; i++) {
+			if (!found[i]) {
+				throw new InvalidOrderException("Product not found: " + productIds.get(i));
+			}
+		}
+	}
+}
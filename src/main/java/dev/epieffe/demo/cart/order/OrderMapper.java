@@ -1,35 +1,34 @@
 package dev.epieffe.demo.cart.order;
 
-import dev.epieffe.demo.cart.util.PriceUtil;
+import dev.epieffe.demo.cart.util.Money;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 public class OrderMapper {
 
-	public static Order fromRequest(OrderRequest request, List<ProductQueryDto> products) {
+	public static Order fromRequest(OrderRequest request, OrderLines lines, List<ProductQueryDto> products) {
 		var order = new Order();
 		order.setShippingAddress(request.shippingAddress());
-		// Add products to order
+		long totalCents = 0;
+		long vatCents = 0;
+		// Add products to order and accumulate totals in a single pass
 		for (ProductQueryDto product : products) {
-			Integer quantity = request.products().stream()
-					.filter(p -> product.id().equals(p.productId()))
-					.findFirst()
-					.map(OrderRequest.Product::quantity)
-					.orElseThrow();
-
-			order.addProduct(fromQueryDto(product, quantity));
+			int quantity = lines.quantityOf(product.id());
+			if (quantity == 0) {
+				throw new IllegalArgumentException("Product not in order: " + product.id());
+			}
+			long productTotalCents = Money.multiply(Money.toCents(product.totalPrice()), quantity);
+			// The VAT amount of a single unit is stored, otherwise it must be computed on the cumulative price
+			long productVatCents = quantity == 1
+					? Money.toCents(product.vatAmount())
+					: Money.vatAmount(productTotalCents, Money.toRateUnits(product.vatRate()));
+			order.addProduct(fromQueryDto(product, quantity, productTotalCents, productVatCents));
+			totalCents = Math.addExact(totalCents, productTotalCents);
+			vatCents = Math.addExact(vatCents, productVatCents);
 		}
-		// Compute total price for the order
-		BigDecimal totalPrice = order.getProducts().stream()
-				.map(OrderProduct::getTotalPrice)
-				.reduce(BigDecimal.ZERO, BigDecimal::add);
-		// Compute VAT amount for the order
-		BigDecimal vatAmount = order.getProducts().stream()
-				.map(OrderProduct::getVatAmount)
-				.reduce(BigDecimal.ZERO, BigDecimal::add);
-		order.setTotalPrice(totalPrice);
-		order.setVatAmount(vatAmount);
+		order.setTotalPrice(Money.fromCents(totalCents));
+		order.setVatAmount(Money.fromCents(vatCents));
 		return order;
 	}
 
@@ -46,13 +45,29 @@ public class OrderMapper {
 				products);
 	}
 
-	private static OrderProduct fromQueryDto(ProductQueryDto product, Integer quantity) {
+	public static OrderBatchResponse toBatchResponse(List<OrderBatchResult> results) {
+		var items = new ArrayList<OrderBatchResponse.Item>(results.size());
+		int created = 0;
+		for (int i = 0; i < results.size(); i++) {
+			OrderBatchResult result = results.get(i);
+			Order order = result.order();
+			if (order != null) {
+				created++;
+				items.add(new OrderBatchResponse.Item(i, toResponse(order), null));
+			} else {
+				items.add(new OrderBatchResponse.Item(i, null, result.error()));
+			}
+		}
+		return new OrderBatchResponse(created, results.size() - created, items);
+	}
+
+	private static OrderProduct fromQueryDto(ProductQueryDto product, int quantity, long totalCents, long vatCents) {
 		var orderProduct = new OrderProduct();
 		orderProduct.setProductId(product.id());
 		orderProduct.setQuantity(quantity);
 		orderProduct.setName(product.name());
-		orderProduct.setTotalPrice(product.totalPrice().multiply(BigDecimal.valueOf(quantity)));
-		orderProduct.setVatAmount(PriceUtil.computeVatAmount(orderProduct.getTotalPrice(), product.vatRate()));
+		orderProduct.setTotalPrice(Money.fromCents(totalCents));
+		orderProduct.setVatAmount(Money.fromCents(vatCents));
 		orderProduct.setVatRate(product.vatRate());
 		return orderProduct;
 	}
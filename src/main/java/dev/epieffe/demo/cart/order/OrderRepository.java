@@ -1,19 +1,21 @@
 package dev.epieffe.demo.cart.order;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
 
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
 
 	@Query("""
 			SELECT new dev.epieffe.demo.cart.order.ProductQueryDto(
 				p.id as id,
 				p.name as name,
 				p.totalPrice as totalPrice,
-				p.vatRate as vatRate
+				p.vatRate as vatRate,
+				p.vatAmount as vatAmount
 			)
 			FROM Product p
 			WHERE p.id IN (:ids)
@@ -26,4 +28,11 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 			WHERE o.id = :id
 			""")
 	Optional<Order> findByIdWithEagerProducts(Long id);
+
+	@Query("""
+			SELECT DISTINCT o
+			FROM Order o JOIN FETCH o.products
+			WHERE o.id IN (:ids)
+			""")
+	List<Order> findAllWithEagerProductsByIdIn(List<Long> ids);
 }
@@ -0,0 +1,110 @@
+package dev.epieffe.demo.cart.order;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.epieffe.demo.cart.util.ResponseFormat;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Cache of serialized {@link OrderResponse} bodies, keyed by order id and {@link ResponseFormat}.
+ * <p>
+ * Orders never change once created, so cached bodies never need to be invalidated. The cache is bounded
+ * by the total size of the cached bodies, and least recently used entries are evicted first.
+ */
+@Component
+public class OrderResponseCache implements MeterBinder {
+	private static final String METRIC_NAME = "cart.orders.response.cache";
+
+	// Rough per-entry overhead of the cache node, the key and the entry itself
+	private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+	private final Map<ResponseFormat, ObjectMapper> mappers = new EnumMap<>(ResponseFormat.class);
+	private final Cache<Key, CachedOrder> cache;
+
+	public OrderResponseCache(
+			JsonMapper jsonMapper,
+			CBORMapper cborMapper,
+			@Value("${cart.orders.response-cache.max-size:64MB}") DataSize maxSize
+	) {
+		mappers.put(ResponseFormat.JSON, jsonMapper);
+		mappers.put(ResponseFormat.CBOR, cborMapper);
+		mappers.put(ResponseFormat.SMILE, SmileMapper.shared());
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(maxSize.toBytes())
+				.weigher((Key key, CachedOrder order) -> order.body().length + ENTRY_OVERHEAD_BYTES)
+				.recordStats()
+				.build();
+	}
+
+	public @Nullable CachedOrder get(long id, ResponseFormat format) {
+		var event = new CacheLookupEvent();
+		event.begin();
+		@Nullable CachedOrder cached = cache.getIfPresent(new Key(id, format));
+		event.end();
+		if (event.shouldCommit()) {
+			event.cache = METRIC_NAME;
+			event.keys = 1;
+			event.hits = cached != null ? 1 : 0;
+			event.commit();
+		}
+		return cached;
+	}
+
+	/**
+	 * Serializes the order in the given format and adds it to the cache.
+	 *
+	 * @return the cached order
+	 */
+	public CachedOrder put(OrderResponse order, ResponseFormat format) {
+		byte[] body = mappers.get(format).writeValueAsBytes(order);
+		var crc = new CRC32C();
+		crc.update(body);
+		// Each format is a different representation of the order, with its own tag. Tags are weak, since the server
+		// does not compress responses with strong tags, and are only compared with If-None-Match anyway
+		String etag = "W/\"" + order.id() + "-" + HexFormat.of().toHexDigits((int) crc.getValue()) + "\"";
+		var cached = new CachedOrder(body, etag);
+		cache.put(new Key(order.id(), format), cached);
+		return cached;
+	}
+
+	/**
+	 * Removes all the cached orders, so that tests reusing the same order ids do not see each other's orders.
+	 */
+	void clear() {
+		cache.invalidateAll();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, cache, METRIC_NAME);
+		Gauge.builder(METRIC_NAME + ".bytes", cache, c -> c.policy().eviction()
+						.map(eviction -> eviction.weightedSize().orElse(0))
+						.orElse(0L))
+				.description("Approximate memory used by cached order bodies")
+				.baseUnit("bytes")
+				.register(registry);
+		Gauge.builder(METRIC_NAME + ".hit.ratio", cache, c -> c.stats().hitRate())
+				.description("Ratio of order reads served from the cache")
+				.register(registry);
+	}
+
+	public record CachedOrder(byte[] body, String etag) { }
+
+	private record Key(long id, ResponseFormat format) { }
+}
@@ -0,0 +1,26 @@
+package dev.epieffe.demo.cart.order;
+
+import io.swagger.v3.oas.annotations.Parameter;
+import org.jspecify.annotations.Nullable;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@ParameterObject
+public record OrderSearch(
+		@Parameter(description = "Minimum creation time in UTC, inclusive", example = "2026-01-01T00:00:00")
+		@DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+		@Nullable LocalDateTime createdFrom,
+
+		@Parameter(description = "Maximum creation time in UTC, exclusive", example = "2026-02-01T00:00:00")
+		@DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+		@Nullable LocalDateTime createdTo,
+
+		@Parameter(description = "Minimum total order price, inclusive")
+		@Nullable BigDecimal minTotalPrice,
+
+		@Parameter(description = "Maximum total order price, inclusive")
+		@Nullable BigDecimal maxTotalPrice
+) { }
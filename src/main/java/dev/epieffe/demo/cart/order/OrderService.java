@@ -1,52 +1,240 @@
 package dev.epieffe.demo.cart.order;
 
+import dev.epieffe.demo.cart.util.LongIndexMap;
+import dev.epieffe.demo.cart.util.PhaseTimer;
+import dev.epieffe.demo.cart.util.Specifications;
+import dev.epieffe.demo.cart.util.ValidationUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.jspecify.annotations.Nullable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
-@Transactional
+@Transactional(timeoutString = "${cart.transaction.request-timeout:-1}")
 public class OrderService {
+	public static final int MAX_BATCH_SIZE = 1000;
+
+	// Keep IN lists well below the PostgreSQL limit on bind parameters per statement
+	private static final int MAX_IN_PARAMETERS = 10_000;
 
 	private final OrderRepository orderRepository;
+	private final ProductSnapshotCache productCache;
+	private final Validator validator;
+	private final PhaseTimer createTimer;
+	private final PhaseTimer getTimer;
 
-	public OrderService(OrderRepository orderRepository) {
+	public OrderService(
+			OrderRepository orderRepository,
+			ProductSnapshotCache productCache,
+			Validator validator,
+			MeterRegistry registry
+	) {
 		this.orderRepository = orderRepository;
+		this.productCache = productCache;
+		this.validator = validator;
+		this.createTimer = new PhaseTimer(registry, "cart.orders.create.phase", "Time spent in each phase of creating an order");
+		this.getTimer = new PhaseTimer(registry, "cart.orders.get.phase", "Time spent in each phase of getting an order");
 	}
 
 	public Order createOrder(OrderRequest request) throws InvalidOrderException {
-		checkDuplicateProducts(request);
-		List<Long> productIds = request.products().stream().map(OrderRequest.Product::productId).toList();
-		List<ProductQueryDto> products = orderRepository.findProductsByIdIn(productIds);
-		checkAllProductsExist(productIds, products);
-		Order order = OrderMapper.fromRequest(request, products);
-		return orderRepository.save(order);
+		var event = new OrderCreationEvent();
+		event.begin();
+		PhaseTimer.Phases phases = createTimer.start("cart.size", cartSize(request));
+		OrderLines lines = OrderLines.of(request);
+		phases.end("validate");
+		List<ProductQueryDto> products = findProducts(lines.productIds());
+		lines.checkAllPresent(products);
+		phases.end("products");
+		Order order = OrderMapper.fromRequest(request, lines, products);
+		phases.end("mapping");
+		Order saved = orderRepository.save(order);
+		phases.end("save");
+		// Flushed here rather than on commit, to time the inserts apart from the commit
+		orderRepository.flush();
+		phases.end("flush");
+		phases.endOnCommit("commit");
+		event.end();
+		if (event.shouldCommit()) {
+			event.orderId = saved.getId();
+			event.products = lines.size();
+			event.quantity = lines.productIds().stream().mapToLong(lines::quantityOf).sum();
+			event.commit();
+		}
+		return saved;
 	}
 
+	/**
+	 * Creates a batch of orders, fetching the products of all orders with a single query and persisting
+	 * all valid orders together. An invalid order is rejected without affecting the others.
+	 *
+	 * @return the result of each order, in the same order as the requests
+	 */
+	public List<OrderBatchResult> createOrders(List<OrderRequest> requests) {
+		List<@Nullable OrderBatchResult> results = new ArrayList<>(requests.size());
+		List<@Nullable OrderLines> indexedLines = new ArrayList<>(requests.size());
+		// Validate each order and collect the union of product ids
+		var productIds = new ArrayList<Long>();
+		var seenProductIds = new LongIndexMap(requests.size() * 4);
+		for (OrderRequest request : requests) {
+			@Nullable OrderLines lines = null;
+			try {
+				checkValid(request);
+				lines = OrderLines.of(request);
+				for (Long productId : lines.productIds()) {
+					if (seenProductIds.putIfAbsent(productId, productIds.size()) == LongIndexMap.ABSENT) {
+						productIds.add(productId);
+					}
+				}
+				results.add(null);
+			} catch (InvalidOrderException e) {
+				results.add(OrderBatchResult.rejected(e.getMessage()));
+			}
+			indexedLines.add(lines);
+		}
+		Map<Long, ProductQueryDto> productsById = new HashMap<>();
+		for (ProductQueryDto product : findProducts(productIds)) {
+			productsById.put(product.id(), product);
+		}
+		// Map valid orders, and persist them all at once to take advantage of JDBC batching
+		var orders = new ArrayList<Order>(requests.size());
+		for (int i = 0; i < requests.size(); i++) {
+			@Nullable OrderLines lines = indexedLines.get(i);
+			if (lines == null) {
+				continue;
+			}
+			try {
+				List<ProductQueryDto> products = lookupProducts(lines, productsById);
+				orders.add(OrderMapper.fromRequest(requests.get(i), lines, products));
+			} catch (InvalidOrderException e) {
+				results.set(i, OrderBatchResult.rejected(e.getMessage()));
+			}
+		}
+		List<Order> saved = orderRepository.saveAll(orders);
+		int next = 0;
+		for (int i = 0; i < results.size(); i++) {
+			if (results.get(i) == null) {
+				results.set(i, OrderBatchResult.created(saved.get(next++)));
+			}
+		}
+		return results.stream().map(Objects::requireNonNull).toList();
+	}
+
+	@Transactional(readOnly = true, timeoutString = "${cart.transaction.request-timeout:-1}")
 	public Optional<Order> getOrderById(Long id) {
-		return orderRepository.findByIdWithEagerProducts(id);
+		PhaseTimer.Phases phases = getTimer.start();
+		Optional<Order> order = orderRepository.findByIdWithEagerProducts(id);
+		phases.end("query");
+		phases.endOnCommit("commit");
+		return order;
 	}
 
-	private static void checkDuplicateProducts(OrderRequest request) throws InvalidOrderException {
-		for (int i = 0; i < request.products().size(); i++) {
-			long p1 = request.products().get(i).productId();
-			for (int j = i + 1; j < request.products().size(); j++) {
-				long p2 = request.products().get(j).productId();
-				if (p1 == p2) {
-					throw new InvalidOrderException("Duplicate product: " + p1);
-				}
-			}
+	/**
+	 * Searches orders from the newest to the oldest using keyset pagination, starting after the given cursor.
+	 * The products of all the orders in the page are fetched with a single additional query.
+	 */
+	@Transactional(readOnly = true, timeoutString = "${cart.transaction.request-timeout:-1}")
+	public Slice<Order> searchOrders(OrderSearch search, @Nullable OrderCursor cursor, int size) {
+		Specification<Order> spec = buildSpecification(search);
+		if (cursor != null) {
+			spec = spec.and(Specifications.seekAfter(Order_.createdAt, cursor.createdAt(), Order_.id, cursor.id(), true));
+		}
+		List<Order> orders = orderRepository.findBy(spec, q -> q
+				.sortBy(Sort.by(Sort.Direction.DESC, Order_.CREATED_AT, Order_.ID))
+				.limit(size + 1)
+				.all());
+		boolean hasNext = orders.size() > size;
+		List<Order> content = hasNext ? orders.subList(0, size) : orders;
+		if (!content.isEmpty()) {
+			// Initializes the products of the orders already in the persistence context
+			orderRepository.findAllWithEagerProductsByIdIn(content.stream().map(Order::getId).toList());
+		}
+		return new SliceImpl<>(content, PageRequest.ofSize(size), hasNext);
+	}
+
+	private static Specification<Order> buildSpecification(OrderSearch search) {
+		Specification<Order> spec = Specification.unrestricted();
+		if (search.createdFrom() != null) {
+			spec = spec.and(Specifications.greaterThanOrEqualTo(Order_.createdAt, search.createdFrom()));
+		}
+		if (search.createdTo() != null) {
+			spec = spec.and(Specifications.lessThan(Order_.createdAt, search.createdTo()));
+		}
+		if (search.minTotalPrice() != null) {
+			spec = spec.and(Specifications.greaterThanOrEqualTo(Order_.totalPrice, search.minTotalPrice()));
+		}
+		if (search.maxTotalPrice() != null) {
+			spec = spec.and(Specifications.lessThanOrEqualTo(Order_.totalPrice, search.maxTotalPrice()));
+		}
+		return spec;
+	}
+
+	private List<ProductQueryDto> findProducts(List<Long> ids) {
+		if (ids.isEmpty()) {
+			return List.of();
+		}
+		return productCache.getAll(ids, this::queryProducts);
+	}
+
+	private List<ProductQueryDto> queryProducts(List<Long> ids) {
+		if (ids.size() <= MAX_IN_PARAMETERS) {
+			return orderRepository.findProductsByIdIn(ids);
+		}
+		var products = new ArrayList<ProductQueryDto>(ids.size());
+		for (int from = 0; from < ids.size(); from += MAX_IN_PARAMETERS) {
+			int to = Math.min(from + MAX_IN_PARAMETERS, ids.size());
+			products.addAll(orderRepository.findProductsByIdIn(ids.subList(from, to)));
+		}
+		return products;
+	}
+
+	/**
+	 * Bucket of the number of products in an order, to tag metrics with a bounded number of values.
+	 */
+	private static String cartSize(OrderRequest request) {
+		int size = request.products() != null ? request.products().size() : 0;
+		if (size <= 1) {
+			return "1";
+		}
+		if (size <= 5) {
+			return "2-5";
+		}
+		if (size <= 20) {
+			return "6-20";
+		}
+		return size <= 100 ? "21-100" : "101+";
+	}
+
+	private void checkValid(OrderRequest request) throws InvalidOrderException {
+		Set<ConstraintViolation<OrderRequest>> violations = validator.validate(request);
+		if (!violations.isEmpty()) {
+			throw new InvalidOrderException(ValidationUtil.firstMessage(violations));
 		}
 	}
 
-	private static void checkAllProductsExist(List<Long> productIds, List<ProductQueryDto> products) throws InvalidOrderException {
-		for (Long id : productIds) {
-			boolean present = products.stream().map(ProductQueryDto::id).anyMatch(id::equals);
-			if (!present) {
-				throw new InvalidOrderException("Product not found: " + id);
+	private static List<ProductQueryDto> lookupProducts(OrderLines lines, Map<Long, ProductQueryDto> productsById) throws InvalidOrderException {
+		var products = new ArrayList<ProductQueryDto>(lines.size());
+		for (Long productId : lines.productIds()) {
+			ProductQueryDto product = productsById.get(productId);
+			if (product == null) {
+				throw new InvalidOrderException("Product not found: " + productId);
 			}
+			products.add(product);
 		}
+		return products;
 	}
 }
@@ -6,5 +6,6 @@ public record ProductQueryDto(
 		Long id,
 		String name,
 		BigDecimal totalPrice,
-		BigDecimal vatRate
+		BigDecimal vatRate,
+		BigDecimal vatAmount
 ) { }
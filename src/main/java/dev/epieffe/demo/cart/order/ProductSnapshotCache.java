@@ -0,0 +1,114 @@
+package dev.epieffe.demo.cart.order;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.epieffe.demo.cart.product.ProductChangedEvent;
+import dev.epieffe.demo.cart.product.ProductsImportedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache of the {@link ProductQueryDto} snapshots used to create orders, keyed by product id.
+ * <p>
+ * Products are evicted after the transaction that changes them commits. Snapshots loaded while a product
+ * change is being committed are discarded, so that a stale snapshot is never kept in the cache. Changes committed
+ * by other instances of the service are not notified, so snapshots also expire after a fixed time.
+ */
+@Component
+public class ProductSnapshotCache implements MeterBinder {
+	private static final String METRIC_NAME = "cart.orders.product.cache";
+
+	private final Cache<Long, ProductQueryDto> cache;
+	// Incremented on each eviction, to detect evictions racing with loads
+	private final AtomicLong generation = new AtomicLong();
+
+	public ProductSnapshotCache(
+			@Value("${cart.orders.product-cache.max-size:100000}") long maxSize,
+			@Value("${cart.orders.product-cache.ttl:1m}") Duration ttl
+	) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * Gets the products with the given ids, loading the ones missing from the cache with the given loader.
+	 * Products not found by the loader are not part of the result.
+	 */
+	public List<ProductQueryDto> getAll(List<Long> ids, Function<List<Long>, List<ProductQueryDto>> loader) {
+		var event = new CacheLookupEvent();
+		event.begin();
+		Map<Long, ProductQueryDto> cached = cache.getAllPresent(ids);
+		if (cached.size() == ids.size()) {
+			commit(event, ids.size(), cached.size());
+			return List.copyOf(cached.values());
+		}
+		var products = new ArrayList<ProductQueryDto>(ids.size());
+		products.addAll(cached.values());
+		var misses = new ArrayList<Long>(ids.size() - cached.size());
+		for (Long id : ids) {
+			if (!cached.containsKey(id)) {
+				misses.add(id);
+			}
+		}
+		long loadGeneration = generation.get();
+		List<ProductQueryDto> loaded = loader.apply(misses);
+		for (ProductQueryDto product : loaded) {
+			cache.put(product.id(), product);
+		}
+		if (generation.get() != loadGeneration) {
+			cache.invalidateAll(misses);
+		}
+		products.addAll(loaded);
+		commit(event, ids.size(), cached.size());
+		return products;
+	}
+
+	public void invalidate(long productId) {
+		generation.incrementAndGet();
+		cache.invalidate(productId);
+	}
+
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		cache.invalidateAll();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChanged(ProductChangedEvent event) {
+		invalidate(event.productId());
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductsImported(ProductsImportedEvent event) {
+		invalidateAll();
+	}
+
+	private static void commit(CacheLookupEvent event, int keys, int hits) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.cache = METRIC_NAME;
+			event.keys = keys;
+			event.hits = hits;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, cache, METRIC_NAME);
+	}
+}
@@ -0,0 +1,10 @@
+package dev.epieffe.demo.cart.product;
+
+import dev.epieffe.demo.cart.util.CartBusinessException;
+
+public class InvalidProductFieldsException extends CartBusinessException {
+
+	public InvalidProductFieldsException(String msg) {
+		super(msg);
+	}
+}
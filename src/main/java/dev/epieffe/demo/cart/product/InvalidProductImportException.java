@@ -0,0 +1,10 @@
+package dev.epieffe.demo.cart.product;
+
+import dev.epieffe.demo.cart.util.CartBusinessException;
+
+public class InvalidProductImportException extends CartBusinessException {
+
+	public InvalidProductImportException(String msg) {
+		super(msg);
+	}
+}
@@ -7,6 +7,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import org.jspecify.annotations.NullUnmarked;
 
 import java.math.BigDecimal;
@@ -34,6 +35,16 @@ public class Product {
 	@Column(name = "vat_rate")
 	private BigDecimal vatRate;
 
+	@Column(name = "net_price")
+	private BigDecimal netPrice;
+
+	@Column(name = "vat_amount")
+	private BigDecimal vatAmount;
+
+	@Version
+	@Column(name = "version")
+	private Long version;
+
 	public Long getId() {
 		return id;
 	}
@@ -74,6 +85,30 @@ public class Product {
 		this.vatRate = vatRate;
 	}
 
+	public BigDecimal getNetPrice() {
+		return netPrice;
+	}
+
+	public void setNetPrice(BigDecimal netPrice) {
+		this.netPrice = netPrice;
+	}
+
+	public BigDecimal getVatAmount() {
+		return vatAmount;
+	}
+
+	public void setVatAmount(BigDecimal vatAmount) {
+		this.vatAmount = vatAmount;
+	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -88,6 +123,6 @@ public class Product {
 
 	@Override
 	public String toString() {
-		return "Product{" + "id=" + id + ", name='" + name + '\'' + ", description='" + description + '\'' + ", totalPrice=" + totalPrice + ", vatRate=" + vatRate + '}';
+		return "Product{" + "id=" + id + ", name='" + name + '\'' + ", description='" + description + '\'' + ", totalPrice=" + totalPrice + ", vatRate=" + vatRate + ", netPrice=" + netPrice + ", vatAmount=" + vatAmount + ", version=" + version + '}';
 	}
 }
@@ -0,0 +1,426 @@
+package dev.epieffe.demo.cart.product;
+
+import dev.epieffe.demo.cart.util.LongIndexMap;
+import dev.epieffe.demo.cart.util.Money;
+import org.jspecify.annotations.Nullable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable in-memory snapshot of the product catalog, searched by {@link ProductSearchEngine}.
+ * <p>
+ * Rows are sorted by id and each attribute is stored in its own primitive array, with prices in cents and
+ * interned strings. A trigram index maps each sequence of three characters of the lowercase names to the rows
+ * containing it. Name searches that the index narrows down to a few candidates only check the candidates, while
+ * the other searches scan the rows in the requested order, in partitions evaluated in parallel.
+ * <p>
+ * Changes do not rebuild the arrays and the index: the changed rows are masked, and their new versions are kept
+ * aside and merged with the results of each search, until they are too many and a new catalog is built.
+ */
+final class ProductCatalog {
+	enum SortKey { ID, TOTAL_PRICE }
+
+	record Row(long id, String name, String description, long totalCents, int vatRateUnits, long netCents, long vatCents, long version) { }
+
+	/**
+	 * Products with a name containing the given lowercase value, if not null, and a total price strictly between
+	 * the given bounds in cents.
+	 */
+	record Query(@Nullable String name, long minCentsExclusive, long maxCentsExclusive) { }
+
+	// Splitting a scan in smaller partitions costs more than it saves
+	private static final int PARTITION_SIZE = 1 << 16;
+	// Index candidates are checked one by one only when they are a small fraction of the catalog
+	private static final int MAX_CANDIDATES_FRACTION = 8;
+	// Changes are merged with the rows in new arrays once they are too many to check on every search
+	private static final int MAX_CHANGES_FRACTION = 16;
+	private static final int MIN_MAX_CHANGES = 1024;
+	private static final int[] NO_ROWS = new int[0];
+	private static final Row[] NO_CHANGES = new Row[0];
+	private static final Comparator<Row> ID_ORDER = Comparator.comparingLong(Row::id);
+	private static final Comparator<Row> PRICE_ORDER = Comparator.comparingLong(Row::totalCents).thenComparing(ID_ORDER);
+
+	private final long generation;
+	private final int size;
+	private final long[] ids;
+	private final String[] names;
+	private final String[] lowerNames;
+	private final String[] descriptions;
+	private final long[] totalCents;
+	private final int[] vatRateUnits;
+	private final long[] netCents;
+	private final long[] vatCents;
+	private final long[] versions;
+	// Rows sorted by total price and then by id, and the position of each row in that order
+	private final int[] byPrice;
+	private final int[] priceRanks;
+	private final LongIndexMap trigrams;
+	private final int[][] postings;
+	// Rows replaced or removed by the changes, and the new rows sorted by id with their lowercase names
+	private final BitSet removed;
+	private final Row[] changes;
+	private final String[] lowerChangeNames;
+	private final int liveSize;
+
+	/**
+	 * Builds a catalog from rows with distinct ids, in any order.
+	 */
+	static ProductCatalog of(Collection<Row> rows, long generation) {
+		return new ProductCatalog(rows.stream().sorted(ID_ORDER).toList(), generation);
+	}
+
+	private ProductCatalog(List<Row> rows, long generation) {
+		this.generation = generation;
+		this.size = rows.size();
+		this.ids = new long[size];
+		this.names = new String[size];
+		this.lowerNames = new String[size];
+		this.descriptions = new String[size];
+		this.totalCents = new long[size];
+		this.vatRateUnits = new int[size];
+		this.netCents = new long[size];
+		this.vatCents = new long[size];
+		this.versions = new long[size];
+		Map<String, String> strings = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			Row row = rows.get(i);
+			ids[i] = row.id();
+			names[i] = strings.computeIfAbsent(row.name(), s -> s);
+			lowerNames[i] = strings.computeIfAbsent(row.name().toLowerCase(Locale.ROOT), s -> s);
+			descriptions[i] = strings.computeIfAbsent(row.description(), s -> s);
+			totalCents[i] = row.totalCents();
+			vatRateUnits[i] = row.vatRateUnits();
+			netCents[i] = row.netCents();
+			vatCents[i] = row.vatCents();
+			versions[i] = row.version();
+		}
+		this.byPrice = IntStream.range(0, size).boxed()
+				.sorted(Comparator.<Integer>comparingLong(i -> totalCents[i]).thenComparingInt(i -> i))
+				.mapToInt(Integer::intValue)
+				.toArray();
+		this.priceRanks = new int[size];
+		for (int rank = 0; rank < size; rank++) {
+			priceRanks[byPrice[rank]] = rank;
+		}
+		this.trigrams = new LongIndexMap(Math.max(16, size));
+		this.postings = buildPostings();
+		this.removed = new BitSet();
+		this.changes = NO_CHANGES;
+		this.lowerChangeNames = new String[0];
+		this.liveSize = size;
+	}
+
+	private ProductCatalog(ProductCatalog base, BitSet removed, Row[] changes, long generation) {
+		this.generation = generation;
+		this.size = base.size;
+		this.ids = base.ids;
+		this.names = base.names;
+		this.lowerNames = base.lowerNames;
+		this.descriptions = base.descriptions;
+		this.totalCents = base.totalCents;
+		this.vatRateUnits = base.vatRateUnits;
+		this.netCents = base.netCents;
+		this.vatCents = base.vatCents;
+		this.versions = base.versions;
+		this.byPrice = base.byPrice;
+		this.priceRanks = base.priceRanks;
+		this.trigrams = base.trigrams;
+		this.postings = base.postings;
+		this.removed = removed;
+		this.changes = changes;
+		this.lowerChangeNames = new String[changes.length];
+		for (int i = 0; i < changes.length; i++) {
+			lowerChangeNames[i] = changes[i].name().toLowerCase(Locale.ROOT);
+		}
+		this.liveSize = size - removed.cardinality() + changes.length;
+	}
+
+	long generation() {
+		return generation;
+	}
+
+	int size() {
+		return liveSize;
+	}
+
+	/**
+	 * Returns a new catalog where the rows with the given ids are replaced by the given rows, or removed
+	 * when there is no new row with the same id.
+	 */
+	ProductCatalog withChanges(Collection<Long> changedIds, Collection<Row> changedRows, long generation) {
+		Set<Long> changed = new HashSet<>(changedIds);
+		changedRows.forEach(row -> changed.add(row.id()));
+		BitSet removed = (BitSet) this.removed.clone();
+		for (long id : changed) {
+			int row = Arrays.binarySearch(ids, id);
+			if (row >= 0) {
+				removed.set(row);
+			}
+		}
+		List<Row> newChanges = new ArrayList<>(changedRows);
+		for (Row row : changes) {
+			if (!changed.contains(row.id())) {
+				newChanges.add(row);
+			}
+		}
+		if (removed.cardinality() + newChanges.size() > Math.max(MIN_MAX_CHANGES, size / MAX_CHANGES_FRACTION)) {
+			List<Row> rows = new ArrayList<>(size - removed.cardinality() + newChanges.size());
+			for (int i = removed.nextClearBit(0); i < size; i = removed.nextClearBit(i + 1)) {
+				rows.add(row(i));
+			}
+			rows.addAll(newChanges);
+			return of(rows, generation);
+		}
+		newChanges.sort(ID_ORDER);
+		return new ProductCatalog(this, removed, newChanges.toArray(NO_CHANGES), generation);
+	}
+
+	Slice<Product> search(Query query, SortKey key, boolean descending, Pageable pageable) {
+		long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+		long end = pageable.isPaged() ? offset + pageable.getPageSize() : Integer.MAX_VALUE;
+		// One more row than requested tells whether there is a next slice
+		int limit = (int) Math.min(end + 1, Integer.MAX_VALUE);
+		int[] rows = candidateSearch(query, key, descending, limit);
+		if (rows == null) {
+			rows = scan(query, key, descending, limit);
+		}
+		List<Row> changed = matchingChanges(query, key, descending);
+		List<Product> content = new ArrayList<>();
+		int next = 0;
+		int nextChanged = 0;
+		for (long i = 0; i < end && (next < rows.length || nextChanged < changed.size()); i++) {
+			boolean fromRows = nextChanged == changed.size()
+					|| next < rows.length && compare(rows[next], changed.get(nextChanged), key, descending) < 0;
+			if (i >= offset) {
+				content.add(product(fromRows ? row(rows[next]) : changed.get(nextChanged)));
+			}
+			if (fromRows) {
+				next++;
+			} else {
+				nextChanged++;
+			}
+		}
+		return new SliceImpl<>(content, pageable, next < rows.length || nextChanged < changed.size());
+	}
+
+	/**
+	 * Changed rows matching the query, in the requested order.
+	 */
+	private List<Row> matchingChanges(Query query, SortKey key, boolean descending) {
+		if (changes.length == 0) {
+			return List.of();
+		}
+		List<Row> matching = new ArrayList<>();
+		for (int i = 0; i < changes.length; i++) {
+			if (matches(changes[i].totalCents(), lowerChangeNames[i], query)) {
+				matching.add(changes[i]);
+			}
+		}
+		Comparator<Row> order = key == SortKey.ID ? ID_ORDER : PRICE_ORDER;
+		matching.sort(descending ? order.reversed() : order);
+		return matching;
+	}
+
+	private int compare(int row, Row changed, SortKey key, boolean descending) {
+		int result = key == SortKey.ID ? 0 : Long.compare(totalCents[row], changed.totalCents());
+		if (result == 0) {
+			result = Long.compare(ids[row], changed.id());
+		}
+		return descending ? -result : result;
+	}
+
+	/**
+	 * Checks the candidates found by the trigram index, or returns null if the index cannot narrow down
+	 * the search to a few candidates.
+	 */
+	private int @Nullable [] candidateSearch(Query query, SortKey key, boolean descending, int limit) {
+		if (query.name() == null || query.name().length() < 3) {
+			return null;
+		}
+		int[] candidates = candidates(query.name());
+		if (candidates.length > size / MAX_CANDIDATES_FRACTION) {
+			return null;
+		}
+		int[] matches = new int[candidates.length];
+		int count = 0;
+		for (int row : candidates) {
+			if (matches(row, query)) {
+				matches[count++] = key == SortKey.ID ? row : priceRanks[row];
+			}
+		}
+		matches = Arrays.copyOf(matches, count);
+		// Rows are sorted by id, and price ranks by price
+		Arrays.sort(matches);
+		int[] rows = new int[Math.min(count, limit)];
+		for (int i = 0; i < rows.length; i++) {
+			int position = descending ? count - 1 - i : i;
+			rows[i] = key == SortKey.ID ? matches[position] : byPrice[matches[position]];
+		}
+		return rows;
+	}
+
+	/**
+	 * Rows whose lowercase name contains all the trigrams of the given value, in ascending order.
+	 */
+	private int[] candidates(String name) {
+		int[][] lists = new int[name.length() - 2][];
+		for (int i = 0; i < lists.length; i++) {
+			int t = trigrams.get(trigram(name, i));
+			if (t == LongIndexMap.ABSENT) {
+				return NO_ROWS;
+			}
+			lists[i] = postings[t];
+		}
+		Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+		int[] result = lists[0];
+		for (int i = 1; i < lists.length && result.length > 0; i++) {
+			result = intersect(result, lists[i]);
+		}
+		return result;
+	}
+
+	private static int[] intersect(int[] smaller, int[] larger) {
+		int[] result = new int[smaller.length];
+		int count = 0;
+		int from = 0;
+		for (int row : smaller) {
+			int found = Arrays.binarySearch(larger, from, larger.length, row);
+			if (found >= 0) {
+				result[count++] = row;
+				from = found + 1;
+			} else {
+				from = -found - 1;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Scans the rows in the requested order and returns the first matching ones. Each partition of the order
+	 * collects its own first matches, so that the partitions can be scanned in parallel and concatenated.
+	 */
+	private int[] scan(Query query, SortKey key, boolean descending, int limit) {
+		int partitions = Math.max(1, (size + PARTITION_SIZE - 1) / PARTITION_SIZE);
+		if (partitions == 1) {
+			return scan(query, key, descending, 0, size, limit);
+		}
+		List<int[]> results = IntStream.range(0, partitions).parallel()
+				.mapToObj(p -> scan(query, key, descending, p * PARTITION_SIZE, Math.min(size, (p + 1) * PARTITION_SIZE), limit))
+				.toList();
+		int count = 0;
+		for (int[] result : results) {
+			count = (int) Math.min((long) count + result.length, limit);
+		}
+		int[] rows = new int[count];
+		int offset = 0;
+		for (int[] result : results) {
+			int length = Math.min(result.length, count - offset);
+			System.arraycopy(result, 0, rows, offset, length);
+			offset += length;
+		}
+		return rows;
+	}
+
+	private int[] scan(Query query, SortKey key, boolean descending, int from, int to, int limit) {
+		int[] rows = new int[Math.min(to - from, Math.min(limit, 1024))];
+		int count = 0;
+		for (int position = from; position < to && count < limit; position++) {
+			int ordered = descending ? size - 1 - position : position;
+			int row = key == SortKey.ID ? ordered : byPrice[ordered];
+			if (matches(row, query)) {
+				if (count == rows.length) {
+					rows = Arrays.copyOf(rows, Math.min(to - from, count * 2));
+				}
+				rows[count++] = row;
+			}
+		}
+		return Arrays.copyOf(rows, count);
+	}
+
+	private boolean matches(int row, Query query) {
+		return matches(totalCents[row], lowerNames[row], query) && !removed.get(row);
+	}
+
+	private static boolean matches(long totalCents, String lowerName, Query query) {
+		return totalCents > query.minCentsExclusive()
+				&& totalCents < query.maxCentsExclusive()
+				&& (query.name() == null || lowerName.contains(query.name()));
+	}
+
+	private int[][] buildPostings() {
+		// Number of rows containing each trigram, and the last row that was counted for each trigram,
+		// so that a trigram repeated in the same name is counted once
+		int[] counts = new int[1024];
+		int[] lastRows = new int[1024];
+		int distinct = 0;
+		for (int row = 0; row < size; row++) {
+			String name = lowerNames[row];
+			for (int i = 0; i + 3 <= name.length(); i++) {
+				int t = trigrams.putIfAbsent(trigram(name, i), distinct);
+				if (t == LongIndexMap.ABSENT) {
+					t = distinct++;
+					if (t == counts.length) {
+						counts = Arrays.copyOf(counts, t * 2);
+						lastRows = Arrays.copyOf(lastRows, t * 2);
+					}
+					lastRows[t] = -1;
+				}
+				if (lastRows[t] != row) {
+					lastRows[t] = row;
+					counts[t]++;
+				}
+			}
+		}
+		int[][] lists = new int[distinct][];
+		for (int t = 0; t < distinct; t++) {
+			lists[t] = new int[counts[t]];
+			counts[t] = 0;
+		}
+		for (int row = 0; row < size; row++) {
+			String name = lowerNames[row];
+			for (int i = 0; i + 3 <= name.length(); i++) {
+				int t = trigrams.get(trigram(name, i));
+				int[] list = lists[t];
+				if (counts[t] == 0 || list[counts[t] - 1] != row) {
+					list[counts[t]++] = row;
+				}
+			}
+		}
+		return lists;
+	}
+
+	private static long trigram(String value, int index) {
+		return (long) value.charAt(index) << 32 | (long) value.charAt(index + 1) << 16 | value.charAt(index + 2);
+	}
+
+	private Row row(int row) {
+		return new Row(ids[row], names[row], descriptions[row], totalCents[row], vatRateUnits[row], netCents[row], vatCents[row], versions[row]);
+	}
+
+	private static Product product(Row row) {
+		var product = new Product();
+		product.setId(row.id());
+		product.setName(row.name());
+		product.setDescription(row.description());
+		product.setTotalPrice(Money.fromCents(row.totalCents()));
+		product.setVatRate(Money.fromRateUnits(row.vatRateUnits()));
+		product.setNetPrice(Money.fromCents(row.netCents()));
+		product.setVatAmount(Money.fromCents(row.vatCents()));
+		product.setVersion(row.version());
+		return product;
+	}
+}
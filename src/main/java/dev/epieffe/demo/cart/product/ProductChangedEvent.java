@@ -0,0 +1,6 @@
+package dev.epieffe.demo.cart.product;
+
+/**
+ * Published when a product is created, updated or deleted. Listeners caching product data should evict the product.
+ */
+public record ProductChangedEvent(long productId) { }
@@ -1,5 +1,7 @@
 package dev.epieffe.demo.cart.product;
 
+import dev.epieffe.demo.cart.util.InvalidCursorException;
+import dev.epieffe.demo.cart.util.PreconditionFailedException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -8,12 +10,16 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,20 +27,33 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.CRC32;
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductController {
 	private static final Logger LOG = LoggerFactory.getLogger(ProductController.class);
 
+	private static final String TEXT_CSV_VALUE = "text/csv";
+
 	private final ProductService productService;
+	private final ProductImportService importService;
 
-	public ProductController(ProductService productService) {
+	public ProductController(ProductService productService, ProductImportService importService) {
 		this.productService = productService;
+		this.importService = importService;
 	}
 
 	@Operation(
@@ -58,6 +77,7 @@ public class ProductController {
 		Product product = productService.createProduct(request);
 		LOG.info("Created product with id: {}", product.getId());
 		return ResponseEntity.status(HttpStatus.CREATED)
+				.eTag(etag(product))
 				.body(ProductMapper.toResponse(product));
 	}
 
@@ -70,18 +90,32 @@ public class ProductController {
 					description = "Product found",
 					content = @Content(mediaType = "application/json",
 							schema = @Schema(implementation = ProductResponse.class))),
+			@ApiResponse(
+					responseCode = "304",
+					description = "Product not modified since the version in If-None-Match"),
 			@ApiResponse(
 					responseCode = "404",
 					description = "Product not found",
 					content = @Content(mediaType = "application/json"))})
 	@GetMapping("/{id}")
 	public ResponseEntity<ProductResponse> getProductById(
-			@Parameter(description = "Product id", example = "1") @PathVariable Long id
+			@Parameter(description = "Product id", example = "1") @PathVariable Long id,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) @Nullable String ifNoneMatch
 	) {
 		LOG.info("Received request to get product by id: {}", id);
+		if (ifNoneMatch != null) {
+			// Only the version is needed to tell whether the client copy is up to date
+			Optional<Long> version = productService.getProductVersion(id);
+			if (version.isEmpty()) {
+				return ResponseEntity.notFound().build();
+			}
+			String etag = etag(id, version.get());
+			if (ETag.parse(ifNoneMatch).stream().anyMatch(tag -> tag.isWildcard() || tag.compare(ETag.create(etag), false))) {
+				return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+			}
+		}
 		return productService.getProductById(id)
-				.map(ProductMapper::toResponse)
-				.map(ResponseEntity::ok)
+				.map(p -> ResponseEntity.ok().eTag(etag(p)).body(ProductMapper.toResponse(p)))
 				.orElse(ResponseEntity.notFound().build());
 	}
 
@@ -99,16 +133,21 @@ public class ProductController {
 					@ApiResponse(
 							responseCode = "400",
 							description = "Invalid product data",
+							content = @Content(mediaType = "application/json")),
+					@ApiResponse(
+							responseCode = "412",
+							description = "Product modified since the version in If-Match",
 							content = @Content(mediaType = "application/json"))})
 	@PutMapping("/{id}")
 	public ResponseEntity<ProductResponse> updateProduct(
 			@Parameter(description = "Product id", example = "1") @PathVariable Long id,
+			@Parameter(description = "ETag of the product to update, the update fails if the product was modified since")
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) @Nullable String ifMatch,
 			@RequestBody @Valid ProductRequest request
-	) {
+	) throws PreconditionFailedException {
 		LOG.info("Received request to update product {}: {}", id, request);
-		return productService.updateProduct(id, request)
-				.map(ProductMapper::toResponse)
-				.map(ResponseEntity::ok)
+		return productService.updateProduct(id, request, ifMatch != null ? matchedVersions(id, ifMatch) : null)
+				.map(p -> ResponseEntity.ok().eTag(etag(p)).body(ProductMapper.toResponse(p)))
 				.orElse(ResponseEntity.notFound().build());
 	}
 
@@ -132,24 +171,121 @@ public class ProductController {
 
 	@Operation(
 			summary = "Search products",
-			description = "Search products with pagination and optional filter criteria.")
+			description = "Search products with pagination and optional filter criteria. "
+					+ "When results are sorted by id, name or totalPrice, or not sorted, and more results are available, "
+					+ "the X-Next-Cursor header contains a cursor to pass to get the next page without an offset. "
+					+ "The fields parameter limits the fields returned for each product, and the columns queried. "
+					+ "The weak ETag changes when any product of the page changes.")
 	@ApiResponses(value = {
 			@ApiResponse(
 					responseCode = "200",
 					description = "List of matching products",
 					content = @Content(
 							mediaType = "application/json",
-							array = @ArraySchema(schema = @Schema(implementation = ProductResponse.class))))})
+							array = @ArraySchema(schema = @Schema(implementation = ProductResponse.class)))),
+			@ApiResponse(
+					responseCode = "400",
+					description = "Invalid cursor or fields",
+					content = @Content(mediaType = "application/json"))})
 	@GetMapping
 	public ResponseEntity<List<ProductResponse>> searchProducts(
 			ProductSearch search,
+			@Parameter(description = "Cursor returned in the X-Next-Cursor header of the previous page, "
+					+ "replaces the page and sort parameters")
+			@RequestParam(required = false) @Nullable String cursor,
+			@Parameter(description = "Comma-separated fields to return for each product, all fields if missing",
+					example = "id,name,totalPrice")
+			@RequestParam(required = false) @Nullable String fields,
 			@ParameterObject Pageable pageable
-	) {
-		LOG.info("Received request to search products: {}, {}", search, pageable);
-		Slice<ProductResponse> result = productService.searchProducts(search, pageable)
-				.map(ProductMapper::toResponse);
-		return ResponseEntity.ok()
-				.header("X-Has-Next", String.valueOf(result.hasNext()))
-				.body(result.getContent());
+	) throws InvalidCursorException, InvalidProductFieldsException {
+		LOG.info("Received request to search products: {}, cursor={}, fields={}, {}", search, cursor, fields, pageable);
+		Set<ProductField> productFields = ProductField.parse(fields);
+		Slice<Product> result = cursor != null
+				? productService.searchProducts(search, productFields, ProductCursor.decode(cursor), pageable.getPageSize())
+				: productService.searchProducts(search, productFields, pageable);
+		var response = ResponseEntity.ok()
+				.header("X-Has-Next", String.valueOf(result.hasNext()));
+		ProductCursor next = ProductCursor.next(result);
+		if (next != null) {
+			response.header("X-Next-Cursor", next.encode());
+		}
+		return response.eTag(searchETag(result, productFields))
+				.body(result.map(p -> ProductMapper.toResponse(p, productFields)).getContent());
+	}
+
+	@Operation(
+			summary = "Import products",
+			description = "Create or update products in bulk from a CSV file with a header row, or from newline-delimited JSON. "
+					+ "Rows with an id update the existing product with that id, rows without an id create a new product. "
+					+ "Invalid rows are rejected without affecting the others.")
+	@ApiResponses(value = {
+			@ApiResponse(
+					responseCode = "200",
+					description = "Import completed, see the rejected rows",
+					content = @Content(
+							mediaType = "application/json",
+							schema = @Schema(implementation = ProductImportResponse.class))),
+			@ApiResponse(
+					responseCode = "400",
+					description = "Malformed input",
+					content = @Content(mediaType = "application/json"))})
+	@PostMapping(value = "/import", consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+	public ResponseEntity<ProductImportResponse> importProducts(
+			@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+			InputStream body
+	) throws InvalidProductImportException {
+		ProductImportReader.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+				? ProductImportReader.Format.NDJSON
+				: ProductImportReader.Format.CSV;
+		LOG.info("Received request to import products from {}", format);
+		ProductImportResponse response = importService.importProducts(body, format);
+		LOG.info("Imported products: {} created, {} updated, {} rejected", response.created(), response.updated(), response.rejected());
+		return ResponseEntity.ok(response);
+	}
+
+	private static String etag(Product product) {
+		return etag(product.getId(), product.getVersion());
+	}
+
+	private static String etag(Long id, Long version) {
+		return "\"" + id + "-" + version + "\"";
+	}
+
+	/**
+	 * The versions of the product with the given id matched by an If-Match header, or null if it matches any.
+	 * Weak tags never match.
+	 */
+	private static @Nullable Set<Long> matchedVersions(Long id, String ifMatch) {
+		String prefix = id + "-";
+		Set<Long> versions = new HashSet<>();
+		for (ETag tag : ETag.parse(ifMatch)) {
+			if (tag.isWildcard()) {
+				return null;
+			}
+			if (!tag.weak() && tag.tag().startsWith(prefix)) {
+				try {
+					versions.add(Long.parseLong(tag.tag().substring(prefix.length())));
+				} catch (NumberFormatException e) {
+					// Not a tag of this product, it matches no version
+				}
+			}
+		}
+		return versions;
+	}
+
+	/**
+	 * Weak tag of a page of search results, computed from the ids and versions of the products rather than from
+	 * the response body.
+	 */
+	private static String searchETag(Slice<Product> result, Set<ProductField> fields) {
+		var buffer = ByteBuffer.allocate(Integer.BYTES + 1 + result.getNumberOfElements() * 2 * Long.BYTES);
+		buffer.putInt(fields.stream().mapToInt(field -> 1 << field.ordinal()).sum());
+		buffer.put((byte) (result.hasNext() ? 1 : 0));
+		for (Product product : result) {
+			buffer.putLong(product.getId()).putLong(product.getVersion());
+		}
+		var crc = new CRC32();
+		crc.update(buffer.flip());
+		return "W/\"" + HexFormat.of().toHexDigits((int) crc.getValue()) + "\"";
 	}
 }
@@ -0,0 +1,111 @@
+package dev.epieffe.demo.cart.product;
+
+import dev.epieffe.demo.cart.util.CursorCodec;
+import dev.epieffe.demo.cart.util.InvalidCursorException;
+import org.jspecify.annotations.Nullable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Position in the list of products sorted by id, or by name or total price and then by id, all in the same
+ * direction. The cursor carries its own sort, so that the next pages keep the sort of the first one.
+ */
+public record ProductCursor(
+		Key key,
+		Sort.Direction direction,
+		String value,
+		long id
+) {
+	public enum Key {
+		ID(Product_.ID),
+		NAME(Product_.NAME),
+		TOTAL_PRICE(Product_.TOTAL_PRICE);
+
+		private final String property;
+
+		Key(String property) {
+			this.property = property;
+		}
+
+		public String property() {
+			return property;
+		}
+
+		/**
+		 * Sort by this key and then by id, in the given direction.
+		 */
+		public Sort sort(Sort.Direction direction) {
+			return this == ID ? Sort.by(direction, Product_.ID) : Sort.by(direction, property, Product_.ID);
+		}
+
+		/**
+		 * The key of a sort by a single property supported by cursors, optionally followed by id in the same
+		 * direction, or null for any other sort.
+		 */
+		public static @Nullable Key of(Sort sort) {
+			List<Sort.Order> orders = sort.toList();
+			if (orders.isEmpty() || orders.size() > 2) {
+				return null;
+			}
+			Sort.Order first = orders.getFirst();
+			if (orders.size() == 2) {
+				Sort.Order second = orders.get(1);
+				if (!second.getProperty().equals(Product_.ID) || second.getDirection() != first.getDirection()) {
+					return null;
+				}
+			}
+			for (Key key : values()) {
+				if (key.property.equals(first.getProperty())) {
+					return key;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * The cursor to get the slice after the given one, or null if there are no more results or the slice is not
+	 * sorted by a key supported by cursors.
+	 */
+	public static @Nullable ProductCursor next(Slice<Product> slice) {
+		Key key = Key.of(slice.getSort());
+		if (!slice.hasNext() || !slice.hasContent() || key == null) {
+			return null;
+		}
+		Product last = slice.getContent().getLast();
+		String value = switch (key) {
+			case ID -> "";
+			case NAME -> last.getName();
+			case TOTAL_PRICE -> last.getTotalPrice().toPlainString();
+		};
+		return new ProductCursor(key, slice.getSort().iterator().next().getDirection(), value, last.getId());
+	}
+
+	public static ProductCursor decode(String token) throws InvalidCursorException {
+		String[] values = CursorCodec.decode(token, 4);
+		try {
+			var cursor = new ProductCursor(Key.valueOf(values[0]), Sort.Direction.valueOf(values[1]), values[2], Long.parseLong(values[3]));
+			if (cursor.key == Key.TOTAL_PRICE) {
+				cursor.totalPrice();
+			}
+			return cursor;
+		} catch (IllegalArgumentException e) {
+			throw new InvalidCursorException("Invalid cursor");
+		}
+	}
+
+	public String encode() {
+		return CursorCodec.encode(key.name(), direction.name(), value, Long.toString(id));
+	}
+
+	public Sort sort() {
+		return key.sort(direction);
+	}
+
+	public BigDecimal totalPrice() {
+		return new BigDecimal(value);
+	}
+}
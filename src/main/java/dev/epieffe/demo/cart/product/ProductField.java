@@ -0,0 +1,71 @@
+package dev.epieffe.demo.cart.product;
+
+import org.jspecify.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Product attribute that can be requested in a sparse fieldset, named as the {@link ProductResponse} field
+ * it is serialized to.
+ */
+public enum ProductField {
+	ID(Product_.ID, (p, v) -> p.setId((Long) v)),
+	NAME(Product_.NAME, (p, v) -> p.setName((String) v)),
+	DESCRIPTION(Product_.DESCRIPTION, (p, v) -> p.setDescription((String) v)),
+	TOTAL_PRICE(Product_.TOTAL_PRICE, (p, v) -> p.setTotalPrice((BigDecimal) v)),
+	NET_PRICE(Product_.NET_PRICE, (p, v) -> p.setNetPrice((BigDecimal) v)),
+	VAT_AMOUNT(Product_.VAT_AMOUNT, (p, v) -> p.setVatAmount((BigDecimal) v)),
+	VAT_RATE(Product_.VAT_RATE, (p, v) -> p.setVatRate((BigDecimal) v));
+
+	public static final Set<ProductField> ALL = Collections.unmodifiableSet(EnumSet.allOf(ProductField.class));
+
+	private final String property;
+	private final BiConsumer<Product, Object> setter;
+
+	ProductField(String property, BiConsumer<Product, Object> setter) {
+		this.property = property;
+		this.setter = setter;
+	}
+
+	public String property() {
+		return property;
+	}
+
+	void set(Product product, Object value) {
+		setter.accept(product, value);
+	}
+
+	/**
+	 * The field with the given name, or null if there is none.
+	 */
+	public static @Nullable ProductField of(String name) {
+		for (ProductField field : values()) {
+			if (field.property.equals(name)) {
+				return field;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parses a comma-separated list of field names, or returns all the fields if the list is null or blank.
+	 */
+	public static Set<ProductField> parse(@Nullable String fields) throws InvalidProductFieldsException {
+		if (fields == null || fields.isBlank()) {
+			return ALL;
+		}
+		Set<ProductField> result = EnumSet.noneOf(ProductField.class);
+		for (String name : fields.split(",")) {
+			ProductField field = of(name.strip());
+			if (field == null) {
+				throw new InvalidProductFieldsException("Unknown product field: " + name.strip());
+			}
+			result.add(field);
+		}
+		return result.size() == ALL.size() ? ALL : result;
+	}
+}
@@ -0,0 +1,148 @@
+package dev.epieffe.demo.cart.product;
+
+import dev.epieffe.demo.cart.util.ValidationUtil;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.csv.CsvMapper;
+import tools.jackson.dataformat.csv.CsvReadFeature;
+import tools.jackson.dataformat.csv.CsvSchema;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Reads and validates the rows of a product import one at a time, so that inputs of any size can be streamed.
+ * <p>
+ * CSV inputs must have a header row naming the columns ({@code id}, {@code name}, {@code description},
+ * {@code totalPrice}, {@code vatRate}). NDJSON inputs have one JSON object per line with the same properties.
+ * Rows are validated with the same rules as {@link ProductRequest}, plus the limits of the product table columns.
+ */
+@Component
+public class ProductImportReader {
+	public enum Format { CSV, NDJSON }
+
+	public interface RowHandler {
+
+		void accept(long row, ProductImportRow product);
+
+		void reject(long row, String error);
+	}
+
+	// Limits of the product table columns
+	private static final int MAX_NAME_LENGTH = 255;
+	private static final int MAX_PRICE_INTEGER_DIGITS = 14;
+	private static final int MAX_RATE_INTEGER_DIGITS = 4;
+
+	private final Validator validator;
+	private final JsonMapper jsonMapper = JsonMapper.builder().build();
+	private final ObjectReader csvReader = CsvMapper.builder()
+			.enable(CsvReadFeature.EMPTY_STRING_AS_NULL)
+			.enable(CsvReadFeature.TRIM_SPACES)
+			.enable(CsvReadFeature.SKIP_EMPTY_LINES)
+			.build()
+			.readerFor(ProductImportRow.class)
+			.with(CsvSchema.emptySchema().withHeader());
+
+	public ProductImportReader(Validator validator) {
+		this.validator = validator;
+	}
+
+	/**
+	 * Reads all the rows of the input, passing each row to the handler as soon as it is read.
+	 * Row numbers start from 1 for the first data row.
+	 *
+	 * @throws InvalidProductImportException if the input is malformed and reading cannot continue
+	 */
+	public void read(InputStream in, Format format, RowHandler handler) throws InvalidProductImportException {
+		switch (format) {
+			case CSV -> readCsv(in, handler);
+			case NDJSON -> readNdjson(in, handler);
+		}
+	}
+
+	private void readCsv(InputStream in, RowHandler handler) throws InvalidProductImportException {
+		long row = 0;
+		try (MappingIterator<ProductImportRow> rows = csvReader.readValues(in)) {
+			while (rows.hasNextValue()) {
+				row++;
+				ProductImportRow product;
+				try {
+					product = rows.nextValue();
+				} catch (JacksonException e) {
+					// The iterator skips the rest of the row on the next call
+					handler.reject(row, "Malformed row: " + e.getOriginalMessage());
+					continue;
+				}
+				handle(row, product, handler);
+			}
+		} catch (JacksonException e) {
+			throw new InvalidProductImportException("Malformed CSV input after row " + row + ": " + e.getOriginalMessage());
+		}
+	}
+
+	private void readNdjson(InputStream in, RowHandler handler) {
+		var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		long row = 0;
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank()) {
+					continue;
+				}
+				row++;
+				ProductImportRow product;
+				try {
+					product = jsonMapper.readValue(line, ProductImportRow.class);
+				} catch (JacksonException e) {
+					handler.reject(row, "Malformed row: " + e.getOriginalMessage());
+					continue;
+				}
+				handle(row, product, handler);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void handle(long row, ProductImportRow product, RowHandler handler) {
+		@Nullable String error = validate(product);
+		if (error == null) {
+			handler.accept(row, product);
+		} else {
+			handler.reject(row, error);
+		}
+	}
+
+	private @Nullable String validate(ProductImportRow product) {
+		Set<ConstraintViolation<ProductRequest>> violations = validator.validate(product.toRequest());
+		if (!violations.isEmpty()) {
+			return ValidationUtil.firstMessage(violations);
+		}
+		if (product.name().length() > MAX_NAME_LENGTH) {
+			return "Product name must be at most " + MAX_NAME_LENGTH + " characters long";
+		}
+		if (integerDigits(product.totalPrice()) > MAX_PRICE_INTEGER_DIGITS) {
+			return "Product totalPrice is too large";
+		}
+		if (integerDigits(product.vatRate()) > MAX_RATE_INTEGER_DIGITS) {
+			return "Product vatRate is too large";
+		}
+		return null;
+	}
+
+	private static int integerDigits(BigDecimal value) {
+		return value.precision() - value.scale();
+	}
+}
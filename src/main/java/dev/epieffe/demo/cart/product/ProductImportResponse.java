@@ -0,0 +1,36 @@
+package dev.epieffe.demo.cart.product;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Product import result")
+public record ProductImportResponse(
+		@Schema(description = "Number of products created", example = "1999990")
+		long created,
+
+		@Schema(description = "Number of existing products updated", example = "0")
+		long updated,
+
+		@Schema(description = "Number of rejected rows", example = "10")
+		long rejected,
+
+		@Schema(description = "Time spent importing, in milliseconds", example = "41520")
+		long elapsedMillis,
+
+		@Schema(description = "Imported rows per second", example = "48169")
+		long rowsPerSecond,
+
+		@Schema(description = "Rejected rows, sorted by row number. At most " + ProductImportService.MAX_REPORTED_REJECTIONS
+				+ " rejected rows are reported")
+		List<Rejection> rejections
+) {
+
+	public record Rejection(
+			@Schema(description = "Row number, starting from 1 for the first data row", example = "42")
+			long row,
+
+			@Schema(description = "Reason the row was rejected", example = "Product totalPrice must greater than zero")
+			String error
+	) { }
+}
@@ -0,0 +1,22 @@
+package dev.epieffe.demo.cart.product;
+
+import org.jspecify.annotations.Nullable;
+
+import java.math.BigDecimal;
+
+/**
+ * A row of a product import, as read from the input. Rows with an id update the existing product with that id,
+ * rows without an id create a new product.
+ */
+public record ProductImportRow(
+		@Nullable Long id,
+		@Nullable String name,
+		@Nullable String description,
+		@Nullable BigDecimal totalPrice,
+		@Nullable BigDecimal vatRate
+) {
+
+	public ProductRequest toRequest() {
+		return new ProductRequest(name, description, totalPrice, vatRate);
+	}
+}
@@ -0,0 +1,264 @@
+package dev.epieffe.demo.cart.product;
+
+import dev.epieffe.demo.cart.util.Money;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports products in bulk. Rows are streamed with PostgreSQL {@code COPY} into a temporary staging table,
+ * and then created or updated with a single set-based statement, all in one transaction.
+ */
+@Service
+@Transactional
+public class ProductImportService {
+	private static final Logger LOG = LoggerFactory.getLogger(ProductImportService.class);
+
+	public static final int MAX_REPORTED_REJECTIONS = 100;
+
+	// Must match the allocation size of the product id generator: each value taken from product_seq reserves
+	// the block of ids ending with that value, so imported ids never clash with ids generated by Hibernate
+	private static final int ID_ALLOCATION_SIZE = 50;
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+	private static final String CREATE_STAGING_TABLE = """
+			CREATE TEMPORARY TABLE product_import (
+				import_row bigint NOT NULL,
+				id bigint,
+				new_row bigint,
+				name varchar(255) NOT NULL,
+				description text NOT NULL,
+				total_price numeric(16,2) NOT NULL,
+				vat_rate numeric(8,4) NOT NULL,
+				net_price numeric(16,2) NOT NULL,
+				vat_amount numeric(16,2) NOT NULL
+			) ON COMMIT DROP
+			""";
+
+	private static final String COPY_STAGING_TABLE = "COPY product_import FROM STDIN (FORMAT csv)";
+
+	private static final String REJECT_UNKNOWN_IDS = """
+			DELETE FROM product_import i
+			WHERE i.id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM product p WHERE p.id = i.id)
+			RETURNING i.import_row, i.id
+			""";
+
+	// When the same product is updated more than once, the last row wins
+	private static final String REJECT_DUPLICATE_IDS = """
+			DELETE FROM product_import i
+			USING product_import later
+			WHERE later.id = i.id AND later.import_row > i.import_row
+			RETURNING i.import_row, i.id
+			""";
+
+	private static final String CREATE_BLOCK_TABLE = """
+			CREATE TEMPORARY TABLE product_import_block (block bigint NOT NULL, block_end bigint NOT NULL) ON COMMIT DROP
+			""";
+
+	// A fresh sequence returns 1 first, which does not end a whole block of positive ids and is skipped
+	private static final String ALLOCATE_ID_BLOCKS = """
+			INSERT INTO product_import_block (block, block_end)
+			SELECT row_number() OVER (ORDER BY s.block_end), s.block_end
+			FROM (SELECT nextval('product_seq') AS block_end FROM generate_series(1, ?)) s
+			WHERE s.block_end >= %d
+			""".formatted(ID_ALLOCATION_SIZE);
+
+	private static final String UPSERT_PRODUCTS = """
+			INSERT INTO product (id, name, description, total_price, vat_rate, net_price, vat_amount)
+			SELECT coalesce(i.id, b.block_end - %1$d + 1 + (i.new_row - 1) %% %1$d),
+				i.name, i.description, i.total_price, i.vat_rate, i.net_price, i.vat_amount
+			FROM product_import i
+			LEFT JOIN product_import_block b ON b.block = (i.new_row - 1) / %1$d + 1
+			ON CONFLICT (id) DO UPDATE SET
+				name = excluded.name,
+				description = excluded.description,
+				total_price = excluded.total_price,
+				vat_rate = excluded.vat_rate,
+				net_price = excluded.net_price,
+				vat_amount = excluded.vat_amount,
+				version = product.version + 1
+			""".formatted(ID_ALLOCATION_SIZE);
+
+	private final DataSource dataSource;
+	private final JdbcTemplate jdbcTemplate;
+	private final ProductImportReader reader;
+	private final ApplicationEventPublisher eventPublisher;
+
+	public ProductImportService(DataSource dataSource, ProductImportReader reader, ApplicationEventPublisher eventPublisher) {
+		this.dataSource = dataSource;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.reader = reader;
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * Imports all the valid rows of the input. Invalid rows are rejected without affecting the others.
+	 *
+	 * @throws InvalidProductImportException if the input is malformed and cannot be read to the end
+	 */
+	public ProductImportResponse importProducts(InputStream in, ProductImportReader.Format format) throws InvalidProductImportException {
+		long start = System.nanoTime();
+		var rejections = new Rejections();
+		jdbcTemplate.execute(CREATE_STAGING_TABLE);
+		StagingWriter staged = copyToStagingTable(in, format, rejections);
+
+		long rejectedBefore = rejections.count;
+		jdbcTemplate.query(REJECT_UNKNOWN_IDS, rs -> {
+			rejections.add(rs.getLong(1), "Product not found: " + rs.getLong(2));
+		});
+		jdbcTemplate.query(REJECT_DUPLICATE_IDS, rs -> {
+			rejections.add(rs.getLong(1), "Duplicate product: " + rs.getLong(2));
+		});
+		long created = staged.newRows;
+		long updated = staged.rows - staged.newRows - (rejections.count - rejectedBefore);
+		jdbcTemplate.execute(CREATE_BLOCK_TABLE);
+		if (created > 0) {
+			// One more block than needed, in case the first value of the sequence is skipped
+			jdbcTemplate.update(ALLOCATE_ID_BLOCKS, (created + ID_ALLOCATION_SIZE - 1) / ID_ALLOCATION_SIZE + 1);
+		}
+		jdbcTemplate.execute("ANALYZE product_import");
+		jdbcTemplate.update(UPSERT_PRODUCTS);
+		eventPublisher.publishEvent(new ProductsImportedEvent(created, updated));
+
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		long rowsPerSecond = (created + updated) * 1000 / Math.max(elapsedMillis, 1);
+		LOG.info("Imported products in {} ms: {} created, {} updated, {} rejected, {} rows/s",
+				elapsedMillis, created, updated, rejections.count, rowsPerSecond);
+		return new ProductImportResponse(created, updated, rejections.count, elapsedMillis, rowsPerSecond, rejections.sorted());
+	}
+
+	private StagingWriter copyToStagingTable(InputStream in, ProductImportReader.Format format, Rejections rejections)
+			throws InvalidProductImportException {
+		Connection con = DataSourceUtils.getConnection(dataSource);
+		try {
+			CopyIn copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING_TABLE);
+			try {
+				var writer = new StagingWriter(copyIn, rejections);
+				reader.read(in, format, writer);
+				writer.flush();
+				copyIn.endCopy();
+				return writer;
+			} finally {
+				if (copyIn.isActive()) {
+					copyIn.cancelCopy();
+				}
+			}
+		} catch (SQLException e) {
+			throw translate(e);
+		} finally {
+			DataSourceUtils.releaseConnection(con, dataSource);
+		}
+	}
+
+	private RuntimeException translate(SQLException e) {
+		DataAccessException translated = jdbcTemplate.getExceptionTranslator().translate("COPY", COPY_STAGING_TABLE, e);
+		return translated != null ? translated : new UncategorizedSQLException("COPY", COPY_STAGING_TABLE, e);
+	}
+
+	/**
+	 * Writes valid rows to the staging table as CSV, numbering the rows that create a new product.
+	 */
+	private class StagingWriter implements ProductImportReader.RowHandler {
+		private final CopyIn copyIn;
+		private final Rejections rejections;
+		private final StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+		private long rows = 0;
+		private long newRows = 0;
+
+		private StagingWriter(CopyIn copyIn, Rejections rejections) {
+			this.copyIn = copyIn;
+			this.rejections = rejections;
+		}
+
+		@Override
+		public void accept(long row, ProductImportRow product) {
+			long totalCents = Money.toCents(product.totalPrice());
+			int vatRateUnits = Money.toRateUnits(product.vatRate());
+			long netCents = Money.netPrice(totalCents, vatRateUnits);
+			buffer.append(row).append(',');
+			if (product.id() != null) {
+				buffer.append(product.id()).append(",,");
+			} else {
+				buffer.append(',').append(++newRows).append(',');
+			}
+			appendQuoted(product.name()).append(',');
+			appendQuoted(product.description()).append(',');
+			buffer.append(product.totalPrice().toPlainString()).append(',')
+					.append(product.vatRate().toPlainString()).append(',')
+					.append(Money.fromCents(netCents).toPlainString()).append(',')
+					.append(Money.fromCents(totalCents - netCents).toPlainString()).append('\n');
+			rows++;
+			if (buffer.length() >= COPY_BUFFER_SIZE) {
+				flush();
+			}
+		}
+
+		@Override
+		public void reject(long row, String error) {
+			rejections.add(row, error);
+		}
+
+		private StringBuilder appendQuoted(String value) {
+			buffer.append('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"') {
+					buffer.append('"');
+				}
+				buffer.append(c);
+			}
+			return buffer.append('"');
+		}
+
+		private void flush() {
+			if (buffer.isEmpty()) {
+				return;
+			}
+			byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+			try {
+				copyIn.writeToCopy(bytes, 0, bytes.length);
+			} catch (SQLException e) {
+				throw translate(e);
+			}
+			buffer.setLength(0);
+		}
+	}
+
+	/**
+	 * Counts all the rejected rows, keeping only the first ones to report them.
+	 */
+	private static class Rejections {
+		private final List<ProductImportResponse.Rejection> reported = new ArrayList<>();
+		private long count = 0;
+
+		private void add(long row, String error) {
+			count++;
+			if (reported.size() < MAX_REPORTED_REJECTIONS) {
+				reported.add(new ProductImportResponse.Rejection(row, error));
+			}
+		}
+
+		private List<ProductImportResponse.Rejection> sorted() {
+			reported.sort(Comparator.comparingLong(ProductImportResponse.Rejection::row));
+			return reported;
+		}
+	}
+}
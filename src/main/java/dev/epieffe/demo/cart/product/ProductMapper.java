@@ -1,8 +1,8 @@
 package dev.epieffe.demo.cart.product;
 
-import dev.epieffe.demo.cart.util.PriceUtil;
+import dev.epieffe.demo.cart.util.Money;
 
-import java.math.BigDecimal;
+import java.util.Set;
 
 public class ProductMapper {
 
@@ -12,23 +12,43 @@ public class ProductMapper {
 	}
 
 	public static ProductResponse toResponse(Product product) {
-		BigDecimal netPrice = PriceUtil.computeNetPrice(product.getTotalPrice(), product.getVatRate());
-		BigDecimal vatAmount = product.getTotalPrice().subtract(netPrice);
 		return new ProductResponse(
 				product.getId(),
 				product.getName(),
 				product.getDescription(),
 				product.getTotalPrice(),
-				netPrice,
-				vatAmount,
+				product.getNetPrice(),
+				product.getVatAmount(),
 				product.getVatRate());
 	}
 
+	/**
+	 * Maps the given fields of the product, leaving the other fields of the response null.
+	 */
+	public static ProductResponse toResponse(Product product, Set<ProductField> fields) {
+		if (fields.containsAll(ProductField.ALL)) {
+			return toResponse(product);
+		}
+		return new ProductResponse(
+				fields.contains(ProductField.ID) ? product.getId() : null,
+				fields.contains(ProductField.NAME) ? product.getName() : null,
+				fields.contains(ProductField.DESCRIPTION) ? product.getDescription() : null,
+				fields.contains(ProductField.TOTAL_PRICE) ? product.getTotalPrice() : null,
+				fields.contains(ProductField.NET_PRICE) ? product.getNetPrice() : null,
+				fields.contains(ProductField.VAT_AMOUNT) ? product.getVatAmount() : null,
+				fields.contains(ProductField.VAT_RATE) ? product.getVatRate() : null);
+	}
+
 	public static Product updateFromRequest(Product product, ProductRequest request) {
 		product.setName(request.name());
 		product.setDescription(request.description());
 		product.setTotalPrice(request.totalPrice());
 		product.setVatRate(request.vatRate());
+		// Net price and VAT amount are stored, so that reads don't need to compute them
+		long totalCents = Money.toCents(request.totalPrice());
+		long netCents = Money.netPrice(totalCents, Money.toRateUnits(request.vatRate()));
+		product.setNetPrice(Money.fromCents(netCents));
+		product.setVatAmount(Money.fromCents(totalCents - netCents));
 		return product;
 	}
 }
@@ -0,0 +1,16 @@
+package dev.epieffe.demo.cart.product;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Set;
+
+public interface ProductProjectionRepository {
+
+	/**
+	 * Finds products selecting only the columns of the given fields, plus the id and the sorted properties.
+	 * The products returned are not managed and have all the other fields set to null.
+	 */
+	Slice<Product> findProjectedBy(Specification<Product> spec, Set<ProductField> fields, Pageable pageable);
+}
@@ -0,0 +1,82 @@
+package dev.epieffe.demo.cart.product;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+class ProductProjectionRepositoryImpl implements ProductProjectionRepository {
+
+	private final EntityManager entityManager;
+
+	ProductProjectionRepositoryImpl(EntityManager entityManager) {
+		this.entityManager = entityManager;
+	}
+
+	@Override
+	public Slice<Product> findProjectedBy(Specification<Product> spec, Set<ProductField> fields, Pageable pageable) {
+		// Cursors need the id and the sort key of the last product
+		Set<ProductField> selected = EnumSet.of(ProductField.ID);
+		selected.addAll(fields);
+		for (Sort.Order order : pageable.getSort()) {
+			ProductField field = ProductField.of(order.getProperty());
+			if (field != null) {
+				selected.add(field);
+			}
+		}
+
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> query = cb.createTupleQuery();
+		Root<Product> root = query.from(Product.class);
+		List<Selection<?>> selections = new ArrayList<>(selected.size());
+		for (ProductField field : selected) {
+			selections.add(root.get(field.property()));
+		}
+		// Entity tags of search results depend on the versions
+		selections.add(root.get(Product_.VERSION));
+		query.select(cb.tuple(selections));
+		Predicate predicate = spec.toPredicate(root, query, cb);
+		if (predicate != null) {
+			query.where(predicate);
+		}
+		// Same as the entity search, the sort replaces any order set by the specification
+		if (pageable.getSort().isSorted()) {
+			query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+		}
+
+		TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+		if (pageable.isPaged()) {
+			// One more row than requested tells whether there is a next slice
+			typedQuery.setFirstResult(Math.toIntExact(pageable.getOffset()));
+			typedQuery.setMaxResults(pageable.getPageSize() + 1);
+		}
+		List<Tuple> tuples = typedQuery.getResultList();
+		boolean hasNext = pageable.isPaged() && tuples.size() > pageable.getPageSize();
+		List<Product> content = new ArrayList<>(hasNext ? pageable.getPageSize() : tuples.size());
+		for (Tuple tuple : hasNext ? tuples.subList(0, pageable.getPageSize()) : tuples) {
+			var product = new Product();
+			int i = 0;
+			for (ProductField field : selected) {
+				field.set(product, tuple.get(i++));
+			}
+			product.setVersion(tuple.get(i, Long.class));
+			content.add(product);
+		}
+		return new SliceImpl<>(content, pageable, hasNext);
+	}
+}
@@ -2,6 +2,16 @@ package dev.epieffe.demo.cart.product;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 
-public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+import java.util.Optional;
+
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product>, ProductProjectionRepository {
+
+	@Query("""
+			SELECT p.version
+			FROM Product p
+			WHERE p.id = :id
+			""")
+	Optional<Long> findVersionById(Long id);
 }
@@ -1,29 +1,32 @@
 package dev.epieffe.demo.cart.product;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
+import org.jspecify.annotations.Nullable;
 
 import java.math.BigDecimal;
 
-@Schema(description = "Product response payload")
+@Schema(description = "Product response payload, without the fields not requested in a sparse fieldset")
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record ProductResponse(
 		@Schema(description = "Product id", example = "101")
-		Long id,
+		@Nullable Long id,
 
 		@Schema(description = "Product name", example = "Samsung Galaxy S21")
-		String name,
+		@Nullable String name,
 
 		@Schema(description = "Product description", example = "Powerful smartphone with 5G connectivity and advanced camera features.")
-		String description,
+		@Nullable String description,
 
 		@Schema(description = "Total price (including VAT)", example = "999.99")
-		BigDecimal totalPrice,
+		@Nullable BigDecimal totalPrice,
 
 		@Schema(description = "Net price", example = "819.66")
-		BigDecimal netPrice,
+		@Nullable BigDecimal netPrice,
 
 		@Schema(description = "VAT amount", example = "180.33")
-		BigDecimal vatAmount,
+		@Nullable BigDecimal vatAmount,
 
 		@Schema(description = "VAT percentage", example = "0.22")
-		BigDecimal vatRate
+		@Nullable BigDecimal vatRate
 ) { }
@@ -11,6 +11,10 @@ public record ProductSearch(
 		@Parameter(description = "Name search", example = "Samsung")
 		@Nullable String name,
 
+		@Parameter(description = "Full-text search on name and description, results are sorted by relevance unless "
+				+ "another sort is requested", example = "apple smartphone")
+		@Nullable String text,
+
 		@Parameter(description = "Maximum price")
 		@Nullable BigDecimal maxPrice,
 
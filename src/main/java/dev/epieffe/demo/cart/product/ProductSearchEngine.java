@@ -0,0 +1,287 @@
+package dev.epieffe.demo.cart.product;
+
+import dev.epieffe.demo.cart.util.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Searches products in memory, without querying the database, using a {@link ProductCatalog} snapshot of all
+ * the products.
+ * <p>
+ * The snapshot is loaded at startup and updated in the background after each product write commits. Searches may
+ * miss the writes committed by this instance in the last {@code cart.products.search-engine.max-staleness}, and
+ * when the snapshot misses older writes, or for searches it does not support (full-text search, sorting by other
+ * properties), {@link #search} returns null and the database must be queried instead. Writes committed by other
+ * instances are picked up by the periodic full reload.
+ * <p>
+ * Enabled by the {@code cart.products.search-engine.enabled} property.
+ */
+@Component
+@ConditionalOnBooleanProperty("cart.products.search-engine.enabled")
+public class ProductSearchEngine implements SmartLifecycle {
+	private static final Logger LOG = LoggerFactory.getLogger(ProductSearchEngine.class);
+
+	private static final String METRIC_PREFIX = "cart.products.search.engine";
+	// PostgreSQL only uses a cursor inside a transaction and with a positive fetch size
+	private static final int FETCH_SIZE = 10_000;
+	private static final long RETRY_DELAY_MILLIS = 5_000;
+	private static final long NOT_PENDING = Long.MAX_VALUE;
+
+	private static final String SELECT_PRODUCTS =
+			"SELECT id, name, description, total_price, vat_rate, net_price, vat_amount, version FROM product";
+	private static final String SELECT_PRODUCTS_BY_ID = SELECT_PRODUCTS + " WHERE id = ANY(?)";
+
+	private static final RowMapper<ProductCatalog.Row> ROW_MAPPER = (rs, i) -> new ProductCatalog.Row(
+			rs.getLong(1),
+			rs.getString(2),
+			rs.getString(3),
+			Money.toCents(rs.getBigDecimal(4)),
+			Money.toRateUnits(rs.getBigDecimal(5)),
+			Money.toCents(rs.getBigDecimal(6)),
+			Money.toCents(rs.getBigDecimal(7)),
+			rs.getLong(8));
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final long refreshDelayMillis;
+	private final long reloadIntervalMillis;
+	private final long maxStalenessNanos;
+	private final Counter hits;
+	private final Counter misses;
+
+	// Incremented after each product write, so that a catalog built before the last write is not used
+	private final AtomicLong generation = new AtomicLong();
+	private final Set<Long> changedIds = ConcurrentHashMap.newKeySet();
+	// Time of the first write not yet applied to the catalog, or NOT_PENDING
+	private final AtomicLong pendingSince = new AtomicLong(NOT_PENDING);
+	// Time of the first write being applied by the running refresh, or NOT_PENDING. Written by the refresher only
+	private volatile long refreshingSince = NOT_PENDING;
+	private final AtomicBoolean reloadRequested = new AtomicBoolean(true);
+	private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+	private volatile @Nullable ProductCatalog catalog;
+	private volatile @Nullable ScheduledExecutorService refresher;
+
+	public ProductSearchEngine(
+			DataSource dataSource,
+			PlatformTransactionManager transactionManager,
+			MeterRegistry registry,
+			@Value("${cart.products.search-engine.refresh-delay:50ms}") Duration refreshDelay,
+			@Value("${cart.products.search-engine.reload-interval:5m}") Duration reloadInterval,
+			@Value("${cart.products.search-engine.max-staleness:1s}") Duration maxStaleness
+	) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+		// Not read-only, so that reloads read the primary rather than a replica that may lag behind the writes
+		// that triggered them
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.refreshDelayMillis = refreshDelay.toMillis();
+		this.reloadIntervalMillis = reloadInterval.toMillis();
+		this.maxStalenessNanos = maxStaleness.toNanos();
+		this.hits = Counter.builder(METRIC_PREFIX + ".searches")
+				.tag("result", "hit")
+				.description("Product searches, served from memory on hit or from the database on miss")
+				.register(registry);
+		this.misses = Counter.builder(METRIC_PREFIX + ".searches")
+				.tag("result", "miss")
+				.description("Product searches, served from memory on hit or from the database on miss")
+				.register(registry);
+		Gauge.builder(METRIC_PREFIX + ".products", this, e -> {
+					ProductCatalog current = e.catalog;
+					return current != null ? current.size() : 0;
+				})
+				.description("Products held in memory")
+				.register(registry);
+	}
+
+	/**
+	 * Searches products in memory, with the same filters and slicing as the database search.
+	 *
+	 * @return the matching products, or null if the search must be done on the database
+	 */
+	public @Nullable Slice<Product> search(ProductSearch search, Pageable pageable) {
+		ProductCatalog current = catalog;
+		Sort.@Nullable Order order = pageable.getSort().stream().findFirst().orElse(null);
+		// Rows sorted by price are sorted by id too
+		ProductCursor.@Nullable Key cursorKey = order != null ? ProductCursor.Key.of(pageable.getSort()) : ProductCursor.Key.ID;
+		ProductCatalog.@Nullable SortKey key = cursorKey != null ? sortKey(cursorKey) : null;
+		if (current == null || isStale(current) || search.text() != null || key == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		var query = new ProductCatalog.Query(
+				search.name() != null ? search.name().toLowerCase(Locale.ROOT) : null,
+				minCentsExclusive(search.minPrice()),
+				maxCentsExclusive(search.maxPrice()));
+		return current.search(query, key, order != null && order.isDescending(), pageable);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductChanged(ProductChangedEvent event) {
+		changedIds.add(event.productId());
+		generation.incrementAndGet();
+		pendingSince.accumulateAndGet(System.nanoTime(), Math::min);
+		scheduleRefresh();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onProductsImported(ProductsImportedEvent event) {
+		reloadRequested.set(true);
+		generation.incrementAndGet();
+		pendingSince.accumulateAndGet(System.nanoTime(), Math::min);
+		scheduleRefresh();
+	}
+
+	@Override
+	public void start() {
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+				Thread.ofPlatform().name("product-search-engine").daemon().factory());
+		refresher = executor;
+		executor.execute(this::refresh);
+		if (reloadIntervalMillis > 0) {
+			executor.scheduleWithFixedDelay(() -> {
+				reloadRequested.set(true);
+				refresh();
+			}, reloadIntervalMillis, reloadIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public void stop() {
+		ScheduledExecutorService executor = refresher;
+		refresher = null;
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return refresher != null;
+	}
+
+	/**
+	 * Whether the catalog misses writes committed more than the maximum staleness ago.
+	 */
+	private boolean isStale(ProductCatalog current) {
+		long since = Math.min(pendingSince.get(), refreshingSince);
+		return current.generation() != generation.get()
+				&& since != NOT_PENDING && System.nanoTime() - since > maxStalenessNanos;
+	}
+
+	private void scheduleRefresh() {
+		// Writes committed during the delay are applied together
+		scheduleRefresh(refreshDelayMillis);
+	}
+
+	private void scheduleRefresh(long delayMillis) {
+		ScheduledExecutorService executor = refresher;
+		if (executor != null && refreshScheduled.compareAndSet(false, true)) {
+			executor.schedule(this::refresh, delayMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Builds a new catalog, either updating the changed products or reloading all of them. Runs on the refresher
+	 * thread only. Events are published after their transaction commits, so the changes they report are visible
+	 * to the queries issued here.
+	 */
+	private void refresh() {
+		refreshScheduled.set(false);
+		// Writes reported from now on are applied by the next refresh, and the ones reported before by this one.
+		// They are still pending until the new catalog is published, so that the current one is not used meanwhile
+		refreshingSince = pendingSince.get();
+		long since = pendingSince.getAndSet(NOT_PENDING);
+		refreshingSince = since;
+		long target = generation.get();
+		ProductCatalog current = catalog;
+		try {
+			if (current == null || reloadRequested.getAndSet(false)) {
+				changedIds.clear();
+				long start = System.nanoTime();
+				List<ProductCatalog.Row> rows = transactionTemplate.execute(tx -> jdbcTemplate.query(SELECT_PRODUCTS, ROW_MAPPER));
+				catalog = ProductCatalog.of(Objects.requireNonNull(rows), target);
+				LOG.info("Loaded {} products in memory in {} ms",
+						rows.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			} else if (current.generation() != target) {
+				var ids = new ArrayList<Long>(changedIds);
+				changedIds.removeAll(ids);
+				List<ProductCatalog.Row> rows = jdbcTemplate.query(SELECT_PRODUCTS_BY_ID,
+						ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())), ROW_MAPPER);
+				catalog = current.withChanges(ids, rows, target);
+			}
+		} catch (RuntimeException e) {
+			LOG.warn("Failed to refresh products in memory, searching the database until the next refresh", e);
+			reloadRequested.set(true);
+			pendingSince.accumulateAndGet(since, Math::min);
+			scheduleRefresh(RETRY_DELAY_MILLIS);
+		} finally {
+			refreshingSince = NOT_PENDING;
+		}
+	}
+
+	private static ProductCatalog.@Nullable SortKey sortKey(ProductCursor.Key key) {
+		return switch (key) {
+			case ID -> ProductCatalog.SortKey.ID;
+			case TOTAL_PRICE -> ProductCatalog.SortKey.TOTAL_PRICE;
+			// Sorting by name depends on the database collation
+			case NAME -> null;
+		};
+	}
+
+	private static long minCentsExclusive(@Nullable BigDecimal minPrice) {
+		if (minPrice == null) {
+			return Long.MIN_VALUE;
+		}
+		return clampToLong(minPrice.movePointRight(Money.SCALE).setScale(0, RoundingMode.FLOOR));
+	}
+
+	private static long maxCentsExclusive(@Nullable BigDecimal maxPrice) {
+		if (maxPrice == null) {
+			return Long.MAX_VALUE;
+		}
+		return clampToLong(maxPrice.movePointRight(Money.SCALE).setScale(0, RoundingMode.CEILING));
+	}
+
+	private static long clampToLong(BigDecimal value) {
+		if (value.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) >= 0) {
+			return Long.MAX_VALUE;
+		}
+		if (value.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) <= 0) {
+			return Long.MIN_VALUE;
+		}
+		return value.longValueExact();
+	}
+}
@@ -0,0 +1,43 @@
+package dev.epieffe.demo.cart.product;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of the execution of a product search.
+ */
+@Name("dev.epieffe.demo.cart.ProductSearch")
+@Label("Product Search")
+@Category({"Cart", "Products"})
+@Enabled(false)
+@StackTrace(false)
+class ProductSearchEvent extends Event {
+
+	@Label("Filters")
+	@Description("Filters set in the search, such as name+maxPrice, or none")
+	String filters;
+
+	@Label("Pagination")
+	@Description("Either offset or cursor")
+	String pagination;
+
+	@Label("Source")
+	@Description("Either memory, for searches served by the in-memory search engine, or database")
+	String source;
+
+	@Label("Projected")
+	@Description("Whether only the columns of some fields were queried")
+	boolean projected;
+
+	@Label("Page Size")
+	int pageSize;
+
+	@Label("Rows")
+	@Description("Number of products found")
+	int rows;
+}
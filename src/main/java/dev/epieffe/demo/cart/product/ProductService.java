@@ -1,46 +1,225 @@
 package dev.epieffe.demo.cart.product;
 
+import dev.epieffe.demo.cart.util.PhaseTimer;
+import dev.epieffe.demo.cart.util.PreconditionFailedException;
 import dev.epieffe.demo.cart.util.Specifications;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jspecify.annotations.Nullable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
-@Transactional
+@Transactional(timeoutString = "${cart.transaction.request-timeout:-1}")
 public class ProductService {
 
 	private final ProductRepository productRepository;
+	private final ApplicationEventPublisher eventPublisher;
+	private final @Nullable ProductSearchEngine searchEngine;
+	private final PhaseTimer searchTimer;
 
-	public ProductService(ProductRepository productRepository) {
+	public ProductService(
+			ProductRepository productRepository,
+			ApplicationEventPublisher eventPublisher,
+			@Nullable ProductSearchEngine searchEngine,
+			MeterRegistry registry
+	) {
 		this.productRepository = productRepository;
+		this.eventPublisher = eventPublisher;
+		this.searchEngine = searchEngine;
+		this.searchTimer = new PhaseTimer(registry, "cart.products.search.phase", "Time spent in each phase of searching products");
 	}
 
 	public Product createProduct(ProductRequest productRequest) {
 		Product entity = ProductMapper.fromRequest(productRequest);
-		return productRepository.save(entity);
+		Product product = productRepository.save(entity);
+		eventPublisher.publishEvent(new ProductChangedEvent(product.getId()));
+		return product;
 	}
 
+	@Transactional(readOnly = true, timeoutString = "${cart.transaction.request-timeout:-1}")
 	public Optional<Product> getProductById(Long id) {
 		return productRepository.findById(id);
 	}
 
-	public Slice<Product> searchProducts(ProductSearch search, Pageable pageable) {
+	/**
+	 * The current version of a product, without loading it.
+	 */
+	@Transactional(readOnly = true, timeoutString = "${cart.transaction.request-timeout:-1}")
+	public Optional<Long> getProductVersion(Long id) {
+		return productRepository.findVersionById(id);
+	}
+
+	/**
+	 * Searches products using offset pagination. Results sorted by a key supported by {@link ProductCursor},
+	 * or not sorted at all, are sorted by id too, so that the next slice can also be got with a cursor.
+	 * <p>
+	 * Unless all fields are requested, only the columns of the requested fields are queried and the products
+	 * returned may have the other fields set to null.
+	 */
+	// Searches served from memory must not take a database connection for an empty transaction
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public Slice<Product> searchProducts(ProductSearch search, Set<ProductField> fields, Pageable pageable) {
+		String filters = filters(search);
+		PhaseTimer.Phases phases = searchTimer.start("filters", filters, "pagination", "offset");
+		var event = new ProductSearchEvent();
+		event.begin();
+		Pageable sorted = withIdSort(search, pageable);
+		if (searchEngine != null) {
+			Slice<Product> result = searchEngine.search(search, sorted);
+			phases.end("memory");
+			if (result != null) {
+				commit(event, filters, "offset", "memory", false, result);
+				return result;
+			}
+		}
 		Specification<Product> spec = buildSpecification(search);
-		return productRepository.findBy(spec, q -> q.slice(pageable));
+		boolean projected = !fields.containsAll(ProductField.ALL);
+		Slice<Product> result = projected
+				? productRepository.findProjectedBy(spec, fields, sorted)
+				: productRepository.findBy(spec, q -> q.slice(sorted));
+		phases.end("query");
+		commit(event, filters, "offset", "database", projected, result);
+		return result;
 	}
 
-	public Optional<Product> updateProduct(Long id, ProductRequest request) {
-		return productRepository.findById(id)
-				.map(p -> ProductMapper.updateFromRequest(p, request))
-				.map(productRepository::save);
+	/**
+	 * Searches products using keyset pagination, starting after the given cursor and keeping its sort.
+	 */
+	@Transactional(readOnly = true, timeoutString = "${cart.transaction.request-timeout:-1}")
+	public Slice<Product> searchProducts(ProductSearch search, Set<ProductField> fields, ProductCursor cursor, int size) {
+		String filters = filters(search);
+		PhaseTimer.Phases phases = searchTimer.start("filters", filters, "pagination", "cursor");
+		phases.endOnCommit("commit");
+		var event = new ProductSearchEvent();
+		event.begin();
+		Specification<Product> spec = buildSpecification(search).and(seekAfter(cursor));
+		if (!fields.containsAll(ProductField.ALL)) {
+			Slice<Product> result = productRepository.findProjectedBy(spec, fields, PageRequest.of(0, size, cursor.sort()));
+			phases.end("query");
+			commit(event, filters, "cursor", "database", true, result);
+			return result;
+		}
+		List<Product> products = productRepository.findBy(spec, q -> q
+				.sortBy(cursor.sort())
+				.limit(size + 1)
+				.all());
+		phases.end("query");
+		boolean hasNext = products.size() > size;
+		List<Product> content = hasNext ? products.subList(0, size) : products;
+		Slice<Product> result = new SliceImpl<>(content, PageRequest.of(0, size, cursor.sort()), hasNext);
+		commit(event, filters, "cursor", "database", false, result);
+		return result;
+	}
+
+	/**
+	 * Updates a product, if it exists and its version is one of the expected ones.
+	 *
+	 * @param expectedVersions the versions the product may have, or null to update any version
+	 * @throws PreconditionFailedException if the product exists with a version that is not expected
+	 */
+	public Optional<Product> updateProduct(
+			Long id,
+			ProductRequest request,
+			@Nullable Set<Long> expectedVersions
+	) throws PreconditionFailedException {
+		Optional<Product> found = productRepository.findById(id);
+		if (found.isEmpty()) {
+			return found;
+		}
+		Product product = found.get();
+		// The version is checked again when the update is flushed, in case it is changed concurrently
+		if (expectedVersions != null && !expectedVersions.contains(product.getVersion())) {
+			throw new PreconditionFailedException("Product " + id + " was modified, current version is " + product.getVersion());
+		}
+		product = productRepository.save(ProductMapper.updateFromRequest(product, request));
+		eventPublisher.publishEvent(new ProductChangedEvent(id));
+		return Optional.of(product);
 	}
 
 	public void deleteProductById(Long id) {
 		productRepository.deleteById(id);
+		eventPublisher.publishEvent(new ProductChangedEvent(id));
+	}
+
+	private static Pageable withIdSort(ProductSearch search, Pageable pageable) {
+		Sort sort = pageable.getSort();
+		if (pageable.isUnpaged() || (sort.isUnsorted() && search.text() != null)) {
+			// Full-text search results are sorted by relevance
+			return pageable;
+		}
+		if (sort.isUnsorted()) {
+			return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), ProductCursor.Key.ID.sort(Sort.Direction.ASC));
+		}
+		ProductCursor.Key key = ProductCursor.Key.of(sort);
+		if (key == null) {
+			return pageable;
+		}
+		Sort.Direction direction = sort.iterator().next().getDirection();
+		return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), key.sort(direction));
+	}
+
+	private static Specification<Product> seekAfter(ProductCursor cursor) {
+		boolean descending = cursor.direction().isDescending();
+		return switch (cursor.key()) {
+			case ID -> descending
+					? Specifications.lessThan(Product_.id, cursor.id())
+					: Specifications.greaterThan(Product_.id, cursor.id());
+			case NAME -> Specifications.seekAfter(Product_.name, cursor.value(), Product_.id, cursor.id(), descending);
+			case TOTAL_PRICE -> Specifications.seekAfter(Product_.totalPrice, cursor.totalPrice(), Product_.id, cursor.id(), descending);
+		};
+	}
+
+	private static void commit(
+			ProductSearchEvent event,
+			String filters,
+			String pagination,
+			String source,
+			boolean projected,
+			Slice<Product> result
+	) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.filters = filters;
+			event.pagination = pagination;
+			event.source = source;
+			event.projected = projected;
+			event.pageSize = result.getSize();
+			event.rows = result.getNumberOfElements();
+			event.commit();
+		}
+	}
+
+	/**
+	 * The filters set in a search, such as {@code name+maxPrice}, or {@code none}.
+	 */
+	private static String filters(ProductSearch search) {
+		var filters = new ArrayList<String>(4);
+		if (search.name() != null) {
+			filters.add("name");
+		}
+		if (search.text() != null) {
+			filters.add("text");
+		}
+		if (search.minPrice() != null) {
+			filters.add("minPrice");
+		}
+		if (search.maxPrice() != null) {
+			filters.add("maxPrice");
+		}
+		return filters.isEmpty() ? "none" : String.join("+", filters);
 	}
 
 	private static Specification<Product> buildSpecification(ProductSearch search) {
@@ -48,6 +227,9 @@ public class ProductService {
 		if (search.name() != null) {
 			spec = spec.and(Specifications.stringContains(Product_.name, search.name()));
 		}
+		if (search.text() != null) {
+			spec = spec.and(Specifications.textMatches(Product_.name, Product_.description, search.text(), Product_.id));
+		}
 		if (search.minPrice() != null) {
 			spec = spec.and(Specifications.greaterThan(Product_.totalPrice, search.minPrice()));
 		}
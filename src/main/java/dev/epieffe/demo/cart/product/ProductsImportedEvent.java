@@ -0,0 +1,6 @@
+package dev.epieffe.demo.cart.product;
+
+/**
+ * Published when products are imported in bulk. Listeners caching product data should evict all products.
+ */
+public record ProductsImportedEvent(long created, long updated) { }
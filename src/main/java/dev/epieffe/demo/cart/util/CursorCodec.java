@@ -0,0 +1,51 @@
+package dev.epieffe.demo.cart.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+
+/**
+ * Encodes the values of a pagination cursor into an opaque, URL-safe token.
+ */
+public class CursorCodec {
+
+	public static String encode(String... values) {
+		var bytes = new ByteArrayOutputStream();
+		try (var out = new DataOutputStream(bytes)) {
+			out.writeByte(values.length);
+			for (String value : values) {
+				out.writeUTF(value);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+	}
+
+	/**
+	 * @throws InvalidCursorException if the token is malformed or does not contain the expected number of values
+	 */
+	public static String[] decode(String token, int expectedValues) throws InvalidCursorException {
+		try (var in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+			if (in.readUnsignedByte() != expectedValues) {
+				throw new InvalidCursorException("Invalid cursor");
+			}
+			String[] values = new String[expectedValues];
+			for (int i = 0; i < expectedValues; i++) {
+				values[i] = in.readUTF();
+			}
+			if (in.available() > 0) {
+				throw new InvalidCursorException("Invalid cursor");
+			}
+			return values;
+		} catch (IllegalArgumentException | IOException e) {
+			throw new InvalidCursorException("Invalid cursor");
+		}
+	}
+
+	private CursorCodec() {}
+}
@@ -2,6 +2,7 @@ package dev.epieffe.demo.cart.util;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -28,4 +29,18 @@ public class ExceptionHandlers {
 		LOG.warn("Handling bad request due to business exception {}: {}", ex.getClass().getSimpleName(), ex.getMessage(), ex);
 		return new ErrorDto(ex.getMessage());
 	}
+
+	@ExceptionHandler
+	@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+	public ErrorDto handlePreconditionFailed(PreconditionFailedException ex) {
+		LOG.warn("Handling precondition failed: {}", ex.getMessage());
+		return new ErrorDto(ex.getMessage());
+	}
+
+	@ExceptionHandler
+	@ResponseStatus(HttpStatus.CONFLICT)
+	public ErrorDto handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+		LOG.warn("Handling conflict due to a concurrent update: {}", ex.getMessage());
+		return new ErrorDto("The resource was modified concurrently, retry the request");
+	}
 }
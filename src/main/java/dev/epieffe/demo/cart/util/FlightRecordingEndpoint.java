@@ -0,0 +1,203 @@
+package dev.epieffe.demo.cart.util;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint to capture a window of the behavior of the service with JDK Flight Recorder, without attaching
+ * a profiler.
+ * <p>
+ * {@code POST} starts a continuous recording with the given JFR settings, plus the events of the service, such as
+ * the phases of creating orders and the commits of transactions. The events of the service are annotated with
+ * {@code @Enabled(false)}, so that they cost next to nothing unless a recording enables them, as this one does. The
+ * events holding the environment variables and system properties are left out, since these include the database
+ * passwords. Recordings only keep their latest {@code maxAge} and
+ * {@code maxSize} of data, bounded by the {@code cart.flight-recording.*} properties, and stop by themselves after
+ * the given {@code duration}, if any. {@code DELETE} stops the recording and {@code GET} dumps it, even while it is
+ * running, as a {@code .jfr} file to open with JDK Mission Control or {@code jfr print}.
+ * <p>
+ * Recordings expose the internals of the service, so the endpoint is only exposed by the {@code flight-recording}
+ * profile, on a separate management port that must not be reachable by clients.
+ */
+@Component
+@WebEndpoint(id = "flightrecording")
+public class FlightRecordingEndpoint implements AutoCloseable {
+	private static final Logger LOG = LoggerFactory.getLogger(FlightRecordingEndpoint.class);
+
+	private static final String RECORDING_NAME = "cart-demo";
+	private static final List<String> EVENTS = List.of(
+			"dev.epieffe.demo.cart.Phase",
+			"dev.epieffe.demo.cart.OrderCreation",
+			"dev.epieffe.demo.cart.ProductSearch",
+			"dev.epieffe.demo.cart.CacheLookup",
+			"dev.epieffe.demo.cart.TransactionCommit"
+	);
+	private static final List<String> SECRET_EVENTS = List.of(
+			"jdk.InitialEnvironmentVariable",
+			"jdk.InitialSystemProperty",
+			// Holds the command line, whose -D options may set passwords
+			"jdk.JVMInformation"
+	);
+
+	private final Duration maxAge;
+	private final DataSize maxSize;
+	private @Nullable Recording recording;
+
+	public FlightRecordingEndpoint(
+			@Value("${cart.flight-recording.max-age:10m}") Duration maxAge,
+			@Value("${cart.flight-recording.max-size:100MB}") DataSize maxSize
+	) {
+		this.maxAge = maxAge;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Starts a new recording, closing the current one if any.
+	 *
+	 * @param settings name of the JFR settings, {@code default} if null, or {@code profile} for more detail at a
+	 *                 higher overhead
+	 * @param maxAge   how long data is kept, up to the configured max age
+	 * @param maxSize  how much data is kept, up to the configured max size
+	 * @param duration after how long the recording stops, or null to keep recording until stopped
+	 */
+	@WriteOperation
+	public synchronized RecordingStatus start(
+			@Nullable String settings,
+			@Nullable Duration maxAge,
+			@Nullable DataSize maxSize,
+			@Nullable Duration duration
+	) {
+		Configuration configuration = configuration(settings != null ? settings : "default");
+		Map<String, String> eventSettings = new HashMap<>(configuration.getSettings());
+		for (String event : EVENTS) {
+			eventSettings.put(event + "#enabled", "true");
+		}
+		for (String event : SECRET_EVENTS) {
+			eventSettings.put(event + "#enabled", "false");
+		}
+		var started = new Recording(eventSettings);
+		started.setName(RECORDING_NAME);
+		started.setToDisk(true);
+		started.setMaxAge(maxAge != null && maxAge.compareTo(this.maxAge) < 0 ? maxAge : this.maxAge);
+		started.setMaxSize(Math.min(maxSize != null ? maxSize.toBytes() : Long.MAX_VALUE, this.maxSize.toBytes()));
+		if (duration != null) {
+			started.setDuration(duration);
+		}
+		close();
+		started.start();
+		recording = started;
+		LOG.info("Started flight recording with {} settings, keeping up to {} s and {} MB", configuration.getName(),
+				started.getMaxAge().toSeconds(), DataSize.ofBytes(started.getMaxSize()).toMegabytes());
+		return RecordingStatus.of(started);
+	}
+
+	/**
+	 * Stops the current recording, keeping its data to be dumped.
+	 */
+	@DeleteOperation
+	public synchronized WebEndpointResponse<RecordingStatus> stop() {
+		if (recording == null) {
+			return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+		}
+		if (recording.getState() == RecordingState.RUNNING) {
+			recording.stop();
+			LOG.info("Stopped flight recording");
+		}
+		return new WebEndpointResponse<>(RecordingStatus.of(recording));
+	}
+
+	/**
+	 * Dumps the data of the current recording, whether running or stopped, to a temporary file deleted once read.
+	 */
+	@ReadOperation(produces = "application/octet-stream")
+	public synchronized WebEndpointResponse<Resource> dump() throws IOException {
+		if (recording == null) {
+			return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+		}
+		Path file = Files.createTempFile(RECORDING_NAME + "-", ".jfr");
+		try {
+			recording.dump(file);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(file);
+			throw e;
+		}
+		return new WebEndpointResponse<>(new TemporaryFileResource(file));
+	}
+
+	@Override
+	public synchronized void close() {
+		if (recording != null) {
+			recording.close();
+			recording = null;
+		}
+	}
+
+	private static Configuration configuration(String name) {
+		for (Configuration configuration : Configuration.getConfigurations()) {
+			if (configuration.getName().equals(name)) {
+				return configuration;
+			}
+		}
+		throw new InvalidEndpointRequestException("Unknown JFR settings: " + name, "Unknown settings");
+	}
+
+	public record RecordingStatus(
+			RecordingState state,
+			@Nullable Instant startTime,
+			Duration maxAge,
+			long maxSize,
+			@Nullable Duration duration
+	) {
+		static RecordingStatus of(Recording recording) {
+			return new RecordingStatus(recording.getState(), recording.getStartTime(), recording.getMaxAge(),
+					recording.getMaxSize(), recording.getDuration());
+		}
+	}
+
+	/**
+	 * A file deleted once its content has been read.
+	 */
+	private static class TemporaryFileResource extends FileSystemResource {
+
+		private TemporaryFileResource(Path file) {
+			super(file);
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			return Files.newInputStream(getFile().toPath(), StandardOpenOption.DELETE_ON_CLOSE);
+		}
+
+		@Override
+		public boolean isFile() {
+			// Keeps the file from being served without opening the stream that deletes it
+			return false;
+		}
+	}
+}
@@ -0,0 +1,8 @@
+package dev.epieffe.demo.cart.util;
+
+public class InvalidCursorException extends CartBusinessException {
+
+	public InvalidCursorException(String msg) {
+		super(msg);
+	}
+}
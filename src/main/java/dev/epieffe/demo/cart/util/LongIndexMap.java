@@ -0,0 +1,100 @@
+package dev.epieffe.demo.cart.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive {@code long} keys to non-negative {@code int} values.
+ * It avoids boxing keys and values, which matters when indexing carts with thousands of lines.
+ */
+public final class LongIndexMap {
+	public static final int ABSENT = -1;
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+	// Values are stored shifted by one, so that zero marks an empty slot
+	private int[] values;
+	private int mask;
+	private int size;
+
+	public LongIndexMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(2, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+		this.keys = new long[capacity];
+		this.values = new int[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Associates the value with the key, unless the key is already present.
+	 *
+	 * @return the value already associated with the key, or {@link #ABSENT}
+	 */
+	public int putIfAbsent(long key, int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative value: " + value);
+		}
+		int slot = slot(key);
+		while (values[slot] != 0) {
+			if (keys[slot] == key) {
+				return values[slot] - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value + 1;
+		if (++size > keys.length * LOAD_FACTOR) {
+			rehash(keys.length << 1);
+		}
+		return ABSENT;
+	}
+
+	/**
+	 * @return the value associated with the key, or {@link #ABSENT}
+	 */
+	public int get(long key) {
+		int slot = slot(key);
+		while (values[slot] != 0) {
+			if (keys[slot] == key) {
+				return values[slot] - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return ABSENT;
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != ABSENT;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(values, 0);
+		size = 0;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != 0) {
+				int slot = slot(oldKeys[i]);
+				while (values[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
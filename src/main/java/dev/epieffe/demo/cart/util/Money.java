@@ -0,0 +1,68 @@
+package dev.epieffe.demo.cart.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point arithmetic for prices, working on primitive {@code long} amounts of cents.
+ * <p>
+ * VAT rates are represented in units of 1/10000 (e.g. 0.22 is 2200), matching the scale of the
+ * {@code vat_rate} columns. Results are identical to the {@link BigDecimal} computations in {@link PriceUtil},
+ * which are used as a fallback for amounts too large for exact {@code long} arithmetic.
+ */
+public final class Money {
+	public static final int SCALE = 2;
+	public static final int RATE_SCALE = 4;
+
+	private static final long RATE_ONE = 10_000;
+	private static final long MAX_EXACT_CENTS = Long.MAX_VALUE / RATE_ONE;
+
+	public static long toCents(BigDecimal amount) {
+		return amount.movePointRight(SCALE).longValueExact();
+	}
+
+	public static BigDecimal fromCents(long cents) {
+		return BigDecimal.valueOf(cents, SCALE);
+	}
+
+	public static int toRateUnits(BigDecimal rate) {
+		return rate.movePointRight(RATE_SCALE).intValueExact();
+	}
+
+	public static BigDecimal fromRateUnits(int rateUnits) {
+		return BigDecimal.valueOf(rateUnits, RATE_SCALE);
+	}
+
+	/**
+	 * Computes the net price for a total price including VAT, rounding half up to the cent.
+	 */
+	public static long netPrice(long totalCents, int vatRateUnits) {
+		long divisor = RATE_ONE + vatRateUnits;
+		if (divisor <= 0) {
+			throw new ArithmeticException("Invalid VAT rate: " + fromRateUnits(vatRateUnits));
+		}
+		if (Math.abs(totalCents) > MAX_EXACT_CENTS) {
+			return toCents(PriceUtil.computeNetPrice(fromCents(totalCents), fromRateUnits(vatRateUnits)));
+		}
+		long dividend = totalCents * RATE_ONE;
+		long quotient = dividend / divisor;
+		long remainder = Math.abs(dividend % divisor);
+		// HALF_UP: round away from zero when the discarded fraction is at least one half
+		if (remainder >= divisor - remainder) {
+			quotient += Long.signum(dividend);
+		}
+		return quotient;
+	}
+
+	/**
+	 * Computes the VAT amount for a total price including VAT, as the total price minus the rounded net price.
+	 */
+	public static long vatAmount(long totalCents, int vatRateUnits) {
+		return totalCents - netPrice(totalCents, vatRateUnits);
+	}
+
+	public static long multiply(long cents, int quantity) {
+		return Math.multiplyExact(cents, quantity);
+	}
+
+	private Money() {}
+}
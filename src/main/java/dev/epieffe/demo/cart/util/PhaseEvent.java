@@ -0,0 +1,60 @@
+package dev.epieffe.demo.cart.util;
+
+import io.micrometer.core.instrument.Tags;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jspecify.annotations.Nullable;
+
+import java.util.stream.Collectors;
+
+/**
+ * JFR event of a phase timed by a {@link PhaseTimer}.
+ */
+@Name("dev.epieffe.demo.cart.Phase")
+@Label("Phase")
+@Description("Phase of an operation, as recorded by the phase timers")
+@Category("Cart")
+@Enabled(false)
+@StackTrace(false)
+class PhaseEvent extends Event {
+	private static final EventType TYPE = EventType.getEventType(PhaseEvent.class);
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Tags")
+	String tags;
+
+	/**
+	 * Begins a new event, or returns null if no recording is enabling it.
+	 */
+	static @Nullable PhaseEvent beginIfEnabled() {
+		if (!TYPE.isEnabled()) {
+			return null;
+		}
+		var event = new PhaseEvent();
+		event.begin();
+		return event;
+	}
+
+	void end(String operation, String phase, Tags tags) {
+		end();
+		if (shouldCommit()) {
+			this.operation = operation;
+			this.phase = phase;
+			this.tags = tags.stream()
+					.map(tag -> tag.getKey() + "=" + tag.getValue())
+					.collect(Collectors.joining(","));
+			commit();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package dev.epieffe.demo.cart.util;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.jspecify.annotations.Nullable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the phases of an operation, one after the other. Each phase is recorded by a timer with a percentile
+ * histogram, tagged with the name of the phase and the tags of the operation.
+ */
+public class PhaseTimer {
+
+	private final String name;
+	private final Meter.MeterProvider<Timer> timers;
+
+	public PhaseTimer(MeterRegistry registry, String name, String description) {
+		this.name = name;
+		this.timers = Timer.builder(name)
+				.description(description)
+				.publishPercentileHistogram()
+				.minimumExpectedValue(Duration.ofNanos(100_000))
+				.maximumExpectedValue(Duration.ofSeconds(10))
+				.withRegistry(registry);
+	}
+
+	/**
+	 * Starts timing the first phase of an operation.
+	 *
+	 * @param tags pairs of tag keys and values, the same for all the phases of the operation
+	 */
+	public Phases start(String... tags) {
+		return new Phases(Tags.of(tags));
+	}
+
+	public class Phases {
+		private final Tags tags;
+		private long start;
+		private @Nullable PhaseEvent event;
+
+		private Phases(Tags tags) {
+			this.tags = tags;
+			begin(System.nanoTime());
+		}
+
+		/**
+		 * Records the time since the end of the previous phase, or since the start of the operation.
+		 */
+		public void end(String phase) {
+			long now = System.nanoTime();
+			timers.withTags(tags.and("phase", phase)).record(now - start, TimeUnit.NANOSECONDS);
+			if (event != null) {
+				event.end(name, phase, tags);
+			}
+			begin(now);
+		}
+
+		/**
+		 * Records the commit of the current transaction as the last phase, if the transaction commits.
+		 */
+		public void endOnCommit(String phase) {
+			if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+				return;
+			}
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void beforeCompletion() {
+					// Flushing and committing happen right after this
+					begin(System.nanoTime());
+				}
+
+				@Override
+				public void afterCommit() {
+					end(phase);
+				}
+			});
+		}
+
+		private void begin(long now) {
+			start = now;
+			event = PhaseEvent.beginIfEnabled();
+		}
+	}
+}
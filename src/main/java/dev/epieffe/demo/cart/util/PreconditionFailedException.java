@@ -0,0 +1,12 @@
+package dev.epieffe.demo.cart.util;
+
+/**
+ * A conditional request whose precondition does not hold, such as an {@code If-Match} header that does not
+ * match the current version of the resource.
+ */
+public class PreconditionFailedException extends CartBusinessException {
+
+	public PreconditionFailedException(String msg) {
+		super(msg);
+	}
+}
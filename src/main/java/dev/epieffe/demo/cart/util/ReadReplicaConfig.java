@@ -0,0 +1,104 @@
+package dev.epieffe.demo.cart.util;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Routes read-only transactions to the read replicas listed in {@code cart.datasource.replicas.urls}.
+ * <p>
+ * The data source configured by Spring Boot keeps connecting to the primary, and is wrapped so that each
+ * transaction gets its connection when it runs its first statement, from the primary or from a replica depending
+ * on whether the transaction is read-only.
+ * <p>
+ * Enabled by the {@code cart.datasource.replicas.enabled} property.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnBooleanProperty("cart.datasource.replicas.enabled")
+public class ReadReplicaConfig {
+	// Requests must not wait long for a replica that is down, the primary can serve them
+	private static final long REPLICA_CONNECTION_TIMEOUT_MILLIS = 1000;
+
+	@Bean
+	static BeanPostProcessor readReplicaRoutingPostProcessor(
+			ObjectProvider<ReadReplicas> replicas,
+			ObjectProvider<MeterRegistry> registry
+	) {
+		return new ReadReplicaRoutingPostProcessor(replicas, registry);
+	}
+
+	@Bean
+	ReadReplicas readReplicas(
+			@Value("${cart.datasource.replicas.urls}") List<String> urls,
+			@Value("${cart.datasource.replicas.username}") String username,
+			@Value("${cart.datasource.replicas.password}") String password,
+			@Value("${cart.datasource.replicas.pool-size:10}") int poolSize,
+			@Value("${cart.datasource.replicas.max-lag:1s}") Duration maxLag,
+			@Value("${cart.datasource.replicas.check-interval:1s}") Duration checkInterval,
+			MeterRegistry registry
+	) {
+		List<HikariDataSource> pools = IntStream.range(0, urls.size())
+				.mapToObj(i -> replicaPool("replica-" + i, urls.get(i), username, password, poolSize, registry))
+				.toList();
+		return new ReadReplicas(pools, maxLag, checkInterval, registry);
+	}
+
+	@Bean
+	ReadYourWritesFilter readYourWritesFilter(
+			@Value("${cart.datasource.replicas.sticky-duration:5s}") Duration stickyDuration
+	) {
+		return new ReadYourWritesFilter(stickyDuration);
+	}
+
+	/**
+	 * Wraps the data source before any other wrapper, such as the {@link SqlStatisticsDataSource}.
+	 */
+	private record ReadReplicaRoutingPostProcessor(
+			ObjectProvider<ReadReplicas> replicas,
+			ObjectProvider<MeterRegistry> registry
+	) implements BeanPostProcessor, Ordered {
+
+		@Override
+		public Object postProcessAfterInitialization(Object bean, String beanName) {
+			if (bean instanceof DataSource dataSource && beanName.equals("dataSource")) {
+				return new LazyConnectionDataSourceProxy(
+						new ReadReplicaRoutingDataSource(dataSource, replicas.getObject(), registry.getObject()));
+			}
+			return bean;
+		}
+
+		@Override
+		public int getOrder() {
+			return Ordered.HIGHEST_PRECEDENCE;
+		}
+	}
+
+	private static HikariDataSource replicaPool(String name, String url, String username, String password, int poolSize,
+			MeterRegistry registry) {
+		var pool = new HikariDataSource();
+		pool.setJdbcUrl(url);
+		pool.setUsername(username);
+		pool.setPassword(password);
+		pool.setMaximumPoolSize(poolSize);
+		pool.setReadOnly(true);
+		pool.setConnectionTimeout(REPLICA_CONNECTION_TIMEOUT_MILLIS);
+		// Start even when a replica is down, the lag checks find out when it is back
+		pool.setInitializationFailTimeout(-1);
+		pool.setPoolName(name);
+		// Spring Boot only binds the metrics of the primary pool
+		pool.setMetricRegistry(registry);
+		return pool;
+	}
+}
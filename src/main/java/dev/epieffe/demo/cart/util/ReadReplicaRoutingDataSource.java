@@ -0,0 +1,72 @@
+package dev.epieffe.demo.cart.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Gets the connections of read-only transactions from the {@link ReadReplicas}, and all the other connections
+ * from the primary. Reads fall back to the primary when no replica is available, or when the current request
+ * must read its own writes.
+ * <p>
+ * The transaction must already be started when the connection is got, so this data source must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+class ReadReplicaRoutingDataSource extends AbstractDataSource {
+
+	private final DataSource primary;
+	private final ReadReplicas replicas;
+	private final Counter replicaReads;
+	private final Counter primaryReads;
+
+	ReadReplicaRoutingDataSource(DataSource primary, ReadReplicas replicas, MeterRegistry registry) {
+		this.primary = primary;
+		this.replicas = replicas;
+		this.replicaReads = Counter.builder("cart.datasource.reads")
+				.tag("target", "replica")
+				.description("Connections got for read-only transactions, by the database serving them")
+				.register(registry);
+		this.primaryReads = Counter.builder("cart.datasource.reads")
+				.tag("target", "primary")
+				.description("Connections got for read-only transactions, by the database serving them")
+				.register(registry);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return primary.getConnection();
+		}
+		if (!ReadYourWritesFilter.isPrimaryRequired()) {
+			Connection connection = replicas.getConnection();
+			if (connection != null) {
+				replicaReads.increment();
+				return connection;
+			}
+		}
+		primaryReads.increment();
+		return primary.getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return primary.getConnection(username, password);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		// Lets the pool metrics find the primary pool
+		return iface.isInstance(this) ? (T) this : primary.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || primary.isWrapperFor(iface);
+	}
+}
@@ -0,0 +1,155 @@
+package dev.epieffe.demo.cart.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connections to the read replicas of the database, taken in turns from the replicas that are not lagging
+ * behind the primary.
+ * <p>
+ * The replication lag of each replica is checked periodically. Replicas lagging by more than the max lag, not
+ * streaming WAL from the primary, or that cannot be reached, are not used until a later check finds them caught up.
+ */
+public class ReadReplicas implements SmartLifecycle, AutoCloseable {
+	private static final Logger LOG = LoggerFactory.getLogger(ReadReplicas.class);
+
+	// Zero when the replica has replayed all the WAL it received, or when it is not a replica at all. Null when the
+	// replica is not streaming WAL from the primary, since it cannot tell how far behind it is then: a disconnected
+	// replica has replayed all the WAL it received, however old. Reading the status of the WAL receiver requires
+	// the privileges of pg_read_all_stats
+	private static final String LAG_QUERY = """
+			SELECT CASE
+				WHEN NOT pg_is_in_recovery() THEN 0
+				WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN NULL
+				WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+				ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())
+			END
+			""";
+	private static final int LAG_QUERY_TIMEOUT_SECONDS = 1;
+
+	private final List<Replica> replicas;
+	private final double maxLagSeconds;
+	private final long checkIntervalMillis;
+	private final AtomicInteger next = new AtomicInteger();
+	private volatile @Nullable ScheduledExecutorService checker;
+
+	public ReadReplicas(List<? extends DataSource> dataSources, Duration maxLag, Duration checkInterval, MeterRegistry registry) {
+		this.replicas = dataSources.stream().map(Replica::new).toList();
+		this.maxLagSeconds = maxLag.toNanos() / 1e9;
+		this.checkIntervalMillis = checkInterval.toMillis();
+		for (int i = 0; i < replicas.size(); i++) {
+			Gauge.builder("cart.datasource.replica.lag", replicas.get(i), r -> r.lagSeconds)
+					.tag("replica", String.valueOf(i))
+					.description("Replication lag of the read replica in seconds, NaN when it cannot be reached")
+					.baseUnit("seconds")
+					.register(registry);
+		}
+	}
+
+	/**
+	 * Gets a connection to the next replica that is not lagging, or null if there is none.
+	 */
+	public @Nullable Connection getConnection() {
+		int start = next.getAndIncrement();
+		for (int i = 0; i < replicas.size(); i++) {
+			Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+			if (replica.lagSeconds <= maxLagSeconds) {
+				try {
+					return replica.dataSource.getConnection();
+				} catch (SQLException e) {
+					LOG.warn("Failed to connect to read replica {}, not using it until the next lag check", replicas.indexOf(replica), e);
+					replica.lagSeconds = Double.NaN;
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void start() {
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+				Thread.ofPlatform().name("read-replica-lag-checker").daemon().factory());
+		checker = executor;
+		executor.scheduleWithFixedDelay(this::checkLag, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void stop() {
+		ScheduledExecutorService executor = checker;
+		checker = null;
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return checker != null;
+	}
+
+	@Override
+	public void close() throws Exception {
+		for (Replica replica : replicas) {
+			if (replica.dataSource instanceof AutoCloseable closeable) {
+				closeable.close();
+			}
+		}
+	}
+
+	void checkLag() {
+		for (int i = 0; i < replicas.size(); i++) {
+			Replica replica = replicas.get(i);
+			double lag;
+			try {
+				Double result = replica.jdbcTemplate.queryForObject(LAG_QUERY, Double.class);
+				// Not streaming, or no transaction replayed yet
+				lag = result != null ? result : Double.NaN;
+			} catch (DataAccessException e) {
+				LOG.debug("Failed to check the lag of read replica {}", i, e);
+				lag = Double.NaN;
+			}
+			updateLag(i, lag);
+		}
+	}
+
+	void updateLag(int index, double lagSeconds) {
+		Replica replica = replicas.get(index);
+		boolean wasUsable = replica.lagSeconds <= maxLagSeconds;
+		boolean usable = lagSeconds <= maxLagSeconds;
+		replica.lagSeconds = lagSeconds;
+		if (wasUsable && !usable) {
+			LOG.warn("Read replica {} is lagging or unreachable (lag {}s), reading from the primary instead", index, lagSeconds);
+		} else if (!wasUsable && usable) {
+			LOG.info("Read replica {} is available (lag {}s)", index, lagSeconds);
+		}
+	}
+
+	private static final class Replica {
+		private final DataSource dataSource;
+		private final JdbcTemplate jdbcTemplate;
+		// NaN until the first check, so that replicas are not used before their lag is known
+		private volatile double lagSeconds = Double.NaN;
+
+		private Replica(DataSource dataSource) {
+			this.dataSource = dataSource;
+			this.jdbcTemplate = new JdbcTemplate(dataSource);
+			this.jdbcTemplate.setQueryTimeout(LAG_QUERY_TIMEOUT_SECONDS);
+		}
+	}
+}
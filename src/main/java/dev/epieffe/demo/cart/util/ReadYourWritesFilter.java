@@ -0,0 +1,73 @@
+package dev.epieffe.demo.cart.util;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Makes the requests of a client read from the primary for a while after the client writes, so that it sees its
+ * own writes even before they reach the replicas.
+ * <p>
+ * Each request with a method that is not safe sets a cookie that expires after the sticky duration. Requests with
+ * the cookie, and the writing requests themselves, are served by the primary.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+	public static final String COOKIE_NAME = "cart-read-primary";
+
+	private static final String PRIMARY_REQUIRED_ATTRIBUTE = ReadYourWritesFilter.class.getName() + ".PRIMARY_REQUIRED";
+	private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+	private final int stickySeconds;
+
+	public ReadYourWritesFilter(Duration stickyDuration) {
+		this.stickySeconds = (int) Math.max(1, (stickyDuration.toMillis() + 999) / 1000);
+	}
+
+	/**
+	 * Whether the request served by the current thread must read from the primary.
+	 */
+	public static boolean isPrimaryRequired() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		return attributes != null
+				&& attributes.getAttribute(PRIMARY_REQUIRED_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		boolean write = !SAFE_METHODS.contains(request.getMethod());
+		if (write || hasCookie(request)) {
+			request.setAttribute(PRIMARY_REQUIRED_ATTRIBUTE, Boolean.TRUE);
+		}
+		if (write) {
+			// Set before the response is committed by the handler
+			var cookie = new Cookie(COOKIE_NAME, "1");
+			cookie.setPath("/");
+			cookie.setMaxAge(stickySeconds);
+			cookie.setHttpOnly(true);
+			response.addCookie(cookie);
+		}
+		chain.doFilter(request, response);
+	}
+
+	private static boolean hasCookie(HttpServletRequest request) {
+		Cookie[] cookies = request.getCookies();
+		if (cookies != null) {
+			for (Cookie cookie : cookies) {
+				if (COOKIE_NAME.equals(cookie.getName())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
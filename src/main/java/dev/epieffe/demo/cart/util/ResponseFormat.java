@@ -0,0 +1,60 @@
+package dev.epieffe.demo.cart.util;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Encodings of response bodies that are serialized by hand rather than by the message converters, such as the
+ * cached order bodies. CBOR and Smile are binary encodings of the same JSON data model, smaller and faster to
+ * write and parse than JSON.
+ */
+public enum ResponseFormat {
+	JSON(MediaType.APPLICATION_JSON),
+	CBOR(MediaType.APPLICATION_CBOR),
+	SMILE(new MediaType("application", "x-jackson-smile"));
+
+	private final MediaType mediaType;
+
+	ResponseFormat(MediaType mediaType) {
+		this.mediaType = mediaType;
+	}
+
+	public MediaType mediaType() {
+		return mediaType;
+	}
+
+	/**
+	 * The format accepted with the highest quality by the given Accept header, preferring formats named explicitly
+	 * over those matched by a wildcard. JSON when the header is missing, malformed or accepts no format.
+	 */
+	public static ResponseFormat negotiate(@Nullable String accept) {
+		if (accept == null || accept.isBlank()) {
+			return JSON;
+		}
+		List<MediaType> accepted;
+		try {
+			accepted = MediaType.parseMediaTypes(accept);
+		} catch (InvalidMediaTypeException e) {
+			return JSON;
+		}
+		ResponseFormat best = JSON;
+		double bestQuality = 0;
+		boolean bestExplicit = false;
+		for (ResponseFormat format : values()) {
+			for (MediaType type : accepted) {
+				double quality = type.getQualityValue();
+				boolean explicit = !type.isWildcardType() && !type.isWildcardSubtype();
+				if (quality > 0 && type.includes(format.mediaType)
+						&& (quality > bestQuality || (quality == bestQuality && explicit && !bestExplicit))) {
+					best = format;
+					bestQuality = quality;
+					bestExplicit = explicit;
+				}
+			}
+		}
+		return best;
+	}
+}
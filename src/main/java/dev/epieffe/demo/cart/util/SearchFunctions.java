@@ -0,0 +1,31 @@
+package dev.epieffe.demo.cart.util;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registers PostgreSQL full-text search functions, so that they can be used in criteria queries.
+ * <p>
+ * Both functions take two text columns and a query in web search syntax. The document expression must match
+ * the one of the full-text search index, otherwise the index cannot be used.
+ */
+public class SearchFunctions implements FunctionContributor {
+	public static final String TEXT_MATCH = "text_match";
+	public static final String TEXT_RANK = "text_rank";
+
+	private static final String DOCUMENT = "to_tsvector('simple', ?1 || ' ' || ?2)";
+	private static final String QUERY = "websearch_to_tsquery('simple', ?3)";
+
+	@Override
+	public void contributeFunctions(FunctionContributions functionContributions) {
+		var types = functionContributions.getTypeConfiguration().getBasicTypeRegistry();
+		BasicType<Boolean> booleanType = types.resolve(StandardBasicTypes.BOOLEAN);
+		BasicType<Float> floatType = types.resolve(StandardBasicTypes.FLOAT);
+		functionContributions.getFunctionRegistry()
+				.registerPattern(TEXT_MATCH, "(" + DOCUMENT + " @@ " + QUERY + ")", booleanType);
+		functionContributions.getFunctionRegistry()
+				.registerPattern(TEXT_RANK, "ts_rank(" + DOCUMENT + ", " + QUERY + ")", floatType);
+	}
+}
@@ -1,14 +1,38 @@
 package dev.epieffe.demo.cart.util;
 
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.jspecify.annotations.Nullable;
 import org.springframework.data.jpa.domain.Specification;
 
 public class Specifications {
+	private static final char LIKE_ESCAPE = '\\';
 
 	public static <T> Specification<T>  stringContains(SingularAttribute<T, String> attribute, String value) {
 		return (r, q, cb) ->
-				cb.like(cb.lower(r.get(attribute)), "%" + value.toLowerCase() + "%");
+				cb.like(cb.lower(r.get(attribute)), "%" + escapeLike(value.toLowerCase()) + "%", LIKE_ESCAPE);
+	}
+
+	/**
+	 * Full-text search predicate on two text attributes, with the query in web search syntax. When the query
+	 * has no other ordering, the results are sorted by relevance and then by id.
+	 *
+	 * @see SearchFunctions
+	 */
+	public static <T, I> Specification<T>  textMatches(
+			SingularAttribute<T, String> first, SingularAttribute<T, String> second, String query, SingularAttribute<T, I> id
+	) {
+		return (r, q, cb) -> {
+			// Bound as a parameter rather than inlined in the SQL like literals are
+			Expression<String> text = ((HibernateCriteriaBuilder) cb).value(query);
+			if (q.getOrderList().isEmpty() && !Long.class.equals(q.getResultType())) {
+				q.orderBy(
+						cb.desc(cb.function(SearchFunctions.TEXT_RANK, Float.class, r.get(first), r.get(second), text)),
+						cb.asc(r.get(id)));
+			}
+			return cb.isTrue(cb.function(SearchFunctions.TEXT_MATCH, Boolean.class, r.get(first), r.get(second), text));
+		};
 	}
 
 	public static <T, R extends Comparable<? super R>> Specification<T>  greaterThan(SingularAttribute<T, R> attribute, R value) {
@@ -19,5 +43,37 @@ public class Specifications {
 		return (r, q, cb) -> cb.lessThan(r.get(attribute), value);
 	}
 
+	public static <T, R extends Comparable<? super R>> Specification<T>  greaterThanOrEqualTo(SingularAttribute<T, R> attribute, R value) {
+		return (r, q, cb) -> cb.greaterThanOrEqualTo(r.get(attribute), value);
+	}
+
+	public static <T, R extends Comparable<? super R>> Specification<T>  lessThanOrEqualTo(SingularAttribute<T, R> attribute, R value) {
+		return (r, q, cb) -> cb.lessThanOrEqualTo(r.get(attribute), value);
+	}
+
+	/**
+	 * Keyset pagination predicate, matching the rows that come after the given key when sorting by the key
+	 * and then by id, both in the same direction.
+	 */
+	public static <T, R extends Comparable<? super R>, I extends Comparable<? super I>> Specification<T>  seekAfter(
+			SingularAttribute<T, R> key, R keyValue, SingularAttribute<T, I> id, I idValue, boolean descending
+	) {
+		// The redundant bound on the key alone lets the database use an index range scan
+		if (descending) {
+			return (r, q, cb) -> cb.and(
+					cb.lessThanOrEqualTo(r.get(key), keyValue),
+					cb.or(cb.lessThan(r.get(key), keyValue),
+							cb.lessThan(r.get(id), idValue)));
+		}
+		return (r, q, cb) -> cb.and(
+				cb.greaterThanOrEqualTo(r.get(key), keyValue),
+				cb.or(cb.greaterThan(r.get(key), keyValue),
+						cb.greaterThan(r.get(id), idValue)));
+	}
+
+	private static String escapeLike(String value) {
+		return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+
 	private Specifications() {}
 }
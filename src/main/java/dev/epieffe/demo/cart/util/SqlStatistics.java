@@ -0,0 +1,104 @@
+package dev.epieffe.demo.cart.util;
+
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * SQL statements executed by the current thread while serving a request, the rows they fetched and the time spent
+ * executing them and fetching their results. Recorded by {@link SqlStatisticsDataSource} and only updated by the
+ * thread that started them.
+ */
+public final class SqlStatistics {
+
+	private static final ThreadLocal<@Nullable SqlStatistics> CURRENT = new ThreadLocal<>();
+
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private long statements;
+	private long rows;
+	private long nanos;
+	// Executions by SQL, normalized only when reporting
+	private final Map<String, Integer> executions = new HashMap<>();
+
+	/**
+	 * Starts recording the statements executed by the current thread, replacing any statistics already recorded.
+	 */
+	public static SqlStatistics start() {
+		var statistics = new SqlStatistics();
+		CURRENT.set(statistics);
+		return statistics;
+	}
+
+	public static void stop() {
+		CURRENT.remove();
+	}
+
+	static @Nullable SqlStatistics current() {
+		return CURRENT.get();
+	}
+
+	void statement(String sql, long elapsedNanos) {
+		statements++;
+		nanos += elapsedNanos;
+		executions.merge(sql, 1, Integer::sum);
+	}
+
+	/**
+	 * A batch is sent in one round trip, however many times its statement is repeated.
+	 */
+	void batch(long elapsedNanos) {
+		statements++;
+		nanos += elapsedNanos;
+	}
+
+	void fetch(long fetchedRows, long elapsedNanos) {
+		rows += fetchedRows;
+		nanos += elapsedNanos;
+	}
+
+	public long statements() {
+		return statements;
+	}
+
+	public long rows() {
+		return rows;
+	}
+
+	public Duration time() {
+		return Duration.ofNanos(nanos);
+	}
+
+	/**
+	 * Statements executed at least {@code threshold} times with the same shape, that is differing only by their
+	 * parameters or literals, as an N+1 query would. The most repeated come first.
+	 */
+	public List<Repeated> repeated(int threshold) {
+		Map<String, Integer> byShape = new HashMap<>();
+		executions.forEach((sql, count) -> byShape.merge(shape(sql), count, Integer::sum));
+		var repeated = new ArrayList<Repeated>();
+		byShape.forEach((shape, count) -> {
+			if (count >= threshold) {
+				repeated.add(new Repeated(shape, count));
+			}
+		});
+		repeated.sort(Comparator.comparingInt(Repeated::count).reversed());
+		return repeated;
+	}
+
+	static String shape(String sql) {
+		String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+		shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+		return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+	}
+
+	public record Repeated(String shape, int count) { }
+}
@@ -0,0 +1,54 @@
+package dev.epieffe.demo.cart.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+/**
+ * Counts the SQL statements executed by each request, see {@link SqlStatisticsFilter}.
+ * <p>
+ * Enabled by the {@code cart.sql.statistics.enabled} property.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnBooleanProperty("cart.sql.statistics.enabled")
+public class SqlStatisticsConfig {
+
+	@Bean
+	static BeanPostProcessor sqlStatisticsPostProcessor() {
+		return new SqlStatisticsPostProcessor();
+	}
+
+	@Bean
+	SqlStatisticsFilter sqlStatisticsFilter(
+			MeterRegistry registry,
+			@Value("${cart.sql.statistics.response-headers:false}") boolean responseHeaders,
+			@Value("${cart.sql.statistics.n-plus-one-threshold:10}") int nPlusOneThreshold
+	) {
+		return new SqlStatisticsFilter(registry, responseHeaders, nPlusOneThreshold);
+	}
+
+	/**
+	 * Wraps the data source after any other wrapper, so that the connections to the read replicas are counted too.
+	 */
+	private static class SqlStatisticsPostProcessor implements BeanPostProcessor, Ordered {
+
+		@Override
+		public Object postProcessAfterInitialization(Object bean, String beanName) {
+			if (bean instanceof DataSource dataSource && beanName.equals("dataSource")) {
+				return new SqlStatisticsDataSource(dataSource);
+			}
+			return bean;
+		}
+
+		@Override
+		public int getOrder() {
+			return Ordered.LOWEST_PRECEDENCE;
+		}
+	}
+}
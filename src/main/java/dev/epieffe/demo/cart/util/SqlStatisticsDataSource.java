@@ -0,0 +1,128 @@
+package dev.epieffe.demo.cart.util;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Records the statements executed by the current thread in its {@link SqlStatistics}, if it has started any.
+ * Connections got by other threads are returned as they are, at no cost.
+ */
+class SqlStatisticsDataSource extends DelegatingDataSource {
+
+	SqlStatisticsDataSource(DataSource target) {
+		super(target);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return wrap(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return wrap(super.getConnection(username, password));
+	}
+
+	private static Connection wrap(Connection connection) {
+		SqlStatistics statistics = SqlStatistics.current();
+		if (statistics == null) {
+			return connection;
+		}
+		return proxy(Connection.class, new ConnectionHandler(connection, statistics));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(SqlStatisticsDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+	}
+
+	private static @Nullable Object invoke(Object target, Method method, @Nullable Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private record ConnectionHandler(Connection target, SqlStatistics statistics) implements InvocationHandler {
+
+		@Override
+		public @Nullable Object invoke(Object proxy, Method method, @Nullable Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "equals":
+					return args != null && proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				default:
+					break;
+			}
+			Object result = SqlStatisticsDataSource.invoke(target, method, args);
+			return switch (method.getName()) {
+				case "createStatement", "prepareStatement", "prepareCall" -> {
+					// Prepared statements and calls are created with their SQL
+					String sql = args != null && args[0] instanceof String s ? s : null;
+					yield SqlStatisticsDataSource.proxy(method.getReturnType(),
+							new StatementHandler((Statement) result, (Connection) proxy, sql, statistics));
+				}
+				default -> result;
+			};
+		}
+	}
+
+	private record StatementHandler(
+			Statement target,
+			Connection connection,
+			@Nullable String preparedSql,
+			SqlStatistics statistics
+	) implements InvocationHandler {
+
+		@Override
+		public @Nullable Object invoke(Object proxy, Method method, @Nullable Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("getConnection")) {
+				return connection;
+			}
+			if (!name.startsWith("execute") && !name.equals("getResultSet")) {
+				return SqlStatisticsDataSource.invoke(target, method, args);
+			}
+			long start = System.nanoTime();
+			Object result = SqlStatisticsDataSource.invoke(target, method, args);
+			long elapsed = System.nanoTime() - start;
+			if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+				statistics.batch(elapsed);
+			} else if (name.startsWith("execute")) {
+				String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+				statistics.statement(sql != null ? sql : "", elapsed);
+			}
+			if (result instanceof ResultSet resultSet) {
+				return SqlStatisticsDataSource.proxy(ResultSet.class, new ResultSetHandler(resultSet, statistics));
+			}
+			return result;
+		}
+	}
+
+	private record ResultSetHandler(ResultSet target, SqlStatistics statistics) implements InvocationHandler {
+
+		@Override
+		public @Nullable Object invoke(Object proxy, Method method, @Nullable Object[] args) throws Throwable {
+			if (!method.getName().equals("next")) {
+				return SqlStatisticsDataSource.invoke(target, method, args);
+			}
+			// Rows may be fetched from the database as the result set is read
+			long start = System.nanoTime();
+			boolean next = target.next();
+			statistics.fetch(next ? 1 : 0, System.nanoTime() - start);
+			return next;
+		}
+	}
+}
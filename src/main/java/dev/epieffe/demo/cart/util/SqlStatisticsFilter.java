@@ -0,0 +1,168 @@
+package dev.epieffe.demo.cart.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records the SQL statements executed while serving each request, and flags the statements repeated with the same
+ * shape at least {@code nPlusOneThreshold} times as suspected N+1 queries.
+ * <p>
+ * Statements, rows and database time of each request are recorded as metrics tagged with the method and the URI
+ * pattern, suspected N+1 queries are logged as warnings, and when {@code responseHeaders} is set the statistics are
+ * also returned in response headers. Statements executed by other threads, such as group commits of orders, are not
+ * counted.
+ */
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+	private static final Logger LOG = LoggerFactory.getLogger(SqlStatisticsFilter.class);
+
+	public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+	public static final String ROWS_HEADER = "X-Sql-Rows";
+	public static final String N_PLUS_ONE_HEADER = "X-Sql-Suspected-N-Plus-One";
+	private static final int MAX_HEADER_SHAPE_LENGTH = 200;
+
+	private final boolean responseHeaders;
+	private final int nPlusOneThreshold;
+	private final Meter.MeterProvider<DistributionSummary> statements;
+	private final Meter.MeterProvider<DistributionSummary> rows;
+	private final Meter.MeterProvider<Timer> time;
+	private final Meter.MeterProvider<Counter> nPlusOne;
+
+	public SqlStatisticsFilter(MeterRegistry registry, boolean responseHeaders, int nPlusOneThreshold) {
+		this.responseHeaders = responseHeaders;
+		this.nPlusOneThreshold = nPlusOneThreshold;
+		this.statements = DistributionSummary.builder("cart.sql.statements")
+				.description("SQL statements executed per request")
+				.withRegistry(registry);
+		this.rows = DistributionSummary.builder("cart.sql.rows")
+				.description("Rows fetched per request")
+				.withRegistry(registry);
+		this.time = Timer.builder("cart.sql.time")
+				.description("Time spent per request executing SQL statements and fetching their results")
+				.withRegistry(registry);
+		this.nPlusOne = Counter.builder("cart.sql.n.plus.one")
+				.description("Requests repeating a statement with the same shape, as an N+1 query would")
+				.withRegistry(registry);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		SqlStatistics statistics = SqlStatistics.start();
+		@Nullable HeaderWriter headerWriter = responseHeaders ? new HeaderWriter(response, statistics) : null;
+		try {
+			chain.doFilter(request, headerWriter != null ? headerWriter : response);
+		} finally {
+			SqlStatistics.stop();
+			if (headerWriter != null) {
+				headerWriter.writeHeaders();
+			}
+			record(request, statistics);
+		}
+	}
+
+	private void record(HttpServletRequest request, SqlStatistics statistics) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+		String[] tags = {"method", request.getMethod(), "uri", uri};
+		statements.withTags(tags).record(statistics.statements());
+		rows.withTags(tags).record(statistics.rows());
+		time.withTags(tags).record(statistics.time());
+		List<SqlStatistics.Repeated> repeated = statistics.repeated(nPlusOneThreshold);
+		if (!repeated.isEmpty()) {
+			nPlusOne.withTags(tags).increment();
+			for (SqlStatistics.Repeated statement : repeated) {
+				LOG.warn("Suspected N+1 query in {} {}: {} executions of {}",
+						request.getMethod(), uri, statement.count(), statement.shape());
+			}
+		}
+		LOG.debug("{} {}: {} SQL statements, {} rows, {} ms", request.getMethod(), request.getRequestURI(),
+				statistics.statements(), statistics.rows(), statistics.time().toMillis());
+	}
+
+	/**
+	 * Adds the statistics to the response headers right before the response is committed, since headers cannot
+	 * be added afterwards. Statements executed while writing the body are not included.
+	 */
+	private class HeaderWriter extends HttpServletResponseWrapper {
+		private final SqlStatistics statistics;
+		private boolean written = false;
+
+		private HeaderWriter(HttpServletResponse response, SqlStatistics statistics) {
+			super(response);
+			this.statistics = statistics;
+		}
+
+		private void writeHeaders() {
+			if (written || isCommitted()) {
+				return;
+			}
+			written = true;
+			setHeader(STATEMENTS_HEADER, Long.toString(statistics.statements()));
+			setHeader(ROWS_HEADER, Long.toString(statistics.rows()));
+			addHeader("Server-Timing", String.format(Locale.ROOT, "db;dur=%.3f", statistics.time().toNanos() / 1_000_000.0));
+			List<SqlStatistics.Repeated> repeated = statistics.repeated(nPlusOneThreshold);
+			if (!repeated.isEmpty()) {
+				SqlStatistics.Repeated first = repeated.getFirst();
+				String shape = first.shape().length() > MAX_HEADER_SHAPE_LENGTH
+						? first.shape().substring(0, MAX_HEADER_SHAPE_LENGTH)
+						: first.shape();
+				setHeader(N_PLUS_ONE_HEADER, first.count() + "x " + shape);
+			}
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			writeHeaders();
+			return super.getOutputStream();
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			writeHeaders();
+			return super.getWriter();
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			writeHeaders();
+			super.flushBuffer();
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			writeHeaders();
+			super.sendError(sc, msg);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			writeHeaders();
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			writeHeaders();
+			super.sendRedirect(location);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package dev.epieffe.demo.cart.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+/**
+ * JFR event of the commit of a transaction, including the flush of the changes made in it.
+ */
+@Name("dev.epieffe.demo.cart.TransactionCommit")
+@Label("Transaction Commit")
+@Description("Commit of a transaction started by the transaction manager")
+@Category("Cart")
+@Enabled(false)
+@StackTrace(false)
+class TransactionCommitEvent extends Event {
+	private static final EventType TYPE = EventType.getEventType(TransactionCommitEvent.class);
+
+	@Label("Transaction")
+	@Description("Name of the transaction, usually the transactional method")
+	String transaction;
+
+	@Label("Read Only")
+	boolean readOnly;
+
+	@Label("Failed")
+	boolean failed;
+
+	/**
+	 * Records the commits of the transactions started by the transaction managers.
+	 */
+	@Component
+	static class Listener implements TransactionExecutionListener {
+		// Commits do not nest, so a thread commits one transaction at a time
+		private final ThreadLocal<TransactionCommitEvent> events = new ThreadLocal<>();
+
+		@Override
+		public void beforeCommit(TransactionExecution transaction) {
+			if (TYPE.isEnabled()) {
+				var event = new TransactionCommitEvent();
+				event.begin();
+				events.set(event);
+			}
+		}
+
+		@Override
+		public void afterCommit(TransactionExecution transaction, @Nullable Throwable commitFailure) {
+			TransactionCommitEvent event = events.get();
+			if (event == null) {
+				return;
+			}
+			events.remove();
+			event.end();
+			if (event.shouldCommit()) {
+				event.transaction = transaction.getTransactionName();
+				event.readOnly = transaction.isReadOnly();
+				event.failed = commitFailure != null;
+				event.commit();
+			}
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package dev.epieffe.demo.cart.util;
+
+import jakarta.validation.ConstraintViolation;
+
+import java.util.Comparator;
+import java.util.Set;
+
+public class ValidationUtil {
+
+	private static final Comparator<ConstraintViolation<?>> BY_PATH = Comparator
+			.comparing((ConstraintViolation<?> violation) -> violation.getPropertyPath().toString())
+			.thenComparing(ConstraintViolation::getMessage);
+
+	/**
+	 * Returns the message of the violation with the first property path, so that the same invalid object is always
+	 * reported with the same message, whatever the iteration order of the violations.
+	 */
+	public static String firstMessage(Set<? extends ConstraintViolation<?>> violations) {
+		return violations.stream().min(BY_PATH).orElseThrow().getMessage();
+	}
+
+	private ValidationUtil() {}
+}
@@ -0,0 +1,97 @@
+package dev.epieffe.demo.cart.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads pinned to their carrier thread, using the {@code jdk.VirtualThreadPinned} JFR event.
+ * <p>
+ * A pinned virtual thread blocks its carrier, so pinning in the request path (e.g. blocking inside a
+ * {@code synchronized} block of a JDBC driver or connection pool) limits throughput to the number of carriers.
+ * Each pinning is recorded in the {@code cart.virtual.threads.pinned} timer, and the stack trace of each distinct
+ * pinning site is logged once.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+	private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+	private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+	private static final int MAX_LOGGED_FRAMES = 20;
+	private static final int MAX_LOGGED_SITES = 1000;
+
+	private final Duration threshold;
+	private final Timer pinnedTimer;
+	private final Set<String> loggedSites = ConcurrentHashMap.newKeySet();
+	private @Nullable RecordingStream stream;
+
+	public VirtualThreadPinningMonitor(
+			MeterRegistry registry,
+			@Value("${cart.virtual-threads.pinned-threshold:20ms}") Duration threshold
+	) {
+		this.threshold = threshold;
+		this.pinnedTimer = Timer.builder("cart.virtual.threads.pinned")
+				.description("Time virtual threads spent pinned to their carrier thread")
+				.register(registry);
+	}
+
+	@Override
+	public synchronized void start() {
+		var recording = new RecordingStream();
+		recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+		recording.onEvent(PINNED_EVENT, this::onPinned);
+		recording.startAsync();
+		stream = recording;
+		LOG.info("Monitoring virtual threads pinned for longer than {} ms", threshold.toMillis());
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (stream != null) {
+			stream.close();
+			stream = null;
+		}
+	}
+
+	@Override
+	public synchronized boolean isRunning() {
+		return stream != null;
+	}
+
+	private void onPinned(RecordedEvent event) {
+		pinnedTimer.record(event.getDuration());
+		String site = formatStackTrace(event.getStackTrace());
+		if (loggedSites.size() < MAX_LOGGED_SITES && loggedSites.add(site)) {
+			LOG.warn("Virtual thread pinned for {} ms at:\n{}", event.getDuration().toMillis(), site);
+		}
+	}
+
+	private static String formatStackTrace(@Nullable RecordedStackTrace stackTrace) {
+		if (stackTrace == null) {
+			return "\t(no stack trace)";
+		}
+		List<RecordedFrame> frames = stackTrace.getFrames();
+		return frames.stream()
+				.limit(MAX_LOGGED_FRAMES)
+				.map(f -> "\tat " + f.getMethod().getType().getName() + "." + f.getMethod().getName() + ":" + f.getLineNumber())
+				.collect(Collectors.joining("\n"));
+	}
+}
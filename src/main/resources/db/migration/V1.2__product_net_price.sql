@@ -0,0 +1,3 @@
+ALTER TABLE product
+	ADD COLUMN net_price numeric(16,2),
+	ADD COLUMN vat_amount numeric(16,2);
@@ -0,0 +1,14 @@
+-- SET NOT NULL scans the whole table under an exclusive lock, unless a valid check constraint already proves that
+-- there are no nulls. The checks are validated first, which only blocks schema changes while scanning the table.
+ALTER TABLE product
+	ADD CONSTRAINT product_net_price_not_null CHECK (net_price IS NOT NULL) NOT VALID,
+	ADD CONSTRAINT product_vat_amount_not_null CHECK (vat_amount IS NOT NULL) NOT VALID;
+ALTER TABLE product VALIDATE CONSTRAINT product_net_price_not_null;
+ALTER TABLE product VALIDATE CONSTRAINT product_vat_amount_not_null;
+
+ALTER TABLE product
+	ALTER COLUMN net_price SET NOT NULL,
+	ALTER COLUMN vat_amount SET NOT NULL;
+ALTER TABLE product
+	DROP CONSTRAINT product_net_price_not_null,
+	DROP CONSTRAINT product_vat_amount_not_null;
@@ -0,0 +1,2 @@
+-- Required by the trigram index on product names
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
@@ -0,0 +1,2 @@
+-- Supports keyset pagination of orders sorted by creation time and id
+CREATE INDEX CONCURRENTLY orders_created_at_id_idx ON orders (created_at, id);
@@ -0,0 +1,7 @@
+-- Built without blocking writes to the table, which requires Flyway to run this migration outside a transaction
+
+-- Supports case-insensitive substring search on product names
+CREATE INDEX CONCURRENTLY product_name_trgm_idx ON product USING gin (lower(name) gin_trgm_ops);
+
+-- Supports full-text search on product names and descriptions, must match the expression in SearchFunctions
+CREATE INDEX CONCURRENTLY product_text_search_idx ON product USING gin (to_tsvector('simple', name || ' ' || description));
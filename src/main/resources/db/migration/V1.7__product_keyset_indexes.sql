@@ -0,0 +1,3 @@
+-- Support keyset pagination of products sorted by total price or name, and then by id
+CREATE INDEX CONCURRENTLY product_total_price_id_idx ON product (total_price, id);
+CREATE INDEX CONCURRENTLY product_name_id_idx ON product (name, id);
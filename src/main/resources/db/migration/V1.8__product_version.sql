@@ -0,0 +1 @@
+ALTER TABLE product ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
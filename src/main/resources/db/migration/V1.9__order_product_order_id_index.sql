@@ -0,0 +1,3 @@
+-- Supports fetching the products of orders, the unique index on (product_id, order_id) cannot serve lookups by order
+-- Built without blocking writes to the table, which requires Flyway to run this migration outside a transaction
+CREATE INDEX CONCURRENTLY order_product_order_id_idx ON order_product (order_id);
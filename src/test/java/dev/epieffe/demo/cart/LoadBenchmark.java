@@ -0,0 +1,187 @@
+package dev.epieffe.demo.cart;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+
+import static dev.epieffe.demo.cart.LoadTests.ID_PATTERN;
+import static dev.epieffe.demo.cart.LoadTests.option;
+
+/**
+ * Closed-model load test against a running Cart Demo service: each client sends a request, waits for the response
+ * and immediately sends the next one. Clients get products by id and create small orders, so that request
+ * handlers spend most of their time waiting on the database.
+ * <p>
+ * The share of requests creating orders is set with {@code --order-ratio} (default 0.3).
+ * Prints throughput and latency percentiles measured after the warmup. Run with:
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=dev.epieffe.demo.cart.LoadBenchmark \
+ *     -Dexec.args="--url=http://127.0.0.1:8080 --clients=1000 --duration=60 --warmup=20"
+ * </pre>
+ * See {@code scripts/thread-benchmark.sh} to compare platform and virtual threads, and
+ * {@code scripts/group-commit-benchmark.sh} to compare order creation with and without group commit.
+ */
+public class LoadBenchmark {
+
+	private static final int PRODUCTS = 100;
+
+	public static void main(String[] args) throws Exception {
+		String url = option(args, "url", "http://127.0.0.1:8080");
+		int clients = Integer.parseInt(option(args, "clients", "1000"));
+		Duration duration = Duration.ofSeconds(Long.parseLong(option(args, "duration", "60")));
+		Duration warmup = Duration.ofSeconds(Long.parseLong(option(args, "warmup", "20")));
+		double orderRatio = Double.parseDouble(option(args, "order-ratio", "0.3"));
+		String label = option(args, "label", "");
+
+		try (ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+			HttpClient http = HttpClient.newBuilder()
+					.executor(httpExecutor)
+					.connectTimeout(Duration.ofSeconds(30))
+					.build();
+			long[] productIds = createProducts(http, url);
+
+			long warmupEnd = System.nanoTime() + warmup.toNanos();
+			long end = warmupEnd + duration.toNanos();
+			List<Client> results = new ArrayList<>(clients);
+			List<Thread> threads = new ArrayList<>(clients);
+			for (int i = 0; i < clients; i++) {
+				var client = new Client(http, url, productIds, orderRatio, warmupEnd, end);
+				results.add(client);
+				threads.add(Thread.ofVirtual().start(client));
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			report(label, clients, duration, results);
+		}
+	}
+
+	private static long[] createProducts(HttpClient http, String url) throws Exception {
+		long[] ids = new long[PRODUCTS];
+		for (int i = 0; i < PRODUCTS; i++) {
+			String json = """
+					{"name": "Benchmark product %d", "description": "Load test", "totalPrice": %d.99, "vatRate": 0.22}
+					""".formatted(i, 10 + i);
+			HttpResponse<String> response = http.send(post(url + "/api/products", json), HttpResponse.BodyHandlers.ofString());
+			Matcher matcher = ID_PATTERN.matcher(response.body());
+			if (response.statusCode() != 201 || !matcher.find()) {
+				throw new IllegalStateException("Failed to create product: " + response.statusCode() + " " + response.body());
+			}
+			ids[i] = Long.parseLong(matcher.group(1));
+		}
+		return ids;
+	}
+
+	private static void report(String label, int clients, Duration duration, List<Client> results) {
+		long requests = 0;
+		long errors = 0;
+		for (Client client : results) {
+			requests += client.count;
+			errors += client.errors;
+		}
+		long[] latencies = new long[(int) requests];
+		int offset = 0;
+		for (Client client : results) {
+			System.arraycopy(client.latencies, 0, latencies, offset, client.count);
+			offset += client.count;
+		}
+		Arrays.sort(latencies);
+		System.out.printf("%-16s %8s %12s %10s %10s %10s %10s %10s%n",
+				"mode", "clients", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+		System.out.printf("%-16s %8d %12d %10d %10.0f %10.2f %10.2f %10.2f%n",
+				label, clients, requests, errors,
+				(double) requests / duration.toSeconds(),
+				percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+	}
+
+	private static double percentile(long[] sortedNanos, double p) {
+		if (sortedNanos.length == 0) {
+			return Double.NaN;
+		}
+		int index = (int) Math.ceil(p * sortedNanos.length) - 1;
+		return sortedNanos[Math.clamp(index, 0, sortedNanos.length - 1)] / 1_000_000.0;
+	}
+
+	private static HttpRequest post(String uri, String json) {
+		return HttpRequest.newBuilder(URI.create(uri))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(json))
+				.build();
+	}
+
+	private static class Client implements Runnable {
+		private final HttpClient http;
+		private final String url;
+		private final long[] productIds;
+		private final double orderRatio;
+		private final long warmupEnd;
+		private final long end;
+		private long[] latencies = new long[1024];
+		private int count = 0;
+		private long errors = 0;
+
+		private Client(HttpClient http, String url, long[] productIds, double orderRatio, long warmupEnd, long end) {
+			this.http = http;
+			this.url = url;
+			this.productIds = productIds;
+			this.orderRatio = orderRatio;
+			this.warmupEnd = warmupEnd;
+			this.end = end;
+		}
+
+		@Override
+		public void run() {
+			var random = ThreadLocalRandom.current();
+			long now;
+			while ((now = System.nanoTime()) < end) {
+				HttpRequest request = random.nextDouble() < orderRatio ? orderRequest(random) : productRequest(random);
+				boolean ok;
+				try {
+					HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+					ok = response.statusCode() < 400;
+				} catch (Exception e) {
+					ok = false;
+				}
+				long done = System.nanoTime();
+				if (now >= warmupEnd && done < end) {
+					record(done - now, ok);
+				}
+			}
+		}
+
+		private void record(long latencyNanos, boolean ok) {
+			if (!ok) {
+				errors++;
+			}
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = latencyNanos;
+		}
+
+		private HttpRequest productRequest(ThreadLocalRandom random) {
+			long id = productIds[random.nextInt(productIds.length)];
+			return HttpRequest.newBuilder(URI.create(url + "/api/products/" + id)).GET().build();
+		}
+
+		private HttpRequest orderRequest(ThreadLocalRandom random) {
+			int first = random.nextInt(productIds.length - 2);
+			String json = """
+					{"shippingAddress": "via Roma, 5", "products": [
+					  {"productId": %d, "quantity": 1}, {"productId": %d, "quantity": 2}, {"productId": %d, "quantity": 1}
+					]}
+					""".formatted(productIds[first], productIds[first + 1], productIds[first + 2]);
+			return post(url + "/api/orders", json);
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package dev.epieffe.demo.cart;
+
+import java.util.regex.Pattern;
+
+/**
+ * Helpers shared by the load tests run from the command line.
+ */
+final class LoadTests {
+
+	/**
+	 * Matches the ids in a JSON response body, such as the ids of a created product or of a page of products.
+	 */
+	static final Pattern ID_PATTERN = Pattern.compile("\"id\":(\\d+)");
+
+	/**
+	 * Returns the value of the {@code --name=value} argument, or the default value if there is none.
+	 */
+	static String option(String[] args, String name, String defaultValue) {
+		String prefix = "--" + name + "=";
+		for (String arg : args) {
+			if (arg.startsWith(prefix)) {
+				return arg.substring(prefix.length());
+			}
+		}
+		return defaultValue;
+	}
+
+	private LoadTests() {}
+}
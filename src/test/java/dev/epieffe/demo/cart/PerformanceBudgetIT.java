@@ -0,0 +1,182 @@
+package dev.epieffe.demo.cart;
+
+import dev.epieffe.demo.cart.order.ProductSnapshotCache;
+import dev.epieffe.demo.cart.util.SqlStatisticsFilter;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Fails the build when a change makes an endpoint exceed its budget of SQL statements and rows fetched per request,
+ * measured on a seeded dataset of 5000 products and 500 orders. The bytes allocated and the p95 latency per request
+ * depend on the machine running the build, so their budgets are only checked with {@code -Dcart.budgets.strict=true}
+ * and otherwise reported in a warning.
+ * <p>
+ * Statements and rows are the most executed and fetched by any request, allocations are the median of the bytes
+ * allocated by the thread serving the requests, MockMvc included. When an endpoint gets more expensive on purpose,
+ * raise its budget in the same change. Run only these checks with:
+ * <pre>
+ * ./mvnw verify -Dtest=NONE -Dsurefire.failIfNoSpecifiedTests=false -Dit.test=PerformanceBudgetIT
+ * </pre>
+ */
+@SpringBootTest(properties = {
+		"cart.sql.statistics.response-headers=true",
+		"logging.level.dev.epieffe.demo.cart=WARN",
+		"logging.level.dev.epieffe.demo.cart.PerformanceBudgetIT=INFO"
+})
+@AutoConfigureMockMvc
+@UseDockerDatabase
+@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_CLASS, scripts = "/sql/populate_budget_dataset.sql")
+class PerformanceBudgetIT {
+	private static final Logger LOG = LoggerFactory.getLogger(PerformanceBudgetIT.class);
+
+	private static final boolean STRICT = Boolean.getBoolean("cart.budgets.strict");
+
+	private static final int WARMUP = 50;
+	private static final int ITERATIONS = 100;
+	private static final int PRODUCTS = 5000;
+	private static final int ORDERS = 500;
+	private static final long FIRST_ORDER_ID = 10000001;
+	private static final long KB = 1024;
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ProductSnapshotCache productCache;
+
+	record Budget(String endpoint, long statements, long rows, long allocatedBytes, Duration p95) { }
+
+	record Measurement(long statements, long rows, long allocatedBytes, Duration p95) { }
+
+	@Test
+	void getProduct() throws Exception {
+		assertWithinBudget(new Budget("GET /api/products/{id}", 1, 1, 256 * KB, Duration.ofMillis(50)),
+				i -> get("/api/products/" + productId(i)));
+	}
+
+	@Test
+	void searchProductsByName() throws Exception {
+		assertWithinBudget(new Budget("GET /api/products?name", 1, 21, 640 * KB, Duration.ofMillis(100)),
+				i -> get("/api/products").param("name", "product " + (i % 9 + 1)).param("size", "20"));
+	}
+
+	@Test
+	void searchProductsByPrice() throws Exception {
+		assertWithinBudget(new Budget("GET /api/products?maxPrice&sort", 1, 101, 768 * KB, Duration.ofMillis(100)),
+				i -> get("/api/products")
+						.param("maxPrice", Integer.toString(100 + i))
+						.param("sort", "totalPrice,desc")
+						.param("fields", "id,name,totalPrice")
+						.param("size", "100"));
+	}
+
+	@Test
+	void createOrder() throws Exception {
+		// The products, a block of ids from the sequence every few orders, and the inserts of the order and its products
+		assertWithinBudget(new Budget("POST /api/orders", 5, 7, 400 * KB, Duration.ofMillis(100)), i -> {
+			// Products are read from the database every time
+			productCache.invalidateAll();
+			var products = new StringBuilder();
+			for (int j = 0; j < 5; j++) {
+				products.append(j > 0 ? ", " : "").append("{\"productId\": %d, \"quantity\": 1}".formatted(productId(i * 5 + j)));
+			}
+			return post("/api/orders")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content("{\"shippingAddress\": \"via Roma, 5\", \"products\": [%s]}".formatted(products));
+		});
+	}
+
+	@Test
+	void getOrder() throws Exception {
+		// A different order each time, so that none is served from the response cache
+		assertWithinBudget(new Budget("GET /api/orders/{id}", 1, 5, 256 * KB, Duration.ofMillis(50)),
+				i -> get("/api/orders/" + (FIRST_ORDER_ID + i % ORDERS)));
+	}
+
+	@Test
+	void searchOrders() throws Exception {
+		// The page of orders and then their products
+		assertWithinBudget(new Budget("GET /api/orders", 2, 121, 1280 * KB, Duration.ofMillis(100)),
+				i -> get("/api/orders").param("size", "20").param("minTotalPrice", "10"));
+	}
+
+	private static long productId(int i) {
+		return i % PRODUCTS + 1;
+	}
+
+	private void assertWithinBudget(Budget budget, IntFunction<MockHttpServletRequestBuilder> requests) throws Exception {
+		Measurement measured = measure(requests);
+		String report = "%s: statements %d/%d, rows %d/%d, allocated %d/%d KB, p95 %.2f/%d ms".formatted(
+				budget.endpoint(), measured.statements(), budget.statements(), measured.rows(), budget.rows(),
+				measured.allocatedBytes() / KB, budget.allocatedBytes() / KB,
+				measured.p95().toNanos() / 1_000_000.0, budget.p95().toMillis());
+		boolean withinAllocations = measured.allocatedBytes() <= budget.allocatedBytes();
+		boolean withinLatency = measured.p95().compareTo(budget.p95()) <= 0;
+		if (STRICT || (withinAllocations && withinLatency)) {
+			LOG.info(report);
+		} else {
+			LOG.warn("{}, over the allocation or latency budget", report);
+		}
+		assertAll(report,
+				() -> assertTrue(measured.statements() <= budget.statements(),
+						"SQL statements: " + measured.statements() + " > " + budget.statements()),
+				() -> assertTrue(measured.rows() <= budget.rows(),
+						"Rows fetched: " + measured.rows() + " > " + budget.rows()),
+				() -> assertTrue(!STRICT || withinAllocations,
+						"Allocated bytes: " + measured.allocatedBytes() + " > " + budget.allocatedBytes()),
+				() -> assertTrue(!STRICT || withinLatency,
+						"p95 latency: " + measured.p95().toMillis() + " ms > " + budget.p95().toMillis() + " ms"));
+	}
+
+	private Measurement measure(IntFunction<MockHttpServletRequestBuilder> requests) throws Exception {
+		for (int i = 0; i < WARMUP; i++) {
+			perform(requests.apply(i));
+		}
+		long statements = 0;
+		long rows = 0;
+		long[] allocated = new long[ITERATIONS];
+		long[] latencies = new long[ITERATIONS];
+		for (int i = 0; i < ITERATIONS; i++) {
+			MockHttpServletRequestBuilder request = requests.apply(WARMUP + i);
+			long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+			long start = System.nanoTime();
+			MockHttpServletResponse response = perform(request);
+			latencies[i] = System.nanoTime() - start;
+			allocated[i] = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+			statements = Math.max(statements, Long.parseLong(response.getHeader(SqlStatisticsFilter.STATEMENTS_HEADER)));
+			rows = Math.max(rows, Long.parseLong(response.getHeader(SqlStatisticsFilter.ROWS_HEADER)));
+		}
+		Arrays.sort(allocated);
+		Arrays.sort(latencies);
+		return new Measurement(statements, rows, allocated[ITERATIONS / 2],
+				Duration.ofNanos(latencies[(int) Math.ceil(ITERATIONS * 0.95) - 1]));
+	}
+
+	private MockHttpServletResponse perform(MockHttpServletRequestBuilder request) throws Exception {
+		MockHttpServletResponse response = mockMvc.perform(request).andReturn().getResponse();
+		assertTrue(response.getStatus() < 300, () -> "Unexpected status " + response.getStatus());
+		return response;
+	}
+}
@@ -0,0 +1,55 @@
+package dev.epieffe.demo.cart;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.micrometer.metrics.test.autoconfigure.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Serves the actuator endpoints on the application port, so that MockMvc reaches them
+@SpringBootTest(properties = "management.server.port=")
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@UseDockerDatabase
+@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_CLASS, scripts = "/sql/populate_products.sql")
+class PrometheusMetricsIT {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void prometheusEndpoint_shouldExposePhaseAndPoolMetrics() throws Exception {
+		String json = """
+				{"shippingAddress": "via Roma, 5", "products": [{"productId": 1, "quantity": 2}, {"productId": 2, "quantity": 1}]}
+				""";
+		mockMvc.perform(post("/api/orders").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andExpect(status().isCreated());
+		mockMvc.perform(get("/api/products").param("name", "samsung").param("maxPrice", "1000"))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("cart_orders_create_phase_seconds_count{cart_size=\"2-5\",phase=\"products\"}")))
+				.andExpect(content().string(containsString("cart_orders_create_phase_seconds_count{cart_size=\"2-5\",phase=\"flush\"}")))
+				.andExpect(content().string(containsString("cart_orders_create_phase_seconds_count{cart_size=\"2-5\",phase=\"commit\"}")))
+				.andExpect(content().string(containsString("cart_orders_create_phase_seconds_bucket{cart_size=\"2-5\",phase=\"commit\",le=")))
+				.andExpect(content().string(containsString("cart_products_search_phase_seconds_count{filters=\"name+maxPrice\",pagination=\"offset\",phase=\"query\"}")))
+				.andExpect(content().string(containsString("hikaricp_connections_active{")))
+				.andExpect(content().string(containsString("hibernate_statements_total{")));
+	}
+
+	@Test
+	void flightRecordingEndpoint_shouldNotBeExposedByDefault() throws Exception {
+		mockMvc.perform(get("/actuator/flightrecording"))
+				.andExpect(status().isNotFound());
+	}
+}
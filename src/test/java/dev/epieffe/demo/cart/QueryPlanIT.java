@@ -0,0 +1,329 @@
+package dev.epieffe.demo.cart;
+
+import dev.epieffe.demo.cart.order.OrderCursor;
+import dev.epieffe.demo.cart.order.OrderRepository;
+import dev.epieffe.demo.cart.order.OrderSearch;
+import dev.epieffe.demo.cart.order.OrderService;
+import dev.epieffe.demo.cart.product.ProductCursor;
+import dev.epieffe.demo.cart.product.ProductField;
+import dev.epieffe.demo.cart.product.ProductRepository;
+import dev.epieffe.demo.cart.product.ProductSearch;
+import dev.epieffe.demo.cart.product.ProductService;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.jdbc.Sql;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fails the build when the plan of a query of {@link OrderRepository} or {@link ProductRepository}, or of a query
+ * generated from the search specifications, scans a large table sequentially, as it does when no index can serve
+ * the query. Queries run on a seeded dataset of 100000 products and 50000 orders of 5 products each.
+ * <p>
+ * The SELECT statements executed by each call are captured at the JDBC level, together with their parameters, and
+ * then run again with {@code EXPLAIN (ANALYZE, BUFFERS)}. Tables with more than {@value LARGE_TABLE_ROWS} rows are
+ * large. Run only these checks, printing the time and buffers of each plan, with:
+ * <pre>
+ * ./mvnw verify -Dtest=NONE -Dsurefire.failIfNoSpecifiedTests=false -Dit.test=QueryPlanIT
+ * </pre>
+ */
+@SpringBootTest(properties = "logging.level.dev.epieffe.demo.cart=WARN")
+@UseDockerDatabase
+@Import(QueryPlanIT.CaptureConfig.class)
+@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_CLASS, scripts = "/sql/populate_query_plan_dataset.sql")
+class QueryPlanIT {
+
+	private static final long LARGE_TABLE_ROWS = 10_000;
+	private static final long FIRST_ORDER_ID = 10000001;
+	private static final int PAGE_SIZE = 20;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private JsonMapper jsonMapper;
+
+	private final Map<String, Long> tableRows = new HashMap<>();
+
+	record Query(String sql, List<Parameter> parameters) { }
+
+	record Parameter(Method setter, @Nullable Object[] args) { }
+
+	record Plan(String description, double executionMillis, long sharedHitBlocks, long sharedReadBlocks, List<String> seqScans) { }
+
+	@Test
+	void orderRepository() throws Throwable {
+		assertNoSeqScans("OrderRepository.findProductsByIdIn",
+				() -> orderRepository.findProductsByIdIn(List.of(1L, 500L, 99_999L)));
+		assertNoSeqScans("OrderRepository.findByIdWithEagerProducts",
+				() -> orderRepository.findByIdWithEagerProducts(FIRST_ORDER_ID + 25_000));
+		assertNoSeqScans("OrderRepository.findAllWithEagerProductsByIdIn",
+				() -> orderRepository.findAllWithEagerProductsByIdIn(LongStream.range(0, PAGE_SIZE)
+						.mapToObj(i -> FIRST_ORDER_ID + i * 1000)
+						.toList()));
+		assertNoSeqScans("OrderRepository.findById",
+				() -> orderRepository.findById(FIRST_ORDER_ID + 42));
+	}
+
+	@Test
+	void productRepository() throws Throwable {
+		assertNoSeqScans("ProductRepository.findById",
+				() -> productRepository.findById(4242L));
+		assertNoSeqScans("ProductRepository.findVersionById",
+				() -> productRepository.findVersionById(4242L));
+	}
+
+	@Test
+	void orderSearches() throws Throwable {
+		assertNoSeqScans("orders",
+				() -> searchOrders(new OrderSearch(null, null, null, null), null));
+		assertNoSeqScans("orders?createdFrom&createdTo",
+				() -> searchOrders(new OrderSearch(LocalDateTime.of(2026, 1, 10, 0, 0), LocalDateTime.of(2026, 1, 11, 0, 0), null, null), null));
+		assertNoSeqScans("orders?minTotalPrice&maxTotalPrice",
+				() -> searchOrders(new OrderSearch(null, null, new BigDecimal("100"), new BigDecimal("200")), null));
+		assertNoSeqScans("orders?cursor",
+				() -> searchOrders(new OrderSearch(null, null, null, null), new OrderCursor(LocalDateTime.of(2026, 1, 15, 0, 0), FIRST_ORDER_ID + 20_000)));
+	}
+
+	@Test
+	void productSearches() throws Throwable {
+		assertNoSeqScans("products",
+				() -> searchProducts(new ProductSearch(null, null, null, null), Sort.unsorted(), ProductField.ALL));
+		assertNoSeqScans("products?name",
+				() -> searchProducts(new ProductSearch("model 4242", null, null, null), Sort.unsorted(), ProductField.ALL));
+		assertNoSeqScans("products?name&fields",
+				() -> searchProducts(new ProductSearch("samsung", null, null, null), Sort.unsorted(), Set.of(ProductField.NAME)));
+		assertNoSeqScans("products?text",
+				() -> searchProducts(new ProductSearch(null, "apple laptop", null, null), Sort.unsorted(), ProductField.ALL));
+		assertNoSeqScans("products?maxPrice&sort=totalPrice,desc",
+				() -> searchProducts(new ProductSearch(null, null, new BigDecimal("500"), null), Sort.by(Sort.Direction.DESC, "totalPrice"), ProductField.ALL));
+		assertNoSeqScans("products?minPrice&sort=name",
+				() -> searchProducts(new ProductSearch(null, null, null, new BigDecimal("1500")), Sort.by("name"), Set.of(ProductField.NAME, ProductField.TOTAL_PRICE)));
+	}
+
+	@Test
+	void productCursorSearches() throws Throwable {
+		assertNoSeqScans("products?cursor=id",
+				() -> searchProducts(new ProductSearch(null, null, null, null), new ProductCursor(ProductCursor.Key.ID, Sort.Direction.ASC, "", 50_000), ProductField.ALL));
+		assertNoSeqScans("products?cursor=totalPrice,desc",
+				() -> searchProducts(new ProductSearch(null, null, null, null), new ProductCursor(ProductCursor.Key.TOTAL_PRICE, Sort.Direction.DESC, "1000.99", 50_000), ProductField.ALL));
+		assertNoSeqScans("products?name&cursor=name&fields",
+				() -> searchProducts(new ProductSearch("sony", null, null, null), new ProductCursor(ProductCursor.Key.NAME, Sort.Direction.ASC, "Sony model 5", 5), Set.of(ProductField.NAME)));
+	}
+
+	private void searchOrders(OrderSearch search, @Nullable OrderCursor cursor) {
+		orderService.searchOrders(search, cursor, PAGE_SIZE);
+	}
+
+	private void searchProducts(ProductSearch search, Sort sort, Set<ProductField> fields) {
+		productService.searchProducts(search, fields, PageRequest.of(0, PAGE_SIZE, sort));
+	}
+
+	private void searchProducts(ProductSearch search, ProductCursor cursor, Set<ProductField> fields) {
+		productService.searchProducts(search, fields, cursor, PAGE_SIZE);
+	}
+
+	private void assertNoSeqScans(String description, Executable queries) throws Throwable {
+		List<Query> captured = QueryCapture.capture(queries);
+		assertFalse(captured.isEmpty(), () -> "No SELECT statements captured for " + description);
+		var plans = new ArrayList<Plan>(captured.size());
+		for (Query query : captured) {
+			plans.add(explain(description, query));
+		}
+		assertAll(description, plans.stream().map(plan -> () -> assertTrue(plan.seqScans().isEmpty(),
+				() -> "Sequential scan of " + plan.seqScans() + " in the plan of " + plan.description())));
+	}
+
+	private Plan explain(String description, Query query) throws Exception {
+		String json;
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + query.sql())) {
+			for (Parameter parameter : query.parameters()) {
+				parameter.setter().invoke(statement, parameter.args());
+			}
+			try (ResultSet resultSet = statement.executeQuery()) {
+				resultSet.next();
+				json = resultSet.getString(1);
+			}
+		}
+		JsonNode explained = jsonMapper.readTree(json).get(0);
+		JsonNode root = explained.get("Plan");
+		var seqScans = new ArrayList<String>();
+		collectSeqScans(root, seqScans);
+		var plan = new Plan(description + ": " + query.sql(), explained.get("Execution Time").asDouble(),
+				root.path("Shared Hit Blocks").asLong(), root.path("Shared Read Blocks").asLong(), seqScans);
+		System.out.printf(Locale.ROOT, "%-48s %8.3f ms, shared buffers hit %d, read %d%s%n", description,
+				plan.executionMillis(), plan.sharedHitBlocks(), plan.sharedReadBlocks(),
+				seqScans.isEmpty() ? "" : ", SEQ SCAN of " + seqScans);
+		return plan;
+	}
+
+	private void collectSeqScans(JsonNode node, List<String> seqScans) throws SQLException {
+		if (node.get("Node Type").asString().equals("Seq Scan")) {
+			String table = node.get("Relation Name").asString();
+			if (rowsOf(table) > LARGE_TABLE_ROWS) {
+				seqScans.add(table);
+			}
+		}
+		for (JsonNode child : node.path("Plans")) {
+			collectSeqScans(child, seqScans);
+		}
+	}
+
+	private long rowsOf(String table) throws SQLException {
+		Long rows = tableRows.get(table);
+		if (rows == null) {
+			try (Connection connection = dataSource.getConnection();
+				 PreparedStatement statement = connection.prepareStatement("SELECT reltuples::bigint FROM pg_class WHERE relname = ?")) {
+				statement.setString(1, table);
+				try (ResultSet resultSet = statement.executeQuery()) {
+					rows = resultSet.next() ? resultSet.getLong(1) : 0;
+				}
+			}
+			tableRows.put(table, rows);
+		}
+		return rows;
+	}
+
+	/**
+	 * Captures the SELECT statements prepared by the current thread, together with the parameters they are executed
+	 * with, while capturing.
+	 */
+	static class QueryCapture extends DelegatingDataSource {
+		private static final ThreadLocal<List<Query>> CAPTURED = new ThreadLocal<>();
+
+		QueryCapture(DataSource target) {
+			super(target);
+		}
+
+		static List<Query> capture(Executable executable) throws Throwable {
+			var captured = new ArrayList<Query>();
+			CAPTURED.set(captured);
+			try {
+				executable.execute();
+			} finally {
+				CAPTURED.remove();
+			}
+			return captured;
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			Connection connection = super.getConnection();
+			List<Query> captured = CAPTURED.get();
+			if (captured == null) {
+				return connection;
+			}
+			return proxy(Connection.class, (proxy, method, args) -> {
+				Object result = invoke(connection, method, args);
+				if (method.getName().equals("prepareStatement") && args[0] instanceof String sql
+						&& sql.strip().toLowerCase(Locale.ROOT).startsWith("select")) {
+					return proxy(PreparedStatement.class, new StatementCapture((PreparedStatement) result, sql, captured));
+				}
+				return result;
+			});
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+			return (T) Proxy.newProxyInstance(QueryCapture.class.getClassLoader(), new Class<?>[]{type}, handler);
+		}
+
+		private static @Nullable Object invoke(Object target, Method method, @Nullable Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		private static class StatementCapture implements InvocationHandler {
+			private final PreparedStatement target;
+			private final String sql;
+			private final List<Query> captured;
+			private final List<Parameter> parameters = new ArrayList<>();
+
+			private StatementCapture(PreparedStatement target, String sql, List<Query> captured) {
+				this.target = target;
+				this.sql = sql;
+				this.captured = captured;
+			}
+
+			@Override
+			public @Nullable Object invoke(Object proxy, Method method, @Nullable Object[] args) throws Throwable {
+				String name = method.getName();
+				if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+					parameters.add(new Parameter(method, args));
+				} else if (name.equals("clearParameters")) {
+					parameters.clear();
+				} else if (name.startsWith("execute")) {
+					captured.add(new Query(sql, List.copyOf(parameters)));
+					parameters.clear();
+				}
+				return QueryCapture.invoke(target, method, args);
+			}
+		}
+	}
+
+	@TestConfiguration(proxyBeanMethods = false)
+	static class CaptureConfig {
+
+		@Bean
+		static BeanPostProcessor queryCapturePostProcessor() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					if (bean instanceof DataSource dataSource && beanName.equals("dataSource")) {
+						return new QueryCapture(dataSource);
+					}
+					return bean;
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,368 @@
+package dev.epieffe.demo.cart;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+
+import static dev.epieffe.demo.cart.LoadTests.ID_PATTERN;
+import static dev.epieffe.demo.cart.LoadTests.option;
+
+/**
+ * Open-model load test of a mixed workload: requests to search products, get a product and create an order arrive
+ * at a fixed average rate, with exponentially distributed gaps (Poisson arrivals), whether or not the previous
+ * requests have completed. Latencies are measured from the time each request was due, not from the time it was
+ * actually sent, so that a slow service cannot hide its queueing delay by slowing down the client.
+ * <p>
+ * Unless {@code --url} is given, the service is started in this JVM with the {@code local} profile and the
+ * PostgreSQL container of {@link TestContainersConfig}, and a catalog of {@code --products} products is imported
+ * before the test. Other arguments are passed to the service, e.g. {@code --cart.orders.group-commit.enabled=true}.
+ * Searches only return the {@code --fields} of the products when given, and the imported products have descriptions
+ * of {@code --description-length} characters when given. Prints throughput, response size and HdrHistogram latency
+ * percentiles of each endpoint, measured after the warmup. Run with:
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=dev.epieffe.demo.cart.WorkloadBenchmark \
+ *     -Dexec.args="--rate=500 --mix=search:50,get:40,order:10 --products=10000 --duration=60 --warmup=20"
+ * </pre>
+ */
+public class WorkloadBenchmark {
+
+	private static final String[] WORDS = {
+			"keyboard", "mouse", "monitor", "laptop", "headphones", "webcam", "speaker", "printer", "router", "tablet"
+	};
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+	private static final int SEED_PAGE_SIZE = 2000;
+
+	public static void main(String[] args) throws Exception {
+		String url = option(args, "url", "");
+		int products = Integer.parseInt(option(args, "products", url.isEmpty() ? "10000" : "0"));
+		double rate = Double.parseDouble(option(args, "rate", "500"));
+		String mix = option(args, "mix", "search:50,get:40,order:10");
+		Duration duration = Duration.ofSeconds(Long.parseLong(option(args, "duration", "60")));
+		Duration warmup = Duration.ofSeconds(Long.parseLong(option(args, "warmup", "20")));
+		int maxInFlight = Integer.parseInt(option(args, "max-in-flight", "10000"));
+		String histogramDir = option(args, "histograms", "");
+		String fields = option(args, "fields", "");
+		int descriptionLength = Integer.parseInt(option(args, "description-length", "0"));
+
+		ConfigurableApplicationContext context = null;
+		if (url.isEmpty()) {
+			context = startService(args);
+			url = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+		}
+		try (ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+			HttpClient http = HttpClient.newBuilder()
+					.executor(httpExecutor)
+					.connectTimeout(Duration.ofSeconds(30))
+					.build();
+			if (products > 0) {
+				importProducts(http, url, products, descriptionLength);
+			}
+			long[] productIds = productIds(http, url);
+			if (productIds.length == 0) {
+				throw new IllegalStateException("No products to load test, set --products");
+			}
+			System.out.printf("Load testing %s with %d products at %.0f req/s (%s)%n", url, productIds.length, rate, mix);
+
+			List<Endpoint> endpoints = endpoints(mix, url, productIds, fields);
+			new Workload(http, endpoints, rate, maxInFlight).run(warmup, duration);
+			report(endpoints, duration);
+			if (!histogramDir.isEmpty()) {
+				writeHistograms(endpoints, Path.of(histogramDir));
+			}
+		} finally {
+			if (context != null) {
+				context.close();
+			}
+		}
+	}
+
+	private static ConfigurableApplicationContext startService(String[] args) {
+		// Logging each request and each SQL statement would slow down the service more than the load itself.
+		// System properties are overridden by the arguments.
+		System.setProperty("server.port", "0");
+		System.setProperty("logging.level.sql", "INFO");
+		System.setProperty("logging.level.dev.epieffe.demo.cart", "WARN");
+		return SpringApplication.from(CartDemoApplication::main)
+				.with(TestContainersConfig.class)
+				.run(args)
+				.getApplicationContext();
+	}
+
+	private static void importProducts(HttpClient http, String url, int count, int descriptionLength) throws Exception {
+		var random = ThreadLocalRandom.current();
+		String filler = " long description".repeat(descriptionLength / 17 + 1);
+		var ndjson = new StringBuilder(count * (128 + descriptionLength));
+		for (int i = 0; i < count; i++) {
+			String word = WORDS[random.nextInt(WORDS.length)];
+			String description = "Load test " + word;
+			if (descriptionLength > description.length()) {
+				description = (description + filler).substring(0, descriptionLength);
+			}
+			ndjson.append("""
+					{"name": "Load test %s %d", "description": "%s", "totalPrice": %d.99, "vatRate": 0.22}
+					""".formatted(word, i, description, 5 + random.nextInt(2000)));
+		}
+		HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/products/import"))
+				.header("Content-Type", "application/x-ndjson")
+				.POST(HttpRequest.BodyPublishers.ofString(ndjson.toString()))
+				.build();
+		HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+		if (response.statusCode() != 200) {
+			throw new IllegalStateException("Failed to import products: " + response.statusCode() + " " + response.body());
+		}
+		System.out.println("Imported products: " + response.body());
+	}
+
+	private static long[] productIds(HttpClient http, String url) throws Exception {
+		var ids = new ArrayList<Long>();
+		String query = "?fields=id&sort=id&size=" + SEED_PAGE_SIZE;
+		while (query != null) {
+			HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/products" + query)).GET().build();
+			HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() != 200) {
+				throw new IllegalStateException("Failed to list products: " + response.statusCode() + " " + response.body());
+			}
+			Matcher matcher = ID_PATTERN.matcher(response.body());
+			while (matcher.find()) {
+				ids.add(Long.parseLong(matcher.group(1)));
+			}
+			Optional<String> cursor = response.headers().firstValue("X-Next-Cursor");
+			query = cursor.map(c -> "?fields=id&size=" + SEED_PAGE_SIZE + "&cursor=" + c).orElse(null);
+		}
+		return ids.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	/**
+	 * Parses a mix like {@code search:50,get:40,order:10}, where each weight is the relative share of requests
+	 * sent to that endpoint.
+	 */
+	private static List<Endpoint> endpoints(String mix, String url, long[] productIds, String fields) {
+		var endpoints = new ArrayList<Endpoint>();
+		for (String entry : mix.split(",")) {
+			String[] parts = entry.split(":");
+			double weight = Double.parseDouble(parts[1]);
+			if (weight <= 0) {
+				continue;
+			}
+			RequestFactory factory = switch (parts[0].trim()) {
+				case "search" -> random -> searchRequest(url, fields, random);
+				case "get" -> random -> getRequest(url, productIds, random);
+				case "order" -> random -> orderRequest(url, productIds, random);
+				default -> throw new IllegalArgumentException("Unknown endpoint in mix: " + parts[0]);
+			};
+			endpoints.add(new Endpoint(parts[0].trim(), weight, factory));
+		}
+		if (endpoints.isEmpty()) {
+			throw new IllegalArgumentException("Empty mix: " + mix);
+		}
+		return endpoints;
+	}
+
+	private static HttpRequest searchRequest(String url, String fields, ThreadLocalRandom random) {
+		var query = new StringBuilder("?size=20&name=").append(WORDS[random.nextInt(WORDS.length)]);
+		if (!fields.isEmpty()) {
+			query.append("&fields=").append(fields);
+		}
+		if (random.nextBoolean()) {
+			query.append("&maxPrice=").append(100 + random.nextInt(1900));
+		}
+		if (random.nextBoolean()) {
+			query.append("&sort=totalPrice,").append(random.nextBoolean() ? "asc" : "desc");
+		}
+		return HttpRequest.newBuilder(URI.create(url + "/api/products" + query)).timeout(REQUEST_TIMEOUT).GET().build();
+	}
+
+	private static HttpRequest getRequest(String url, long[] productIds, ThreadLocalRandom random) {
+		long id = productIds[random.nextInt(productIds.length)];
+		return HttpRequest.newBuilder(URI.create(url + "/api/products/" + id)).timeout(REQUEST_TIMEOUT).GET().build();
+	}
+
+	private static HttpRequest orderRequest(String url, long[] productIds, ThreadLocalRandom random) {
+		var products = new StringBuilder();
+		int count = 1 + random.nextInt(5);
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				products.append(", ");
+			}
+			products.append("""
+					{"productId": %d, "quantity": %d}""".formatted(productIds[random.nextInt(productIds.length)], 1 + random.nextInt(3)));
+		}
+		String json = """
+				{"shippingAddress": "via Roma, 5", "products": [%s]}
+				""".formatted(products);
+		return HttpRequest.newBuilder(URI.create(url + "/api/orders"))
+				.timeout(REQUEST_TIMEOUT)
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(json))
+				.build();
+	}
+
+	private static void report(List<Endpoint> endpoints, Duration duration) {
+		Histogram total = new Histogram(3);
+		long totalErrors = 0;
+		long totalDropped = 0;
+		long totalBytes = 0;
+		System.out.printf("%-10s %12s %10s %10s %10s %12s %10s %10s %10s %10s%n",
+				"endpoint", "requests", "errors", "dropped", "req/s", "bytes/resp", "p50 ms", "p99 ms", "p999 ms", "max ms");
+		for (Endpoint endpoint : endpoints) {
+			total.add(endpoint.latencies);
+			totalErrors += endpoint.errors.sum();
+			totalDropped += endpoint.dropped.sum();
+			totalBytes += endpoint.bytes.sum();
+			printRow(endpoint.name, endpoint.latencies, endpoint.errors.sum(), endpoint.dropped.sum(), endpoint.bytes.sum(), duration);
+		}
+		printRow("total", total, totalErrors, totalDropped, totalBytes, duration);
+	}
+
+	private static void printRow(String name, Histogram latencies, long errors, long dropped, long bytes, Duration duration) {
+		System.out.printf("%-10s %12d %10d %10d %10.0f %12d %10.2f %10.2f %10.2f %10.2f%n",
+				name, latencies.getTotalCount(), errors, dropped,
+				(double) latencies.getTotalCount() / duration.toSeconds(),
+				latencies.getTotalCount() == 0 ? 0 : bytes / latencies.getTotalCount(),
+				millis(latencies, 50), millis(latencies, 99), millis(latencies, 99.9),
+				latencies.getMaxValue() / 1_000_000.0);
+	}
+
+	private static double millis(Histogram latencies, double percentile) {
+		return latencies.getTotalCount() == 0 ? Double.NaN : latencies.getValueAtPercentile(percentile) / 1_000_000.0;
+	}
+
+	/**
+	 * Writes the percentile distribution of each endpoint in milliseconds, in the format of the HdrHistogram plotter.
+	 */
+	private static void writeHistograms(List<Endpoint> endpoints, Path dir) throws Exception {
+		Files.createDirectories(dir);
+		for (Endpoint endpoint : endpoints) {
+			try (var out = new PrintStream(Files.newOutputStream(dir.resolve(endpoint.name + ".hgrm")))) {
+				endpoint.latencies.outputPercentileDistribution(out, 1_000_000.0);
+			}
+		}
+		System.out.println("Histograms written to " + dir.toAbsolutePath());
+	}
+
+	private interface RequestFactory {
+		HttpRequest create(ThreadLocalRandom random);
+	}
+
+	private static class Endpoint {
+		private final String name;
+		private final double weight;
+		private final RequestFactory factory;
+		// Latencies in nanoseconds, resized as needed
+		private final Histogram latencies = new ConcurrentHistogram(3);
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder dropped = new LongAdder();
+		// Bytes of the response bodies, as sent by the service
+		private final LongAdder bytes = new LongAdder();
+
+		private Endpoint(String name, double weight, RequestFactory factory) {
+			this.name = name;
+			this.weight = weight;
+			this.factory = factory;
+		}
+	}
+
+	/**
+	 * Schedules the requests from a single thread and sends each of them from its own virtual thread. Requests due
+	 * when {@code maxInFlight} requests are still waiting for a response are dropped and counted, rather than
+	 * letting an overloaded service exhaust the memory of the client.
+	 */
+	private static class Workload {
+		private final HttpClient http;
+		private final List<Endpoint> endpoints;
+		private final double totalWeight;
+		private final double meanGapNanos;
+		private final int maxInFlight;
+		private final Semaphore inFlight;
+
+		private Workload(HttpClient http, List<Endpoint> endpoints, double rate, int maxInFlight) {
+			this.http = http;
+			this.endpoints = endpoints;
+			this.totalWeight = endpoints.stream().mapToDouble(e -> e.weight).sum();
+			this.meanGapNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+			this.maxInFlight = maxInFlight;
+			this.inFlight = new Semaphore(maxInFlight);
+		}
+
+		private void run(Duration warmup, Duration duration) throws InterruptedException {
+			var random = ThreadLocalRandom.current();
+			long warmupEnd = System.nanoTime() + warmup.toNanos();
+			long end = warmupEnd + duration.toNanos();
+			long due = System.nanoTime();
+			while (due < end) {
+				long wait = due - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				}
+				Endpoint endpoint = pick(random);
+				boolean measured = due >= warmupEnd;
+				if (inFlight.tryAcquire()) {
+					HttpRequest request = endpoint.factory.create(random);
+					long intendedStart = due;
+					Thread.ofVirtual().start(() -> send(endpoint, request, intendedStart, measured));
+				} else if (measured) {
+					endpoint.dropped.increment();
+				}
+				due += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+			}
+			// Requests still in flight count too, the slowest ones are the most interesting
+			if (!inFlight.tryAcquire(maxInFlight, REQUEST_TIMEOUT.toSeconds() + 5, TimeUnit.SECONDS)) {
+				System.out.println("Some requests did not complete");
+			}
+		}
+
+		private Endpoint pick(ThreadLocalRandom random) {
+			double value = random.nextDouble(totalWeight);
+			for (Endpoint endpoint : endpoints) {
+				value -= endpoint.weight;
+				if (value < 0) {
+					return endpoint;
+				}
+			}
+			return endpoints.getLast();
+		}
+
+		private void send(Endpoint endpoint, HttpRequest request, long intendedStart, boolean measured) {
+			boolean ok;
+			var bytes = new LongAdder();
+			try {
+				HttpResponse<Void> response = http.send(request,
+						HttpResponse.BodyHandlers.ofByteArrayConsumer(chunk -> chunk.ifPresent(b -> bytes.add(b.length))));
+				ok = response.statusCode() < 400;
+			} catch (Exception e) {
+				ok = false;
+			}
+			long latency = System.nanoTime() - intendedStart;
+			inFlight.release();
+			if (measured) {
+				endpoint.latencies.recordValue(latency);
+				endpoint.bytes.add(bytes.sum());
+				if (!ok) {
+					endpoint.errors.increment();
+				}
+			}
+		}
+	}
+}
@@ -1,35 +1,75 @@
 package dev.epieffe.demo.cart.order;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import tools.jackson.dataformat.cbor.CBORMapper;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(OrderController.class)
+@Import(OrderResponseCache.class)
 public class OrderControllerTest {
 
+	private static final String EXPORT_LINES = """
+			{"id":1,"products":[]}
+			{"id":2,"products":[]}
+			""";
+
 	@Autowired
 	MockMvc mockMvc;
 
 	@MockitoBean
 	OrderService orderService;
 
+	@MockitoBean
+	OrderExportService exportService;
+
+	@Autowired
+	OrderResponseCache responseCache;
+
+	@BeforeEach
+	void setUp() {
+		responseCache.clear();
+	}
+
 	@ParameterizedTest
 	@MethodSource("ordersProvider")
 	void getExistingProduct_shouldReturnProduct(Order order) throws Exception {
@@ -52,6 +92,75 @@ public class OrderControllerTest {
 		}
 	}
 
+	@Test
+	void getOrderTwice_shouldServeSecondReadFromCache() throws Exception {
+		Order order = ordersProvider().findFirst().orElseThrow();
+		order.setId(100L);
+		when(orderService.getOrderById(100L)).thenReturn(Optional.of(order));
+		String etag = mockMvc.perform(get("/api/orders/100"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Cache-Control", containsString("immutable")))
+				.andExpect(jsonPath("$.id").value(100))
+				.andReturn().getResponse().getHeader("ETag");
+		mockMvc.perform(get("/api/orders/100"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", etag))
+				.andExpect(jsonPath("$.id").value(100))
+				.andExpect(jsonPath("$.products[0].name").value("iPhone"));
+		verify(orderService, times(1)).getOrderById(100L);
+	}
+
+	@Test
+	void getOrderWithMatchingETag_shouldReturnNotModified() throws Exception {
+		Order order = ordersProvider().findFirst().orElseThrow();
+		order.setId(101L);
+		when(orderService.getOrderById(101L)).thenReturn(Optional.of(order));
+		String etag = mockMvc.perform(get("/api/orders/101"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("ETag");
+		mockMvc.perform(get("/api/orders/101").header("If-None-Match", etag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+	}
+
+	@Test
+	void getOrderAsCbor_shouldReturnCborWithOwnETag() throws Exception {
+		Order order = ordersProvider().findFirst().orElseThrow();
+		order.setId(103L);
+		when(orderService.getOrderById(103L)).thenReturn(Optional.of(order));
+		String jsonETag = mockMvc.perform(get("/api/orders/103"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("ETag");
+		var response = mockMvc.perform(get("/api/orders/103").accept(MediaType.APPLICATION_CBOR))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+				.andExpect(header().string("Vary", containsString("Accept")))
+				.andExpect(header().string("ETag", not(jsonETag)))
+				.andReturn().getResponse();
+		OrderResponse decoded = new CBORMapper().readValue(response.getContentAsByteArray(), OrderResponse.class);
+		assertEquals(OrderMapper.toResponse(order), decoded);
+	}
+
+	@Test
+	void createOrder_shouldCacheCreatedOrder() throws Exception {
+		Order order = ordersProvider().findFirst().orElseThrow();
+		order.setId(102L);
+		when(orderService.createOrder(any())).thenReturn(order);
+		String json = """
+				{
+				  "shippingAddress": "via Roma, 1",
+				  "products": [{ "productId": 1, "quantity": 1 }]
+				}
+				""";
+		mockMvc.perform(post("/api/orders").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andExpect(status().isCreated())
+				.andExpect(jsonPath("$.id").value(102));
+		mockMvc.perform(get("/api/orders/102"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(102));
+		verify(orderService, never()).getOrderById(102L);
+	}
+
 	@Test
 	void getNonExistentOrder_shouldReturnNotFound() throws Exception {
 		when(orderService.getOrderById(1L)).thenReturn(Optional.empty());
@@ -170,6 +279,123 @@ public class OrderControllerTest {
 				.andExpect(jsonPath("$.detail").value("Product quantity must be greater than zero"));
 	}
 
+	@Test
+	void createOrders_shouldReturnResultForEachOrder() throws Exception {
+		Order order = ordersProvider().findFirst().orElseThrow();
+		when(orderService.createOrders(any())).thenReturn(List.of(
+				OrderBatchResult.created(order),
+				OrderBatchResult.rejected("Product not found: 999")));
+		String json = """
+				{
+				  "orders": [
+				    {
+				      "shippingAddress": "via Roma, 1",
+				      "products": [{ "productId": 1, "quantity": 1 }]
+				    },
+				    {
+				      "shippingAddress": "via Roma, 5",
+				      "products": [{ "productId": 999, "quantity": 1 }]
+				    }
+				  ]
+				}
+				""";
+		mockMvc.perform(post("/api/orders/batch").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(1))
+				.andExpect(jsonPath("$.rejected").value(1))
+				.andExpect(jsonPath("$.results[0].index").value(0))
+				.andExpect(jsonPath("$.results[0].order.id").value(order.getId()))
+				.andExpect(jsonPath("$.results[0].order.products[0].productId").value(1))
+				.andExpect(jsonPath("$.results[1].index").value(1))
+				.andExpect(jsonPath("$.results[1].error").value("Product not found: 999"));
+	}
+
+	@Test
+	void createOrdersWithEmptyBatch_shouldReturnBadRequest() throws Exception {
+		String json = """
+				{
+				  "orders": []
+				}
+				""";
+		mockMvc.perform(post("/api/orders/batch").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.detail").value("Batch must contain at least one order"));
+	}
+
+	@Test
+	void searchOrders_shouldReturnOrdersAndNextCursor() throws Exception {
+		List<Order> orders = ordersProvider().toList();
+		when(orderService.searchOrders(any(), isNull(), eq(2)))
+				.thenReturn(new SliceImpl<>(orders, PageRequest.ofSize(2), true));
+		String nextCursor = OrderCursor.of(orders.getLast()).encode();
+		mockMvc.perform(get("/api/orders").param("size", "2"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "true"))
+				.andExpect(header().string("X-Next-Cursor", nextCursor))
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].id").value(1))
+				.andExpect(jsonPath("$[1].id").value(2))
+				.andExpect(jsonPath("$[1].products.length()").value(2));
+
+		when(orderService.searchOrders(any(), eq(OrderCursor.decode(nextCursor)), eq(2)))
+				.thenReturn(new SliceImpl<>(List.of(), PageRequest.ofSize(2), false));
+		mockMvc.perform(get("/api/orders").param("size", "2").param("cursor", nextCursor))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "false"))
+				.andExpect(header().doesNotExist("X-Next-Cursor"))
+				.andExpect(jsonPath("$.length()").value(0));
+	}
+
+	@Test
+	void searchOrdersWithInvalidCursor_shouldReturnBadRequest() throws Exception {
+		mockMvc.perform(get("/api/orders").param("cursor", "not-a-cursor"))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.detail").value("Invalid cursor"));
+	}
+
+	@Test
+	void exportOrders_shouldStreamNdjson() throws Exception {
+		var search = new OrderSearch(LocalDateTime.of(2024, 6, 1, 0, 0), null, null, null);
+		when(exportService.exportOrders(eq(search), any())).thenAnswer(i -> {
+			i.getArgument(1, OutputStream.class).write(EXPORT_LINES.getBytes(StandardCharsets.UTF_8));
+			return 2L;
+		});
+		mockMvc.perform(get("/api/orders/export").param("createdFrom", "2024-06-01T00:00:00"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+				.andExpect(content().string(EXPORT_LINES));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"gzip, deflate", "deflate;q=1.0, GZIP;q=0.5", "br, *;q=0.1"})
+	void exportOrdersAcceptingGzip_shouldCompressResponse(String acceptEncoding) throws Exception {
+		when(exportService.exportOrders(any(), any())).thenAnswer(i -> {
+			i.getArgument(1, OutputStream.class).write(EXPORT_LINES.getBytes(StandardCharsets.UTF_8));
+			return 2L;
+		});
+		byte[] body = mockMvc.perform(get("/api/orders/export").header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+				.andReturn().getResponse().getContentAsByteArray();
+		try (var in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			assertEquals(EXPORT_LINES, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"gzip;q=0", "deflate, gzip; q=0.0", "*;q=0.5, gzip;q=0", "identity", "*;q=0"})
+	void exportOrdersRefusingGzip_shouldNotCompressResponse(String acceptEncoding) throws Exception {
+		when(exportService.exportOrders(any(), any())).thenAnswer(i -> {
+			i.getArgument(1, OutputStream.class).write(EXPORT_LINES.getBytes(StandardCharsets.UTF_8));
+			return 2L;
+		});
+		mockMvc.perform(get("/api/orders/export").header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+				.andExpect(status().isOk())
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+				.andExpect(content().string(EXPORT_LINES));
+	}
+
 	static Stream<Order> ordersProvider() {
 		var o1 = new Order();
 		o1.setId(1L);
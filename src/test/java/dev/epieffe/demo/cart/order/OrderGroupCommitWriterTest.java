@@ -0,0 +1,117 @@
+package dev.epieffe.demo.cart.order;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(
+		classes = {OrderGroupCommitWriter.class, SimpleMeterRegistry.class},
+		webEnvironment = SpringBootTest.WebEnvironment.NONE,
+		properties = {
+				"cart.orders.group-commit.enabled=true",
+				"cart.orders.group-commit.max-batch-size=3",
+				"cart.orders.group-commit.max-delay=10s"
+		}
+)
+public class OrderGroupCommitWriterTest {
+
+	@Autowired
+	private OrderGroupCommitWriter writer;
+
+	@Autowired
+	private SimpleMeterRegistry registry;
+
+	@MockitoBean
+	private OrderService orderService;
+
+	@Test
+	void concurrentCreateOrder_shouldShareOneTransaction() throws Exception {
+		when(orderService.createOrders(anyList())).thenAnswer(i -> {
+			List<OrderRequest> requests = i.getArgument(0);
+			return requests.stream()
+					.map(r -> r.products().isEmpty()
+							? OrderBatchResult.rejected("Order must have products")
+							: OrderBatchResult.created(order(r)))
+					.toList();
+		});
+		double transactions = transactions();
+		List<Future<Order>> results = submit(
+				request("via Roma, 5", 1L),
+				request("via Milano, 2", List.of()),
+				request("via Napoli, 3", 2L));
+
+		assertEquals("via Roma, 5", results.get(0).get().getShippingAddress());
+		ExecutionException e = assertThrows(ExecutionException.class, () -> results.get(1).get());
+		assertInstanceOf(InvalidOrderException.class, e.getCause());
+		assertEquals("Order must have products", e.getCause().getMessage());
+		assertEquals("via Napoli, 3", results.get(2).get().getShippingAddress());
+
+		verify(orderService, times(1)).createOrders(anyList());
+		verify(orderService, never()).createOrder(any());
+		assertEquals(transactions + 1, transactions());
+	}
+
+	@Test
+	void failedBatch_shouldCreateOrdersOneAtATime() throws Exception {
+		when(orderService.createOrders(anyList())).thenThrow(new IllegalStateException("Serialization failure"));
+		when(orderService.createOrder(any())).thenAnswer(i -> order(i.getArgument(0)));
+		double fallbacks = registry.get("cart.orders.group.commit.fallbacks").counter().count();
+		List<Future<Order>> results = submit(
+				request("via Roma, 5", 1L),
+				request("via Milano, 2", 2L),
+				request("via Napoli, 3", 3L));
+
+		assertEquals("via Roma, 5", results.get(0).get().getShippingAddress());
+		assertEquals("via Milano, 2", results.get(1).get().getShippingAddress());
+		assertEquals("via Napoli, 3", results.get(2).get().getShippingAddress());
+
+		verify(orderService, times(3)).createOrder(any());
+		assertEquals(fallbacks + 1, registry.get("cart.orders.group.commit.fallbacks").counter().count());
+	}
+
+	private double transactions() {
+		return registry.get("cart.orders.group.commit.transactions").counter().count();
+	}
+
+	private List<Future<Order>> submit(OrderRequest... requests) {
+		var results = new ArrayList<Future<Order>>();
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (OrderRequest request : requests) {
+				results.add(executor.submit(() -> writer.createOrder(request)));
+			}
+		}
+		return results;
+	}
+
+	private static OrderRequest request(String shippingAddress, long productId) {
+		return request(shippingAddress, List.of(new OrderRequest.Product(productId, 1)));
+	}
+
+	private static OrderRequest request(String shippingAddress, List<OrderRequest.Product> products) {
+		return new OrderRequest(shippingAddress, products);
+	}
+
+	private static Order order(OrderRequest request) {
+		var order = new Order();
+		order.setShippingAddress(request.shippingAddress());
+		return order;
+	}
+}
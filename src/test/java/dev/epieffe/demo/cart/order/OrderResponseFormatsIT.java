@@ -0,0 +1,108 @@
+package dev.epieffe.demo.cart.order;
+
+import dev.epieffe.demo.cart.UseDockerDatabase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks content negotiation and compression of order responses through the embedded server, since mock requests
+ * skip the compression done by the server.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@UseDockerDatabase
+@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = "/sql/clean_orders.sql")
+class OrderResponseFormatsIT {
+
+	private static final int LINES = 100;
+	private static final long FIRST_PRODUCT_ID = 700_001;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private JsonMapper jsonMapper;
+
+	@Test
+	void largeOrder_shouldBeNegotiatedAndCompressed() throws Exception {
+		jdbcTemplate.update("""
+				INSERT INTO product (id, name, description, total_price, vat_rate, net_price, vat_amount)
+				SELECT i, 'Format IT product ' || i, 'Product with a long enough description to be compressed', 122, 0.22, 100, 22
+				FROM generate_series(?::bigint, ?::bigint) i
+				ON CONFLICT (id) DO NOTHING
+				""", FIRST_PRODUCT_ID, FIRST_PRODUCT_ID + LINES - 1);
+		String lines = IntStream.range(0, LINES)
+				.mapToObj(i -> "{\"productId\": %d, \"quantity\": %d}".formatted(FIRST_PRODUCT_ID + i, 1 + i % 3))
+				.collect(Collectors.joining(","));
+		HttpResponse<byte[]> created = client.send(HttpRequest.newBuilder(uri("/api/orders"))
+						.header("Content-Type", "application/json")
+						.header("Accept", "application/cbor")
+						.POST(HttpRequest.BodyPublishers.ofString("{\"shippingAddress\": \"via Roma, 5\", \"products\": [" + lines + "]}"))
+						.build(),
+				HttpResponse.BodyHandlers.ofByteArray());
+		assertEquals(201, created.statusCode());
+		assertEquals("application/cbor", created.headers().firstValue("Content-Type").orElseThrow());
+		OrderResponse order = new CBORMapper().readValue(created.body(), OrderResponse.class);
+		assertEquals(LINES, order.products().size());
+
+		HttpResponse<byte[]> json = get(order.id(), "application/json", false);
+		assertTrue(json.headers().firstValue("Content-Encoding").isEmpty());
+		// Read from the database, where the creation time has less precision than in the created order
+		order = jsonMapper.readValue(json.body(), OrderResponse.class);
+		assertEquals(LINES, order.products().size());
+
+		HttpResponse<byte[]> gzipJson = get(order.id(), "application/json", true);
+		assertEquals("gzip", gzipJson.headers().firstValue("Content-Encoding").orElseThrow());
+		assertTrue(gzipJson.body().length < json.body().length / 4, "Compressed JSON should be much smaller");
+		assertEquals(order, jsonMapper.readValue(gunzip(gzipJson.body()), OrderResponse.class));
+
+		HttpResponse<byte[]> smile = get(order.id(), "application/x-jackson-smile", true);
+		assertEquals("application/x-jackson-smile", smile.headers().firstValue("Content-Type").orElseThrow());
+		assertEquals(order, SmileMapper.shared().readValue(gunzip(smile.body()), OrderResponse.class));
+	}
+
+	private HttpResponse<byte[]> get(long id, String accept, boolean gzip) throws IOException, InterruptedException {
+		HttpRequest.Builder request = HttpRequest.newBuilder(uri("/api/orders/" + id)).header("Accept", accept);
+		if (gzip) {
+			request.header("Accept-Encoding", "gzip");
+		}
+		HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+		assertEquals(200, response.statusCode());
+		return response;
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://127.0.0.1:" + port + path);
+	}
+
+	private static byte[] gunzip(byte[] body) throws IOException {
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			return in.readAllBytes();
+		}
+	}
+}
@@ -1,22 +1,33 @@
 package dev.epieffe.demo.cart.order;
 
 
+import dev.epieffe.demo.cart.product.ProductChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest(
-		classes = OrderService.class,
+		classes = {OrderService.class, ProductSnapshotCache.class, LocalValidatorFactoryBean.class, SimpleMeterRegistry.class},
 		webEnvironment = SpringBootTest.WebEnvironment.NONE
 )
 public class OrderServiceTest {
@@ -24,17 +35,28 @@ public class OrderServiceTest {
 	@Autowired
 	private OrderService orderService;
 
+	@Autowired
+	private ProductSnapshotCache productCache;
+
+	@Autowired
+	private MeterRegistry registry;
+
 	@MockitoBean
 	private OrderRepository orderRepository;
 
+	@BeforeEach
+	void clearProductCache() {
+		productCache.invalidateAll();
+	}
+
 	@Test
 	void createOrder_shouldMapOrder() throws InvalidOrderException {
 		OrderRequest request = new OrderRequest("via Roma, 5", List.of(
 				new OrderRequest.Product(1L, 2),
 				new OrderRequest.Product(2L, 1)));
 		when(orderRepository.findProductsByIdIn(List.of(1L, 2L))).thenReturn(List.of(
-				new ProductQueryDto(1L, "iPhone", new BigDecimal("999.99"), new BigDecimal("0.22")),
-				new ProductQueryDto(2L, "Apple Watch", new BigDecimal("150"), new BigDecimal("0.21"))
+				new ProductQueryDto(1L, "iPhone", new BigDecimal("999.99"), new BigDecimal("0.22"), new BigDecimal("180.33")),
+				new ProductQueryDto(2L, "Apple Watch", new BigDecimal("150"), new BigDecimal("0.21"), new BigDecimal("26.03"))
 		));
 		when(orderRepository.save(any())).thenAnswer(i -> i.getArgument(0));
 		Order o = orderService.createOrder(request);
@@ -60,6 +82,39 @@ public class OrderServiceTest {
 		assertEquals(0.21, p2.getVatRate().doubleValue());
 	}
 
+	@Test
+	void createOrder_shouldTimePhases() throws InvalidOrderException {
+		OrderRequest request = new OrderRequest("via Roma, 5", List.of(
+				new OrderRequest.Product(1L, 2),
+				new OrderRequest.Product(2L, 1)));
+		when(orderRepository.findProductsByIdIn(List.of(1L, 2L))).thenReturn(List.of(
+				new ProductQueryDto(1L, "iPhone", new BigDecimal("999.99"), new BigDecimal("0.22"), new BigDecimal("180.33")),
+				new ProductQueryDto(2L, "Apple Watch", new BigDecimal("150"), new BigDecimal("0.21"), new BigDecimal("26.03"))
+		));
+		when(orderRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+		List<String> phases = List.of("validate", "products", "mapping", "save", "flush");
+		List<Long> before = phases.stream().map(this::createPhaseCount).toList();
+		orderService.createOrder(request);
+		for (int i = 0; i < phases.size(); i++) {
+			assertEquals(before.get(i) + 1, createPhaseCount(phases.get(i)), phases.get(i));
+		}
+	}
+
+	private long createPhaseCount(String phase) {
+		var timer = registry.find("cart.orders.create.phase").tag("phase", phase).tag("cart.size", "2-5").timer();
+		return timer != null ? timer.count() : 0;
+	}
+
+	@Test
+	void createInvalidOrders_shouldReportFirstViolation() {
+		OrderRequest request = new OrderRequest("via Roma, 5", List.of(
+				new OrderRequest.Product(1L, null),
+				new OrderRequest.Product(null, 0)));
+		List<OrderBatchResult> results = orderService.createOrders(List.of(request));
+		// products[0].quantity comes before products[1].productId and products[1].quantity
+		assertEquals("Missing quantity for product", results.getFirst().error());
+	}
+
 	@Test
 	void createOrderWithDuplicateProducts_shouldThrowException() {
 		OrderRequest request = new OrderRequest("via Roma, 5", List.of(
@@ -79,8 +134,8 @@ public class OrderServiceTest {
 				new OrderRequest.Product(2L, 1),
 				new OrderRequest.Product(3L, 4)));
 		when(orderRepository.findProductsByIdIn(List.of(1L, 2L))).thenReturn(List.of(
-				new ProductQueryDto(1L, "iPhone", new BigDecimal("999.99"), new BigDecimal("0.22")),
-				new ProductQueryDto(3L, "Apple Watch", new BigDecimal("150"), new BigDecimal("0.21"))
+				new ProductQueryDto(1L, "iPhone", new BigDecimal("999.99"), new BigDecimal("0.22"), new BigDecimal("180.33")),
+				new ProductQueryDto(3L, "Apple Watch", new BigDecimal("150"), new BigDecimal("0.21"), new BigDecimal("26.03"))
 		));
 		assertThrows(
 				InvalidOrderException.class,
@@ -88,4 +143,142 @@ public class OrderServiceTest {
 				"Product not found: 1"
 		);
 	}
+
+	@Test
+	void createLargeOrder_shouldMapAllProducts() throws InvalidOrderException {
+		int size = 20_000;
+		List<OrderRequest.Product> lines = new ArrayList<>(size);
+		List<ProductQueryDto> products = new ArrayList<>(size);
+		for (int i = size; i > 0; i--) {
+			lines.add(new OrderRequest.Product((long) i, i % 3 + 1));
+			products.add(new ProductQueryDto((long) (size - i + 1), "Product " + i, new BigDecimal("9.99"), new BigDecimal("0.22"), new BigDecimal("1.80")));
+		}
+		// Large carts are looked up in chunks, so only return the requested products
+		when(orderRepository.findProductsByIdIn(anyList())).thenAnswer(i -> {
+			List<Long> ids = i.getArgument(0);
+			return products.stream().filter(p -> ids.contains(p.id())).toList();
+		});
+		when(orderRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+		Order o = orderService.createOrder(new OrderRequest("via Roma, 5", lines));
+		assertEquals(size, o.getProducts().size());
+		for (OrderProduct p : o.getProducts()) {
+			assertEquals(p.getProductId() % 3 + 1, p.getQuantity().longValue());
+		}
+		BigDecimal totalPrice = o.getProducts().stream().map(OrderProduct::getTotalPrice).reduce(BigDecimal.ZERO, BigDecimal::add);
+		BigDecimal vatAmount = o.getProducts().stream().map(OrderProduct::getVatAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+		assertEquals(totalPrice, o.getTotalPrice());
+		assertEquals(vatAmount, o.getVatAmount());
+	}
+
+	@Test
+	void createLargeOrderWithDuplicateProducts_shouldThrowException() {
+		List<OrderRequest.Product> lines = new ArrayList<>();
+		for (long i = 1; i <= 20_000; i++) {
+			lines.add(new OrderRequest.Product(i, 1));
+		}
+		lines.add(new OrderRequest.Product(12_345L, 1));
+		InvalidOrderException ex = assertThrows(
+				InvalidOrderException.class,
+				() -> orderService.createOrder(new OrderRequest("via Roma, 5", lines))
+		);
+		assertEquals("Duplicate product: 12345", ex.getMessage());
+	}
+
+	@Test
+	void createLargeOrderWithNonExistingProduct_shouldReportFirstMissingProduct() {
+		List<OrderRequest.Product> lines = new ArrayList<>();
+		List<ProductQueryDto> products = new ArrayList<>();
+		for (long i = 1; i <= 20_000; i++) {
+			lines.add(new OrderRequest.Product(i, 1));
+			if (i != 7_000 && i != 15_000) {
+				products.add(new ProductQueryDto(i, "Product " + i, new BigDecimal("9.99"), new BigDecimal("0.22"), new BigDecimal("1.80")));
+			}
+		}
+		when(orderRepository.findProductsByIdIn(anyList())).thenReturn(products);
+		InvalidOrderException ex = assertThrows(
+				InvalidOrderException.class,
+				() -> orderService.createOrder(new OrderRequest("via Roma, 5", lines))
+		);
+		assertEquals("Product not found: 7000", ex.getMessage());
+	}
+
+	@Test
+	void createOrders_shouldIsolateInvalidOrders() {
+		List<OrderRequest> requests = List.of(
+				new OrderRequest("via Roma, 5", List.of(
+						new OrderRequest.Product(1L, 2),
+						new OrderRequest.Product(2L, 1))),
+				new OrderRequest("via Milano, 2", List.of(
+						new OrderRequest.Product(2L, 1),
+						new OrderRequest.Product(2L, 3))),
+				new OrderRequest("via Napoli, 3", List.of(
+						new OrderRequest.Product(3L, 1))),
+				new OrderRequest("via Torino, 4", List.of()),
+				new OrderRequest("via Firenze, 6", List.of(
+						new OrderRequest.Product(2L, 4))));
+		when(orderRepository.findProductsByIdIn(List.of(1L, 2L, 3L))).thenReturn(List.of(
+				new ProductQueryDto(2L, "Apple Watch", new BigDecimal("150"), new BigDecimal("0.21"), new BigDecimal("26.03")),
+				new ProductQueryDto(1L, "iPhone", new BigDecimal("999.99"), new BigDecimal("0.22"), new BigDecimal("180.33"))
+		));
+		when(orderRepository.saveAll(anyList())).thenAnswer(i -> i.getArgument(0));
+		List<OrderBatchResult> results = orderService.createOrders(requests);
+		assertEquals(5, results.size());
+
+		Order o1 = results.get(0).order();
+		assertNotNull(o1);
+		assertNull(results.get(0).error());
+		assertEquals("via Roma, 5", o1.getShippingAddress());
+		assertEquals(2, o1.getProducts().size());
+		assertEquals(2149.98, o1.getTotalPrice().doubleValue());
+
+		assertNull(results.get(1).order());
+		assertEquals("Duplicate product: 2", results.get(1).error());
+
+		assertNull(results.get(2).order());
+		assertEquals("Product not found: 3", results.get(2).error());
+
+		assertNull(results.get(3).order());
+		assertEquals("Order must contain at least one product", results.get(3).error());
+
+		Order o5 = results.get(4).order();
+		assertNotNull(o5);
+		assertEquals("via Firenze, 6", o5.getShippingAddress());
+		assertEquals(600, o5.getTotalPrice().doubleValue());
+
+		verify(orderRepository).saveAll(List.of(o1, o5));
+	}
+
+	@Test
+	void createOrder_shouldQueryOnlyProductsMissingFromCache() throws InvalidOrderException {
+		var iPhone = new ProductQueryDto(1L, "iPhone", new BigDecimal("999.99"), new BigDecimal("0.22"), new BigDecimal("180.33"));
+		var watch = new ProductQueryDto(2L, "Apple Watch", new BigDecimal("150"), new BigDecimal("0.21"), new BigDecimal("26.03"));
+		when(orderRepository.findProductsByIdIn(List.of(1L))).thenReturn(List.of(iPhone));
+		when(orderRepository.findProductsByIdIn(List.of(2L))).thenReturn(List.of(watch));
+		when(orderRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+
+		orderService.createOrder(new OrderRequest("via Roma, 5", List.of(new OrderRequest.Product(1L, 1))));
+		Order o = orderService.createOrder(new OrderRequest("via Roma, 5", List.of(
+				new OrderRequest.Product(1L, 2),
+				new OrderRequest.Product(2L, 1))));
+		orderService.createOrder(new OrderRequest("via Roma, 5", List.of(
+				new OrderRequest.Product(2L, 1),
+				new OrderRequest.Product(1L, 1))));
+
+		assertEquals(2149.98, o.getTotalPrice().doubleValue());
+		verify(orderRepository, times(1)).findProductsByIdIn(List.of(1L));
+		verify(orderRepository, times(1)).findProductsByIdIn(List.of(2L));
+	}
+
+	@Test
+	void createOrderAfterProductChange_shouldReloadProduct() throws InvalidOrderException {
+		when(orderRepository.findProductsByIdIn(List.of(1L))).thenReturn(
+				List.of(new ProductQueryDto(1L, "iPhone", new BigDecimal("999.99"), new BigDecimal("0.22"), new BigDecimal("180.33"))),
+				List.of(new ProductQueryDto(1L, "iPhone", new BigDecimal("899.99"), new BigDecimal("0.22"), new BigDecimal("162.29"))));
+		when(orderRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+		OrderRequest request = new OrderRequest("via Roma, 5", List.of(new OrderRequest.Product(1L, 1)));
+
+		assertEquals(999.99, orderService.createOrder(request).getTotalPrice().doubleValue());
+		productCache.onProductChanged(new ProductChangedEvent(1L));
+		assertEquals(899.99, orderService.createOrder(request).getTotalPrice().doubleValue());
+	}
 }
@@ -11,9 +11,12 @@ import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -203,4 +206,160 @@ public class OrdersApiIT {
 				.andExpect(jsonPath("$.products[0].vatAmount").isNumber())
 				.andExpect(jsonPath("$.products[0].vatRate").value("0.22"));
 	}
+
+	@Test
+	void createOrders_shouldPersistValidOrders() throws Exception {
+		String json = """
+				{
+				  "orders": [
+				    {
+				      "shippingAddress": "via Roma, 5",
+				      "products": [
+				        { "productId": 1, "quantity": 2 },
+				        { "productId": 2, "quantity": 1 }
+				      ]
+				    },
+				    {
+				      "shippingAddress": "via Milano, 2",
+				      "products": [
+				        { "productId": 999, "quantity": 1 }
+				      ]
+				    },
+				    {
+				      "shippingAddress": "via Napoli, 3",
+				      "products": [
+				        { "productId": 2, "quantity": 3 }
+				      ]
+				    }
+				  ]
+				}
+				""";
+		MvcResult result = mockMvc.perform(post("/api/orders/batch").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(2))
+				.andExpect(jsonPath("$.rejected").value(1))
+				.andExpect(jsonPath("$.results[0].order.totalPrice").value("1799.99"))
+				.andExpect(jsonPath("$.results[1].error").value("Product not found: 999"))
+				.andExpect(jsonPath("$.results[2].order.totalPrice").value("599.97"))
+				.andReturn();
+
+		Integer id = JsonPath.read(result.getResponse().getContentAsString(), "$.results[2].order.id");
+		mockMvc.perform(get("/api/orders/" + id))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(id))
+				.andExpect(jsonPath("$.shippingAddress").value("via Napoli, 3"))
+				.andExpect(jsonPath("$.products[0].productId").value(2))
+				.andExpect(jsonPath("$.products[0].quantity").value(3));
+	}
+
+	@Test
+	void searchOrders_shouldPaginateWithCursors() throws Exception {
+		// Create five orders with increasing total price
+		for (int quantity = 1; quantity <= 5; quantity++) {
+			String json = """
+					{
+					  "shippingAddress": "via Roma, %d",
+					  "products": [
+					    {
+					      "productId": 5,
+					      "quantity": %d
+					    }
+					  ]
+					}
+					""".formatted(quantity, quantity);
+			mockMvc.perform(post("/api/orders").contentType(MediaType.APPLICATION_JSON).content(json))
+					.andExpect(status().isCreated());
+		}
+
+		// Orders are returned from the newest to the oldest, filtered by total price
+		MvcResult first = mockMvc.perform(get("/api/orders")
+						.param("minTotalPrice", "800")
+						.param("maxTotalPrice", "1600")
+						.param("size", "2"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "true"))
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].totalPrice").value(1600))
+				.andExpect(jsonPath("$[0].products[0].quantity").value(4))
+				.andExpect(jsonPath("$[1].totalPrice").value(1200))
+				.andReturn();
+
+		String cursor = first.getResponse().getHeader("X-Next-Cursor");
+		mockMvc.perform(get("/api/orders")
+						.param("minTotalPrice", "800")
+						.param("maxTotalPrice", "1600")
+						.param("size", "2")
+						.param("cursor", cursor))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "false"))
+				.andExpect(header().doesNotExist("X-Next-Cursor"))
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].totalPrice").value(800))
+				.andExpect(jsonPath("$[0].products[0].productId").value(5));
+	}
+
+	@Test
+	void searchOrdersByCreationTime_shouldFilterOrders() throws Exception {
+		String json = """
+				{
+				  "shippingAddress": "via Roma, 5",
+				  "products": [
+				    {
+				      "productId": 2,
+				      "quantity": 1
+				    }
+				  ]
+				}
+				""";
+		mockMvc.perform(post("/api/orders").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andExpect(status().isCreated());
+
+		mockMvc.perform(get("/api/orders").param("createdTo", "2000-01-01T00:00:00"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(0));
+
+		mockMvc.perform(get("/api/orders").param("createdFrom", "2000-01-01T00:00:00"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].shippingAddress").value("via Roma, 5"));
+	}
+
+	@Test
+	void exportOrders_shouldWriteOneOrderPerLine() throws Exception {
+		String json = """
+				{
+				  "shippingAddress": "via Roma, %d",
+				  "products": [
+				    {
+				      "productId": 1,
+				      "quantity": 1
+				    },
+				    {
+				      "productId": 2,
+				      "quantity": %d
+				    }
+				  ]
+				}
+				""";
+		for (int i = 1; i <= 3; i++) {
+			mockMvc.perform(post("/api/orders").contentType(MediaType.APPLICATION_JSON).content(json.formatted(i, i)))
+					.andExpect(status().isCreated());
+		}
+
+		String body = mockMvc.perform(get("/api/orders/export"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+				.andReturn().getResponse().getContentAsString();
+		String[] lines = body.split("\n");
+		assertEquals(3, lines.length);
+		for (int i = 0; i < lines.length; i++) {
+			assertEquals("via Roma, " + (i + 1), JsonPath.read(lines[i], "$.shippingAddress"));
+			assertEquals(2, (int) JsonPath.read(lines[i], "$.products.length()"));
+			assertEquals(i + 1, (int) JsonPath.read(lines[i], "$.products[1].quantity"));
+		}
+
+		mockMvc.perform(get("/api/orders/export").param("createdTo", "2000-01-01T00:00:00"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(""));
+	}
 }
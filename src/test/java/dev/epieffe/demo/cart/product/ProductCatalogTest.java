@@ -0,0 +1,155 @@
+package dev.epieffe.demo.cart.product;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that searching a {@link ProductCatalog} returns the same slices as a naive filter and sort, both on
+ * a small catalog and on one large enough to be scanned in parallel partitions.
+ */
+public class ProductCatalogTest {
+
+	private static final String[] WORDS = {"Apple", "iPhone", "Samsung", "Galaxy", "Watch", "Pro", "Max", "Mini", "Pixel", "Case"};
+	private static final String[] NAME_QUERIES = {"phone", "iphone pro", "sung gal", "max", "ch", "x", "zzz", "watch case"};
+
+	@ParameterizedTest
+	@ValueSource(ints = {10, 1000, 200_000})
+	void search_shouldMatchNaiveSearch(int size) {
+		var random = new SplittableRandom(size);
+		List<ProductCatalog.Row> rows = randomRows(random, size);
+		ProductCatalog catalog = ProductCatalog.of(rows, 0);
+		for (int i = 0; i < 50; i++) {
+			String name = random.nextInt(4) == 0 ? null : NAME_QUERIES[random.nextInt(NAME_QUERIES.length)];
+			long min = random.nextBoolean() ? Long.MIN_VALUE : random.nextLong(10_000);
+			long max = random.nextBoolean() ? Long.MAX_VALUE : min + random.nextLong(1, 50_000);
+			var query = new ProductCatalog.Query(name, min, max);
+			var key = random.nextBoolean() ? ProductCatalog.SortKey.ID : ProductCatalog.SortKey.TOTAL_PRICE;
+			boolean descending = random.nextBoolean();
+			Pageable pageable = PageRequest.of(random.nextInt(5), 1 + random.nextInt(50));
+			assertSearch(rows, catalog, query, key, descending, pageable);
+		}
+	}
+
+	@Test
+	void searchAfterChanges_shouldReturnChangedRows() {
+		ProductCatalog catalog = ProductCatalog.of(List.of(
+				row(1, "iPhone 16", 109900),
+				row(2, "Apple Watch", 19999),
+				row(3, "Samsung A17", 40000)), 0);
+		ProductCatalog changed = catalog.withChanges(List.of(1L, 2L), List.of(
+				row(2, "Apple Watch Ultra", 79900),
+				row(4, "iPhone 16 Pro", 129900)), 1);
+
+		assertEquals(1, changed.generation());
+		assertEquals(3, changed.size());
+		Slice<Product> slice = changed.search(new ProductCatalog.Query("iphone", Long.MIN_VALUE, Long.MAX_VALUE),
+				ProductCatalog.SortKey.ID, false, PageRequest.of(0, 10));
+		assertEquals(List.of(4L), slice.map(Product::getId).getContent());
+		slice = changed.search(new ProductCatalog.Query(null, 50000, Long.MAX_VALUE),
+				ProductCatalog.SortKey.TOTAL_PRICE, true, PageRequest.of(0, 1));
+		assertEquals(List.of(4L), slice.map(Product::getId).getContent());
+		assertTrue(slice.hasNext());
+		Product watch = changed.search(new ProductCatalog.Query("ultra", Long.MIN_VALUE, Long.MAX_VALUE),
+				ProductCatalog.SortKey.ID, false, PageRequest.of(0, 10)).getContent().getFirst();
+		assertEquals("Apple Watch Ultra", watch.getName());
+		assertEquals(new BigDecimal("799.00"), watch.getTotalPrice());
+		assertEquals(new BigDecimal("0.2200"), watch.getVatRate());
+		assertFalse(catalog.search(new ProductCatalog.Query("ultra", Long.MIN_VALUE, Long.MAX_VALUE),
+				ProductCatalog.SortKey.ID, false, PageRequest.of(0, 10)).hasContent());
+	}
+
+	@Test
+	void searchAfterManyChanges_shouldMatchNaiveSearch() {
+		var random = new SplittableRandom(42);
+		Map<Long, ProductCatalog.Row> rows = new HashMap<>();
+		randomRows(random, 1000).forEach(row -> rows.put(row.id(), row));
+		ProductCatalog catalog = ProductCatalog.of(rows.values(), 0);
+		// Enough changes for the catalog to be rebuilt at least once
+		for (int generation = 1; generation <= 30; generation++) {
+			List<Long> changedIds = new ArrayList<>();
+			List<ProductCatalog.Row> changedRows = new ArrayList<>();
+			for (ProductCatalog.Row row : randomRows(random, 100)) {
+				long id = 1 + random.nextLong(4000);
+				changedIds.add(id);
+				if (random.nextInt(3) == 0) {
+					rows.remove(id);
+				} else {
+					var changed = row(id, row.name(), row.totalCents());
+					rows.put(id, changed);
+					changedRows.add(changed);
+				}
+			}
+			changedRows.removeIf(row -> rows.get(row.id()) != row);
+			catalog = catalog.withChanges(changedIds, changedRows, generation);
+			assertEquals(rows.size(), catalog.size());
+			var query = new ProductCatalog.Query(random.nextBoolean() ? null : "pro", Long.MIN_VALUE, random.nextLong(50_000));
+			var key = random.nextBoolean() ? ProductCatalog.SortKey.ID : ProductCatalog.SortKey.TOTAL_PRICE;
+			assertSearch(List.copyOf(rows.values()), catalog, query, key, random.nextBoolean(), PageRequest.of(random.nextInt(3), 20));
+		}
+	}
+
+	private static void assertSearch(
+			List<ProductCatalog.Row> rows,
+			ProductCatalog catalog,
+			ProductCatalog.Query query,
+			ProductCatalog.SortKey key,
+			boolean descending,
+			Pageable pageable
+	) {
+		Comparator<ProductCatalog.Row> order = key == ProductCatalog.SortKey.ID
+				? Comparator.comparingLong(ProductCatalog.Row::id)
+				: Comparator.comparingLong(ProductCatalog.Row::totalCents).thenComparingLong(ProductCatalog.Row::id);
+		List<Long> expected = rows.stream()
+				.filter(row -> matches(row, query))
+				.sorted(descending ? order.reversed() : order)
+				.map(ProductCatalog.Row::id)
+				.toList();
+		int from = (int) Math.min(pageable.getOffset(), expected.size());
+		int to = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), expected.size());
+
+		Slice<Product> slice = catalog.search(query, key, descending, pageable);
+		String message = query + " " + key + (descending ? " desc " : " asc ") + pageable;
+		assertEquals(expected.subList(from, to), slice.map(Product::getId).getContent(), message);
+		assertEquals(expected.size() > to, slice.hasNext(), message);
+	}
+
+	private static boolean matches(ProductCatalog.Row row, ProductCatalog.Query query) {
+		return row.totalCents() > query.minCentsExclusive()
+				&& row.totalCents() < query.maxCentsExclusive()
+				&& (query.name() == null || row.name().toLowerCase().contains(query.name()));
+	}
+
+	private static List<ProductCatalog.Row> randomRows(SplittableRandom random, int size) {
+		var rows = new ArrayList<ProductCatalog.Row>(size);
+		for (int i = 0; i < size; i++) {
+			var name = new StringBuilder();
+			for (int w = 0, words = 1 + random.nextInt(3); w < words; w++) {
+				name.append(w > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			// Few distinct prices, so that sorting by price has many ties
+			rows.add(row(1 + i * 3L, name.toString(), random.nextLong(1000) * 50));
+		}
+		return rows;
+	}
+
+	private static ProductCatalog.Row row(long id, String name, long totalCents) {
+		long netCents = Math.round(totalCents / 1.22);
+		return new ProductCatalog.Row(id, name, "Description " + id, totalCents, 2200, netCents, totalCents - netCents, 0);
+	}
+}
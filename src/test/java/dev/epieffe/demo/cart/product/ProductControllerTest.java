@@ -1,23 +1,39 @@
 package dev.epieffe.demo.cart.product;
 
+import dev.epieffe.demo.cart.util.CursorCodec;
+import dev.epieffe.demo.cart.util.PreconditionFailedException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -30,19 +46,27 @@ public class ProductControllerTest {
 	@MockitoBean
 	ProductService productService;
 
+	@MockitoBean
+	ProductImportService importService;
+
+	private static final String VALID_PRODUCT_JSON = """
+			{"name": "iPhone", "description": "Cool smartphone", "totalPrice": 999.99, "vatRate": 0.22}
+			""";
+
 	@ParameterizedTest
 	@MethodSource("productsProvider")
 	void getExistingProduct_shouldReturnProduct(Product product) throws Exception {
 		when(productService.getProductById(product.getId())).thenReturn(Optional.of(product));
 		mockMvc.perform(get("/api/products/" + product.getId()))
 				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", "\"" + product.getId() + "-" + product.getVersion() + "\""))
 				.andExpect(jsonPath("$.id").value(product.getId()))
 				.andExpect(jsonPath("$.name").value(product.getName()))
 				.andExpect(jsonPath("$.description").value(product.getDescription()))
 				.andExpect(jsonPath("$.totalPrice").value(product.getTotalPrice().doubleValue()))
 				.andExpect(jsonPath("$.vatRate").value(product.getVatRate().doubleValue()))
-				.andExpect(jsonPath("$.netPrice").isNumber())
-				.andExpect(jsonPath("$.vatAmount").isNumber());
+				.andExpect(jsonPath("$.netPrice").value(product.getNetPrice().doubleValue()))
+				.andExpect(jsonPath("$.vatAmount").value(product.getVatAmount().doubleValue()));
 	}
 
 	@Test
@@ -52,6 +76,51 @@ public class ProductControllerTest {
 				.andExpect(status().isNotFound());
 	}
 
+	@Test
+	void getProductWithMatchingETag_shouldReturnNotModifiedWithoutLoadingProduct() throws Exception {
+		when(productService.getProductVersion(1L)).thenReturn(Optional.of(4L));
+		mockMvc.perform(get("/api/products/1").header("If-None-Match", "\"1-3\", W/\"1-4\""))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string("ETag", "\"1-4\""));
+		verify(productService, never()).getProductById(any());
+	}
+
+	@Test
+	void getProductWithStaleETag_shouldReturnProduct() throws Exception {
+		Product product = productsProvider().findFirst().orElseThrow();
+		when(productService.getProductVersion(1L)).thenReturn(Optional.of(0L));
+		when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+		mockMvc.perform(get("/api/products/1").header("If-None-Match", "\"1-5\""))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", "\"1-0\""))
+				.andExpect(jsonPath("$.name").value("iPhone"));
+	}
+
+	@Test
+	void updateProductWithIfMatch_shouldPassExpectedVersions() throws Exception {
+		Product product = productsProvider().findFirst().orElseThrow();
+		when(productService.updateProduct(eq(1L), any(), eq(Set.of(2L)))).thenReturn(Optional.of(product));
+		mockMvc.perform(put("/api/products/1").header("If-Match", "\"1-2\", W/\"1-7\", \"2-9\"")
+						.contentType(MediaType.APPLICATION_JSON).content(VALID_PRODUCT_JSON))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", "\"1-0\""));
+
+		when(productService.updateProduct(eq(1L), any(), eq(null))).thenReturn(Optional.of(product));
+		mockMvc.perform(put("/api/products/1").header("If-Match", "*")
+						.contentType(MediaType.APPLICATION_JSON).content(VALID_PRODUCT_JSON))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void updateProductWithStaleIfMatch_shouldReturnPreconditionFailed() throws Exception {
+		when(productService.updateProduct(eq(1L), any(), eq(Set.of(2L))))
+				.thenThrow(new PreconditionFailedException("Product 1 was modified, current version is 3"));
+		mockMvc.perform(put("/api/products/1").header("If-Match", "\"1-2\"")
+						.contentType(MediaType.APPLICATION_JSON).content(VALID_PRODUCT_JSON))
+				.andExpect(status().isPreconditionFailed())
+				.andExpect(jsonPath("$.detail").value("Product 1 was modified, current version is 3"));
+	}
+
 	@Test
 	void deleteProduct_shouldReturnNoContent() throws Exception {
 		doNothing().when(productService).deleteProductById(1L);
@@ -291,6 +360,130 @@ public class ProductControllerTest {
 				.andExpect(jsonPath("$.detail").value("Product vatRate must be provided"));
 	}
 
+	@Test
+	void importProductsFromCsv_shouldReturnImportResult() throws Exception {
+		var response = new ProductImportResponse(2, 1, 1, 10, 300,
+				List.of(new ProductImportResponse.Rejection(3, "Product name must be provided")));
+		when(importService.importProducts(any(), eq(ProductImportReader.Format.CSV))).thenReturn(response);
+		String csv = """
+				id,name,description,totalPrice,vatRate
+				,iPhone,Apple smartphone,999.99,0.22
+				""";
+		mockMvc.perform(post("/api/products/import").contentType("text/csv").content(csv))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(2))
+				.andExpect(jsonPath("$.updated").value(1))
+				.andExpect(jsonPath("$.rejected").value(1))
+				.andExpect(jsonPath("$.rowsPerSecond").value(300))
+				.andExpect(jsonPath("$.rejections[0].row").value(3))
+				.andExpect(jsonPath("$.rejections[0].error").value("Product name must be provided"));
+	}
+
+	@Test
+	void importProductsFromNdjson_shouldReadNdjson() throws Exception {
+		when(importService.importProducts(any(), eq(ProductImportReader.Format.NDJSON)))
+				.thenReturn(new ProductImportResponse(1, 0, 0, 10, 100, List.of()));
+		String ndjson = """
+				{"name":"iPhone","description":"Apple smartphone","totalPrice":999.99,"vatRate":0.22}
+				""";
+		mockMvc.perform(post("/api/products/import").contentType(MediaType.APPLICATION_NDJSON).content(ndjson))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(1));
+	}
+
+	@Test
+	void importProductsFromJson_shouldReturnUnsupportedMediaType() throws Exception {
+		mockMvc.perform(post("/api/products/import").contentType(MediaType.APPLICATION_JSON).content("[]"))
+				.andExpect(status().isUnsupportedMediaType());
+	}
+
+	@Test
+	void searchProducts_shouldReturnProductsAndNextCursor() throws Exception {
+		List<Product> products = productsProvider().limit(2).toList();
+		Sort sort = ProductCursor.Key.TOTAL_PRICE.sort(Sort.Direction.DESC);
+		when(productService.searchProducts(any(), any(), any(Pageable.class)))
+				.thenReturn(new SliceImpl<>(products, PageRequest.of(0, 2, sort), true));
+		var cursor = new ProductCursor(ProductCursor.Key.TOTAL_PRICE, Sort.Direction.DESC, "150", 2L);
+		mockMvc.perform(get("/api/products").param("size", "2").param("sort", "totalPrice,desc"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "true"))
+				.andExpect(header().string("X-Next-Cursor", cursor.encode()))
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[1].id").value(2));
+
+		when(productService.searchProducts(any(), any(), eq(cursor), eq(2)))
+				.thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 2, sort), false));
+		mockMvc.perform(get("/api/products").param("size", "2").param("cursor", cursor.encode()))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "false"))
+				.andExpect(header().doesNotExist("X-Next-Cursor"))
+				.andExpect(jsonPath("$.length()").value(0));
+	}
+
+	@Test
+	void searchProductsSortedByUnsupportedKey_shouldNotReturnCursor() throws Exception {
+		List<Product> products = productsProvider().limit(2).toList();
+		when(productService.searchProducts(any(), any(), any(Pageable.class)))
+				.thenReturn(new SliceImpl<>(products, PageRequest.of(0, 2, Sort.by("vatRate")), true));
+		mockMvc.perform(get("/api/products").param("size", "2").param("sort", "vatRate"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "true"))
+				.andExpect(header().doesNotExist("X-Next-Cursor"));
+	}
+
+	@Test
+	void searchProductsWithInvalidCursor_shouldReturnBadRequest() throws Exception {
+		String cursor = CursorCodec.encode("TOTAL_PRICE", "ASC", "not-a-price", "1");
+		mockMvc.perform(get("/api/products").param("cursor", cursor))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.detail").value("Invalid cursor"));
+	}
+
+	@Test
+	void searchProductsWithFields_shouldReturnOnlyRequestedFields() throws Exception {
+		Set<ProductField> fields = EnumSet.of(ProductField.ID, ProductField.NAME, ProductField.TOTAL_PRICE);
+		List<Product> products = productsProvider().limit(2).toList();
+		when(productService.searchProducts(any(), eq(fields), any(Pageable.class)))
+				.thenReturn(new SliceImpl<>(products, PageRequest.of(0, 20), false));
+		mockMvc.perform(get("/api/products").param("fields", "id, name,totalPrice"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].id").value(1))
+				.andExpect(jsonPath("$[0].name").value("iPhone"))
+				.andExpect(jsonPath("$[0].totalPrice").value(999.99))
+				.andExpect(jsonPath("$[0].description").doesNotExist())
+				.andExpect(jsonPath("$[0].netPrice").doesNotExist())
+				.andExpect(jsonPath("$[0].vatAmount").doesNotExist())
+				.andExpect(jsonPath("$[0].vatRate").doesNotExist());
+	}
+
+	@Test
+	void searchProducts_shouldReturnWeakETagOfProductVersions() throws Exception {
+		List<Product> products = productsProvider().limit(2).toList();
+		when(productService.searchProducts(any(), any(), any(Pageable.class)))
+				.thenReturn(new SliceImpl<>(products, PageRequest.of(0, 2), true));
+		String etag = mockMvc.perform(get("/api/products").param("size", "2"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", startsWith("W/\"")))
+				.andReturn().getResponse().getHeader("ETag");
+		mockMvc.perform(get("/api/products").param("size", "2").header("If-None-Match", etag))
+				.andExpect(status().isNotModified());
+
+		products.getLast().setVersion(4L);
+		mockMvc.perform(get("/api/products").param("size", "2").header("If-None-Match", etag))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", not(etag)));
+		mockMvc.perform(get("/api/products").param("size", "2").param("fields", "id").header("If-None-Match", etag))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void searchProductsWithUnknownField_shouldReturnBadRequest() throws Exception {
+		mockMvc.perform(get("/api/products").param("fields", "id,price"))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.detail").value("Unknown product field: price"));
+	}
+
 	static Stream<Product> productsProvider() {
 		var p1 = new Product();
 		p1.setId(1L);
@@ -298,6 +491,9 @@ public class ProductControllerTest {
 		p1.setDescription("Cool smartphone");
 		p1.setTotalPrice(new java.math.BigDecimal("999.99"));
 		p1.setVatRate(new java.math.BigDecimal("0.22"));
+		p1.setNetPrice(new java.math.BigDecimal("819.66"));
+		p1.setVatAmount(new java.math.BigDecimal("180.33"));
+		p1.setVersion(0L);
 
 		var p2 = new Product();
 		p2.setId(2L);
@@ -305,6 +501,9 @@ public class ProductControllerTest {
 		p2.setDescription("Nice watch");
 		p2.setTotalPrice(new java.math.BigDecimal("150"));
 		p2.setVatRate(new java.math.BigDecimal("0.21"));
+		p2.setNetPrice(new java.math.BigDecimal("123.97"));
+		p2.setVatAmount(new java.math.BigDecimal("26.03"));
+		p2.setVersion(3L);
 
 		var p3 = new Product();
 		p3.setId(3L);
@@ -312,6 +511,9 @@ public class ProductControllerTest {
 		p3.setDescription("Keyboard description");
 		p3.setTotalPrice(new java.math.BigDecimal("9.58"));
 		p3.setVatRate(new java.math.BigDecimal("0.20"));
+		p3.setNetPrice(new java.math.BigDecimal("7.98"));
+		p3.setVatAmount(new java.math.BigDecimal("1.60"));
+		p3.setVersion(1L);
 
 		return Stream.of(p1, p2, p3);
 	}
@@ -0,0 +1,110 @@
+package dev.epieffe.demo.cart.product;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(
+		classes = {ProductImportReader.class, LocalValidatorFactoryBean.class},
+		webEnvironment = SpringBootTest.WebEnvironment.NONE
+)
+public class ProductImportReaderTest {
+
+	@Autowired
+	private ProductImportReader reader;
+
+	@Test
+	void readCsv_shouldAcceptValidRowsAndRejectInvalidRows() throws InvalidProductImportException {
+		String csv = """
+				id,name,description,totalPrice,vatRate
+				,iPhone,"Apple smartphone, with \"\"quotes\"\"",999.99,0.22
+				7,Apple Watch,Cool smartwatch,150,0.21
+				,,Missing name,10,0.22
+				,Broken price,Not a number,abc,0.22
+
+				,Playstation 5,Gaming console,-1,0.22
+				,Samsung A17,Medium budget smartphone,400,0.22
+				""";
+		Rows rows = read(csv, ProductImportReader.Format.CSV);
+
+		assertEquals(List.of(1L, 2L, 6L), rows.acceptedRows);
+		ProductImportRow iPhone = rows.accepted.getFirst();
+		assertNull(iPhone.id());
+		assertEquals("iPhone", iPhone.name());
+		assertEquals("Apple smartphone, with \"quotes\"", iPhone.description());
+		assertEquals(new BigDecimal("999.99"), iPhone.totalPrice());
+		assertEquals(new BigDecimal("0.22"), iPhone.vatRate());
+		assertEquals(7L, rows.accepted.get(1).id());
+
+		assertEquals(List.of(3L, 4L, 5L), rows.rejectedRows);
+		assertEquals("Product name must be provided", rows.errors.getFirst());
+		assertEquals("Product totalPrice must greater than zero", rows.errors.get(2));
+	}
+
+	@Test
+	void readNdjson_shouldAcceptValidRowsAndRejectInvalidRows() throws InvalidProductImportException {
+		String ndjson = """
+				{"name":"iPhone","description":"Apple smartphone","totalPrice":999.99,"vatRate":0.22}
+				{"id":7,"name":"Apple Watch","description":"Cool smartwatch","totalPrice":150,"vatRate":0.21}
+				{"name":"Broken
+				{"name":"Too precise","description":"Invalid price","totalPrice":1.001,"vatRate":0.22}
+
+				{"name":"Too large","description":"Invalid price","totalPrice":123456789012345,"vatRate":0.22}
+				""";
+		Rows rows = read(ndjson, ProductImportReader.Format.NDJSON);
+
+		assertEquals(List.of(1L, 2L), rows.acceptedRows);
+		assertEquals(new BigDecimal("999.99"), rows.accepted.getFirst().totalPrice());
+		assertEquals(7L, rows.accepted.get(1).id());
+
+		assertEquals(List.of(3L, 4L, 5L), rows.rejectedRows);
+		assertEquals("Invalid totalPrice", rows.errors.get(1));
+		assertEquals("Product totalPrice is too large", rows.errors.get(2));
+	}
+
+	@Test
+	void readCsvWithUnterminatedQuote_shouldRejectRow() throws InvalidProductImportException {
+		String csv = """
+				id,name,description,totalPrice,vatRate
+				,"Unterminated,Apple smartphone,999.99,0.22
+				""";
+		Rows rows = read(csv, ProductImportReader.Format.CSV);
+		assertEquals(List.of(), rows.acceptedRows);
+		assertEquals(List.of(1L), rows.rejectedRows);
+	}
+
+	private Rows read(String input, ProductImportReader.Format format) throws InvalidProductImportException {
+		var rows = new Rows();
+		reader.read(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), format, rows);
+		return rows;
+	}
+
+	private static class Rows implements ProductImportReader.RowHandler {
+		private final List<Long> acceptedRows = new ArrayList<>();
+		private final List<ProductImportRow> accepted = new ArrayList<>();
+		private final List<Long> rejectedRows = new ArrayList<>();
+		private final List<String> errors = new ArrayList<>();
+
+		@Override
+		public void accept(long row, ProductImportRow product) {
+			acceptedRows.add(row);
+			accepted.add(product);
+		}
+
+		@Override
+		public void reject(long row, String error) {
+			rejectedRows.add(row);
+			errors.add(error);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package dev.epieffe.demo.cart.product;
+
+import com.jayway.jsonpath.JsonPath;
+import dev.epieffe.demo.cart.UseDockerDatabase;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+		"cart.products.search-engine.enabled=true",
+		"cart.products.search-engine.refresh-delay=10ms"
+})
+@AutoConfigureMockMvc
+@UseDockerDatabase
+class ProductSearchEngineIT {
+
+	private static final String NAME = "engine it";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ProductSearchEngine searchEngine;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Test
+	void searchProducts_shouldFollowProductWrites() throws Exception {
+		createProduct("Engine IT Keyboard", 100);
+		int mouse = createProduct("Engine IT Mouse", 30);
+		int monitor = createProduct("Engine IT Monitor", 250);
+		awaitSearch(slice -> slice.getNumberOfElements() == 3);
+
+		double hits = registry.get("cart.products.search.engine.searches").tag("result", "hit").counter().count();
+		mockMvc.perform(get("/api/products").param("name", NAME).param("sort", "totalPrice,desc").param("size", "2"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "true"))
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].name").value("Engine IT Monitor"))
+				.andExpect(jsonPath("$[0].totalPrice").value(250))
+				.andExpect(jsonPath("$[0].netPrice").value(204.92))
+				.andExpect(jsonPath("$[1].name").value("Engine IT Keyboard"));
+		mockMvc.perform(get("/api/products").param("name", NAME).param("minPrice", "30").param("maxPrice", "250"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "false"))
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].name").value("Engine IT Keyboard"));
+		double newHits = registry.get("cart.products.search.engine.searches").tag("result", "hit").counter().count();
+		assertTrue(newHits >= hits + 2, "Searches should be served from memory");
+
+		// Updates and deletions are applied to the products in memory
+		mockMvc.perform(put("/api/products/" + mouse).contentType(MediaType.APPLICATION_JSON).content(json("Engine IT Mouse", 500)))
+				.andExpect(status().isOk());
+		mockMvc.perform(delete("/api/products/" + monitor))
+				.andExpect(status().isNoContent());
+		awaitSearch(slice -> slice.getNumberOfElements() == 2);
+		mockMvc.perform(get("/api/products").param("name", NAME).param("sort", "totalPrice,desc"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].name").value("Engine IT Mouse"))
+				.andExpect(jsonPath("$[0].totalPrice").value(500))
+				.andExpect(jsonPath("$[1].name").value("Engine IT Keyboard"));
+	}
+
+	private int createProduct(String name, int totalPrice) throws Exception {
+		MvcResult result = mockMvc.perform(post("/api/products").contentType(MediaType.APPLICATION_JSON).content(json(name, totalPrice)))
+				.andExpect(status().isCreated())
+				.andReturn();
+		return JsonPath.read(result.getResponse().getContentAsString(), "$.id");
+	}
+
+	private static String json(String name, int totalPrice) {
+		return """
+				{"name": "%s", "description": "Search engine test product", "totalPrice": %d, "vatRate": 0.22}
+				""".formatted(name, totalPrice);
+	}
+
+	private void awaitSearch(Predicate<Slice<Product>> condition) throws InterruptedException {
+		var search = new ProductSearch(NAME, null, null, null);
+		for (int i = 0; i < 100; i++) {
+			Slice<Product> slice = searchEngine.search(search, PageRequest.of(0, 10));
+			if (slice != null && condition.test(slice)) {
+				return;
+			}
+			Thread.sleep(100);
+		}
+		fail("Products in memory were not updated");
+	}
+}
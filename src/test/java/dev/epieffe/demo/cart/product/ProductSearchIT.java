@@ -0,0 +1,215 @@
+package dev.epieffe.demo.cart.product;
+
+import dev.epieffe.demo.cart.UseDockerDatabase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@UseDockerDatabase
+@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_CLASS, scripts = "/sql/populate_products.sql")
+class ProductSearchIT {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Test
+	void searchProductsByName_shouldMatchSubstring() throws Exception {
+		mockMvc.perform(get("/api/products").param("name", "SUNG").param("sort", "id"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].id").value(1))
+				.andExpect(jsonPath("$[1].id").value(5));
+	}
+
+	@Test
+	void searchProductsByNameWithWildcards_shouldMatchLiterally() throws Exception {
+		mockMvc.perform(get("/api/products").param("name", "i_hone"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(0));
+	}
+
+	@Test
+	void searchProductsByText_shouldMatchAllWords() throws Exception {
+		mockMvc.perform(get("/api/products").param("text", "apple smartphone"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].id").value(4))
+				.andExpect(jsonPath("$[1].id").value(6));
+
+		mockMvc.perform(get("/api/products").param("text", "apple camera -good"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].id").value(4));
+	}
+
+	@Test
+	void searchProductsByText_shouldSortByRelevance() throws Exception {
+		mockMvc.perform(get("/api/products").param("text", "apple or camera"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(3))
+				.andExpect(jsonPath("$[2].id").value(2));
+
+		// An explicit sort replaces relevance
+		mockMvc.perform(get("/api/products").param("text", "apple or camera").param("sort", "totalPrice"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].id").value(2));
+	}
+
+	@Test
+	void searchProducts_shouldPaginateWithCursors() throws Exception {
+		MvcResult result = mockMvc.perform(get("/api/products").param("minPrice", "300").param("sort", "totalPrice,desc").param("size", "2"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "true"))
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].id").value(4))
+				.andExpect(jsonPath("$[1].id").value(6))
+				.andReturn();
+		String cursor = result.getResponse().getHeader("X-Next-Cursor");
+
+		// The cursor keeps the sort of the first page
+		result = mockMvc.perform(get("/api/products").param("minPrice", "300").param("cursor", cursor).param("size", "2"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "true"))
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].id").value(1))
+				.andExpect(jsonPath("$[1].id").value(3))
+				.andReturn();
+		cursor = result.getResponse().getHeader("X-Next-Cursor");
+
+		mockMvc.perform(get("/api/products").param("minPrice", "300").param("cursor", cursor).param("size", "2"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "false"))
+				.andExpect(header().doesNotExist("X-Next-Cursor"))
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].id").value(5));
+	}
+
+	@Test
+	void searchProductsByName_shouldPaginateWithCursors() throws Exception {
+		MvcResult result = mockMvc.perform(get("/api/products").param("name", "samsung").param("sort", "name").param("size", "1"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "true"))
+				.andExpect(jsonPath("$[0].id").value(5))
+				.andReturn();
+		String cursor = result.getResponse().getHeader("X-Next-Cursor");
+
+		mockMvc.perform(get("/api/products").param("name", "samsung").param("cursor", cursor).param("size", "1"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "false"))
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].id").value(1));
+	}
+
+	@Test
+	void searchProductsAfterCursor_shouldUseKeysetIndex() {
+		List<String> plan = explain("""
+				SELECT id FROM product
+				WHERE total_price <= ? AND (total_price < ? OR id < 4)
+				ORDER BY total_price DESC, id DESC LIMIT 3
+				""", new BigDecimal("899.99"), new BigDecimal("899.99"));
+		assertUsesIndex(plan, "product_total_price_id_idx");
+	}
+
+	@Test
+	void searchProductsWithFields_shouldReturnOnlyRequestedFields() throws Exception {
+		MvcResult result = mockMvc.perform(get("/api/products").param("fields", "name").param("sort", "totalPrice,desc").param("size", "2"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Has-Next", "true"))
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].name").value("iPhone 16"))
+				.andExpect(jsonPath("$[0].id").doesNotExist())
+				.andExpect(jsonPath("$[0].totalPrice").doesNotExist())
+				.andExpect(jsonPath("$[1].name").value("iPhone 15"))
+				.andReturn();
+		String cursor = result.getResponse().getHeader("X-Next-Cursor");
+
+		mockMvc.perform(get("/api/products").param("fields", "id,description").param("cursor", cursor).param("size", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].id").value(1))
+				.andExpect(jsonPath("$[0].description").value("Powerful Android smartphone"))
+				.andExpect(jsonPath("$[0].name").doesNotExist());
+
+		// Full-text search results are still sorted by relevance
+		mockMvc.perform(get("/api/products").param("text", "apple or camera").param("fields", "id"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(3))
+				.andExpect(jsonPath("$[2].id").value(2));
+	}
+
+	@Test
+	void findProjectedBy_shouldOnlyLoadRequestedColumns() {
+		Slice<Product> slice = productRepository.findProjectedBy(Specification.unrestricted(),
+				EnumSet.of(ProductField.NAME), PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "totalPrice")));
+		Product product = slice.getContent().getFirst();
+		assertEquals(4L, product.getId());
+		assertEquals("iPhone 16", product.getName());
+		assertEquals(0, new BigDecimal("1099").compareTo(product.getTotalPrice()));
+		assertNull(product.getDescription());
+		assertNull(product.getVatRate());
+		assertTrue(slice.hasNext());
+	}
+
+	@Test
+	void searchProductsByName_shouldUseTrigramIndex() {
+		List<String> plan = explain("SELECT id FROM product WHERE lower(name) LIKE ? ESCAPE '\\'", "%sung%");
+		assertUsesIndex(plan, "product_name_trgm_idx");
+	}
+
+	@Test
+	void searchProductsByText_shouldUseFullTextIndex() {
+		List<String> plan = explain("""
+				SELECT id FROM product
+				WHERE to_tsvector('simple', name || ' ' || description) @@ websearch_to_tsquery('simple', ?)
+				""", "apple smartphone");
+		assertUsesIndex(plan, "product_text_search_idx");
+	}
+
+	/**
+	 * Explains the query with sequential scans disabled, since the test table is too small for an index scan
+	 * to be cheaper. The plan falls back to a sequential scan anyway if no index can be used.
+	 */
+	private List<String> explain(String sql, Object... parameters) {
+		return transactionTemplate.execute(tx -> {
+			jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+			return jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, parameters);
+		});
+	}
+
+	private static void assertUsesIndex(List<String> plan, String index) {
+		assertTrue(plan.stream().anyMatch(line -> line.contains(index)), () -> String.join("\n", plan));
+	}
+}
@@ -1,23 +1,36 @@
 package dev.epieffe.demo.cart.product;
 
+import dev.epieffe.demo.cart.util.PreconditionFailedException;
+import dev.epieffe.demo.cart.util.PriceUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest(
-		classes = ProductService.class,
+		classes = {ProductService.class, SimpleMeterRegistry.class},
 		webEnvironment = SpringBootTest.WebEnvironment.NONE
 )
 public class ProductServiceTest {
@@ -25,31 +38,65 @@ public class ProductServiceTest {
 	@Autowired
 	ProductService productService;
 
+	@Autowired
+	MeterRegistry registry;
+
 	@MockitoBean
 	ProductRepository productRepository;
 
 	@ParameterizedTest
 	@MethodSource("productRequestsProvider")
 	void createProduct_shouldMapProduct(ProductRequest request) {
-		when(productRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+		when(productRepository.save(any())).thenAnswer(i -> {
+			Product product = i.getArgument(0);
+			product.setId(1L);
+			return product;
+		});
 		Product p = productService.createProduct(request);
 		assertEquals(request.name(), p.getName());
 		assertEquals(request.description(), p.getDescription());
 		assertEquals(request.totalPrice(), p.getTotalPrice());
 		assertEquals(request.vatRate(), p.getVatRate());
+		assertEquals(PriceUtil.computeNetPrice(request.totalPrice(), request.vatRate()), p.getNetPrice());
+		assertEquals(PriceUtil.computeVatAmount(request.totalPrice(), request.vatRate()), p.getVatAmount());
 	}
 
 	@ParameterizedTest
 	@MethodSource("productRequestsProvider")
-	void updateProduct_shouldMapProduct(ProductRequest request) {
+	void updateProduct_shouldMapProduct(ProductRequest request) throws PreconditionFailedException {
 		when(productRepository.save(any())).thenAnswer(i -> i.getArgument(0));
 		when(productRepository.findById(eq(1L))).thenReturn(Optional.of(new Product()));
-		Product p = productService.updateProduct(1L, request).orElse(null);
+		Product p = productService.updateProduct(1L, request, null).orElse(null);
 		assertNotNull(p);
 		assertEquals(request.name(), p.getName());
 		assertEquals(request.description(), p.getDescription());
 		assertEquals(request.totalPrice(), p.getTotalPrice());
 		assertEquals(request.vatRate(), p.getVatRate());
+		assertEquals(PriceUtil.computeNetPrice(request.totalPrice(), request.vatRate()), p.getNetPrice());
+		assertEquals(PriceUtil.computeVatAmount(request.totalPrice(), request.vatRate()), p.getVatAmount());
+	}
+
+	@Test
+	void updateProductWithUnexpectedVersion_shouldThrow() {
+		var product = new Product();
+		product.setVersion(3L);
+		when(productRepository.findById(eq(1L))).thenReturn(Optional.of(product));
+		ProductRequest request = productRequestsProvider().findFirst().orElseThrow();
+		assertThrows(PreconditionFailedException.class, () -> productService.updateProduct(1L, request, Set.of(1L, 2L)));
+		verify(productRepository, never()).save(any());
+	}
+
+	@Test
+	void searchProducts_shouldTimeQueryByFilters() {
+		when(productRepository.findBy(any(Specification.class), any())).thenReturn(new SliceImpl<>(List.of()));
+		var search = new ProductSearch("phone", null, new BigDecimal("100"), null);
+		productService.searchProducts(search, ProductField.ALL, PageRequest.of(0, 20));
+		long count = registry.get("cart.products.search.phase")
+				.tag("phase", "query")
+				.tag("filters", "name+maxPrice")
+				.tag("pagination", "offset")
+				.timer().count();
+		assertEquals(1, count);
 	}
 
 	static Stream<ProductRequest> productRequestsProvider() {
@@ -11,10 +11,12 @@ import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -75,8 +77,8 @@ class ProductsApiIT {
 				.andExpect(jsonPath("$.description").value("High quality mechanical keyboard"))
 				.andExpect(jsonPath("$.totalPrice").value(100))
 				.andExpect(jsonPath("$.vatRate").value(0.22))
-				.andExpect(jsonPath("$.netPrice").isNumber())
-				.andExpect(jsonPath("$.vatAmount").isNumber());
+				.andExpect(jsonPath("$.netPrice").value(81.97))
+				.andExpect(jsonPath("$.vatAmount").value(18.03));
 	}
 
 	@Test
@@ -159,6 +161,60 @@ class ProductsApiIT {
 				.andExpect(jsonPath("$.vatAmount").isNumber());
 	}
 
+	@Test
+	void conditionalRequests_shouldFollowProductVersion() throws Exception {
+		String postJson = """
+				{
+					"name": "Keyboard",
+					"description": "Mechanical keyboard",
+					"totalPrice": 80,
+					"vatRate": 0.20
+				}
+				""";
+		MvcResult result = mockMvc.perform(post("/api/products")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(postJson))
+				.andExpect(status().isCreated())
+				.andReturn();
+		Integer id = JsonPath.read(result.getResponse().getContentAsString(), "$.id");
+		String created = "\"" + id + "-0\"";
+		String updated = "\"" + id + "-1\"";
+		String search = mockMvc.perform(get("/api/products").param("name", "Keyboard"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("ETag");
+
+		// The product is not modified
+		mockMvc.perform(get("/api/products/" + id).header("If-None-Match", created))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string("ETag", created));
+		mockMvc.perform(get("/api/products").param("name", "Keyboard").header("If-None-Match", search))
+				.andExpect(status().isNotModified());
+
+		// Update the product if not modified since it was created
+		String putJson = """
+				{
+					"name": "Expensive Keyboard",
+					"description": "High quality mechanical keyboard",
+					"totalPrice": 100,
+					"vatRate": 0.22
+				}
+				""";
+		mockMvc.perform(put("/api/products/" + id).header("If-Match", created).contentType(MediaType.APPLICATION_JSON).content(putJson))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", updated));
+		mockMvc.perform(put("/api/products/" + id).header("If-Match", created).contentType(MediaType.APPLICATION_JSON).content(postJson))
+				.andExpect(status().isPreconditionFailed());
+
+		// Clients with the created product get the updated one
+		mockMvc.perform(get("/api/products/" + id).header("If-None-Match", created))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", updated))
+				.andExpect(jsonPath("$.name").value("Expensive Keyboard"));
+		mockMvc.perform(get("/api/products").param("name", "Keyboard").header("If-None-Match", search))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", not(search)));
+	}
+
 	@Test
 	void deleteNonExistingProduct_shouldReturnNoContent() throws Exception {
 		mockMvc.perform(delete("/api/products/9999"))
@@ -195,4 +251,64 @@ class ProductsApiIT {
 		mockMvc.perform(get("/api/products/" + id))
 				.andExpect(status().isNotFound());
 	}
+
+	@Test
+	void importProducts_shouldCreateAndUpdateProducts() throws Exception {
+		// Create a product to update
+		String postJson = """
+				{
+					"name": "Expensive Keyboard",
+					"description": "High quality mechanical keyboard",
+					"totalPrice": 100,
+					"vatRate": 0.22
+				}
+				""";
+		MvcResult result = mockMvc.perform(post("/api/products")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(postJson))
+				.andExpect(status().isCreated())
+				.andReturn();
+		Integer id = JsonPath.read(result.getResponse().getContentAsString(), "$.id");
+
+		String csv = """
+				id,name,description,totalPrice,vatRate
+				%d,Cheap Keyboard,Membrane keyboard,20,0.22
+				,Mouse,Wireless mouse,30,0.22
+				999999,Unknown,Product that does not exist,10,0.22
+				,Monitor,,-1,0.22
+				,Webcam,HD webcam,50,0.10
+				""".formatted(id);
+		mockMvc.perform(post("/api/products/import").contentType("text/csv").content(csv))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(2))
+				.andExpect(jsonPath("$.updated").value(1))
+				.andExpect(jsonPath("$.rejected").value(2))
+				.andExpect(jsonPath("$.rejections[0].row").value(3))
+				.andExpect(jsonPath("$.rejections[0].error").value("Product not found: 999999"))
+				.andExpect(jsonPath("$.rejections[1].row").value(4));
+
+		// The existing product is updated
+		mockMvc.perform(get("/api/products/" + id))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", "\"" + id + "-1\""))
+				.andExpect(jsonPath("$.name").value("Cheap Keyboard"))
+				.andExpect(jsonPath("$.totalPrice").value(20))
+				.andExpect(jsonPath("$.netPrice").value(16.39))
+				.andExpect(jsonPath("$.vatAmount").value(3.61));
+
+		// New products are created
+		mockMvc.perform(get("/api/products").param("name", "Webcam"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].netPrice").value(45.45))
+				.andExpect(jsonPath("$[0].vatAmount").value(4.55));
+
+		// Ids generated after the import do not clash with imported ids
+		for (int i = 0; i < 60; i++) {
+			mockMvc.perform(post("/api/products")
+							.contentType(MediaType.APPLICATION_JSON)
+							.content(postJson))
+					.andExpect(status().isCreated());
+		}
+	}
 }
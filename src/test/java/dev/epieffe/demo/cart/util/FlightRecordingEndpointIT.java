@@ -0,0 +1,92 @@
+package dev.epieffe.demo.cart.util;
+
+import dev.epieffe.demo.cart.UseDockerDatabase;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Serves the actuator endpoints on the application port, so that MockMvc reaches them
+@SpringBootTest(properties = {"management.server.port=", "management.endpoints.web.exposure.include=flightrecording"})
+@AutoConfigureMockMvc
+@UseDockerDatabase
+@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_CLASS, scripts = "/sql/populate_products.sql")
+class FlightRecordingEndpointIT {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void recording_shouldCaptureServiceEvents(@TempDir Path dir) throws Exception {
+		mockMvc.perform(post("/actuator/flightrecording")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"maxAge\": \"1m\", \"maxSize\": \"10MB\"}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.state").value("RUNNING"))
+				.andExpect(jsonPath("$.maxSize").value(10 * 1024 * 1024));
+
+		String json = """
+				{"shippingAddress": "via Roma, 5", "products": [{"productId": 1, "quantity": 2}, {"productId": 2, "quantity": 1}]}
+				""";
+		mockMvc.perform(post("/api/orders").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andExpect(status().isCreated());
+		mockMvc.perform(get("/api/products").param("name", "samsung").param("maxPrice", "1000"))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(delete("/actuator/flightrecording"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.state").value("STOPPED"));
+		byte[] dump = mockMvc.perform(get("/actuator/flightrecording"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsByteArray();
+		Path file = Files.write(dir.resolve("recording.jfr"), dump);
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+		assertRecorded(events, "dev.epieffe.demo.cart.OrderCreation",
+				e -> e.getInt("products") == 2 && e.getLong("quantity") == 3);
+		assertRecorded(events, "dev.epieffe.demo.cart.Phase",
+				e -> e.getString("operation").equals("cart.orders.create.phase") && e.getString("phase").equals("commit")
+						&& e.getString("tags").equals("cart.size=2-5"));
+		assertRecorded(events, "dev.epieffe.demo.cart.CacheLookup",
+				e -> e.getString("cache").equals("cart.orders.product.cache") && e.getInt("keys") == 2);
+		assertRecorded(events, "dev.epieffe.demo.cart.ProductSearch",
+				e -> e.getString("filters").equals("name+maxPrice") && e.getString("source").equals("database"));
+		assertRecorded(events, "dev.epieffe.demo.cart.TransactionCommit",
+				e -> e.getString("transaction").endsWith("OrderService.createOrder") && !e.getBoolean("readOnly"));
+		assertTrue(events.stream().noneMatch(e -> e.getEventType().getName().equals("jdk.InitialEnvironmentVariable")
+						|| e.getEventType().getName().equals("jdk.InitialSystemProperty")
+						|| e.getEventType().getName().equals("jdk.JVMInformation")),
+				"Environment variables, system properties and JVM arguments must not be recorded");
+	}
+
+	@Test
+	void start_shouldRejectUnknownSettings() throws Exception {
+		mockMvc.perform(post("/actuator/flightrecording")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"settings\": \"unknown\"}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	private static void assertRecorded(List<RecordedEvent> events, String name, Predicate<RecordedEvent> matching) {
+		assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals(name) && matching.test(e)),
+				() -> "No matching " + name + " event recorded");
+	}
+}
@@ -0,0 +1,104 @@
+package dev.epieffe.demo.cart.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Property-based checks that {@link Money} produces exactly the same results as the
+ * {@link BigDecimal} implementation in {@link PriceUtil}.
+ */
+public class MoneyTest {
+
+	private static final int SAMPLES = 200_000;
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 42, 20260218})
+	void netPriceAndVatAmount_shouldMatchBigDecimal(long seed) {
+		var random = new SplittableRandom(seed);
+		for (int i = 0; i < SAMPLES; i++) {
+			long totalCents = randomCents(random);
+			int rateUnits = randomRateUnits(random);
+			assertMatchesBigDecimal(totalCents, rateUnits);
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {7, 1337})
+	void multipliedPrices_shouldMatchBigDecimal(long seed) {
+		var random = new SplittableRandom(seed);
+		for (int i = 0; i < SAMPLES; i++) {
+			long unitCents = random.nextLong(1, 10_000_000);
+			int quantity = random.nextInt(1, 10_000);
+			long totalCents = Money.multiply(unitCents, quantity);
+			BigDecimal expected = Money.fromCents(unitCents).multiply(BigDecimal.valueOf(quantity));
+			assertEquals(expected, Money.fromCents(totalCents));
+			assertMatchesBigDecimal(totalCents, randomRateUnits(random));
+		}
+	}
+
+	@Test
+	void roundingBoundaries_shouldMatchBigDecimal() {
+		// Totals whose net price falls exactly on half a cent, or right next to it
+		for (int rateUnits : new int[] {400, 1000, 2000, 2200, 2500, 10000}) {
+			for (long netMillis = 1; netMillis < 100_000; netMillis++) {
+				long totalCents = netMillis * (10_000 + rateUnits) / 100_000;
+				for (long delta = -1; delta <= 1; delta++) {
+					if (totalCents + delta > 0) {
+						assertMatchesBigDecimal(totalCents + delta, rateUnits);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void largeAmounts_shouldMatchBigDecimal() {
+		long[] totals = {Long.MAX_VALUE / 10_000, Long.MAX_VALUE / 10_000 + 1, 9_999_999_999_999_999L, Long.MAX_VALUE / 2};
+		for (long totalCents : totals) {
+			for (int rateUnits : new int[] {1, 2200, 99_999_999}) {
+				assertMatchesBigDecimal(totalCents, rateUnits);
+			}
+		}
+	}
+
+	@Test
+	void conversions_shouldRoundTrip() {
+		assertEquals(99_999L, Money.toCents(new BigDecimal("999.99")));
+		assertEquals(15_000L, Money.toCents(new BigDecimal("150")));
+		assertEquals(new BigDecimal("150.00"), Money.fromCents(15_000L));
+		assertEquals(2200, Money.toRateUnits(new BigDecimal("0.22")));
+		assertEquals(new BigDecimal("0.2200"), Money.fromRateUnits(2200));
+	}
+
+	private static void assertMatchesBigDecimal(long totalCents, int rateUnits) {
+		BigDecimal totalPrice = Money.fromCents(totalCents);
+		BigDecimal vatRate = Money.fromRateUnits(rateUnits);
+		BigDecimal expectedNet = PriceUtil.computeNetPrice(totalPrice, vatRate);
+		BigDecimal expectedVat = PriceUtil.computeVatAmount(totalPrice, vatRate);
+		String message = "total=" + totalPrice + ", rate=" + vatRate;
+		assertEquals(expectedNet, Money.fromCents(Money.netPrice(totalCents, rateUnits)), message);
+		assertEquals(expectedVat, Money.fromCents(Money.vatAmount(totalCents, rateUnits)), message);
+	}
+
+	private static long randomCents(SplittableRandom random) {
+		// Mix small prices, where rounding matters most, with large ones
+		return switch (random.nextInt(3)) {
+			case 0 -> random.nextLong(1, 10_000);
+			case 1 -> random.nextLong(1, 100_000_000);
+			default -> random.nextLong(1, 10_000_000_000_000_000L);
+		};
+	}
+
+	private static int randomRateUnits(SplittableRandom random) {
+		// Mostly realistic rates with two decimal digits, sometimes arbitrary rates with four
+		return random.nextBoolean()
+				? random.nextInt(1, 101) * 100
+				: random.nextInt(1, 100_000);
+	}
+}
@@ -0,0 +1,217 @@
+package dev.epieffe.demo.cart.util;
+
+import dev.epieffe.demo.cart.UseDockerDatabase;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.flywaydb.core.Flyway;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.autoconfigure.JdbcConnectionDetails;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistrar;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.DoublePredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Uses a second database on the same server as a stand-in for a read replica, holding a different version of
+ * the same product, so that each response tells which database served it.
+ * <p>
+ * The replication functions and the {@code pg_stat_wal_receiver} view of the stand-in are shadowed by the ones in
+ * its {@code recovery_stub} schema, which come before {@code pg_catalog} in its search path. They report the
+ * replication state held in the {@code recovery_stub.state} table, not in recovery unless a test changes it.
+ */
+@SpringBootTest(properties = {
+		"cart.datasource.replicas.enabled=true",
+		"cart.datasource.replicas.check-interval=100ms"
+})
+@AutoConfigureMockMvc
+@UseDockerDatabase
+class ReadReplicaIT {
+
+	private static final String REPLICA_DATABASE = "cart_demo_replica_it";
+	private static final long PRODUCT_ID = 900_001;
+	private static final String RECOVERY_STUB = """
+			CREATE SCHEMA IF NOT EXISTS recovery_stub;
+			CREATE TABLE IF NOT EXISTS recovery_stub.state (
+				in_recovery boolean NOT NULL,
+				receiver_status text,
+				receive_lsn pg_lsn,
+				replay_lsn pg_lsn,
+				replay_timestamp timestamptz
+			);
+			CREATE OR REPLACE FUNCTION recovery_stub.pg_is_in_recovery() RETURNS boolean
+				LANGUAGE sql AS 'SELECT in_recovery FROM recovery_stub.state';
+			CREATE OR REPLACE FUNCTION recovery_stub.pg_last_wal_receive_lsn() RETURNS pg_lsn
+				LANGUAGE sql AS 'SELECT receive_lsn FROM recovery_stub.state';
+			CREATE OR REPLACE FUNCTION recovery_stub.pg_last_wal_replay_lsn() RETURNS pg_lsn
+				LANGUAGE sql AS 'SELECT replay_lsn FROM recovery_stub.state';
+			CREATE OR REPLACE FUNCTION recovery_stub.pg_last_xact_replay_timestamp() RETURNS timestamptz
+				LANGUAGE sql AS 'SELECT replay_timestamp FROM recovery_stub.state';
+			CREATE OR REPLACE VIEW recovery_stub.pg_stat_wal_receiver AS
+				SELECT receiver_status AS status FROM recovery_stub.state WHERE receiver_status IS NOT NULL;
+			ALTER DATABASE %s SET search_path = recovery_stub, pg_catalog, public;
+			""".formatted(REPLICA_DATABASE);
+	private static final String SET_REPLICATION_STATE = """
+			INSERT INTO recovery_stub.state (in_recovery, receiver_status, receive_lsn, replay_lsn, replay_timestamp)
+			VALUES (?, ?, ?::pg_lsn, ?::pg_lsn, now() - ?::interval)
+			""";
+	private static final String UPSERT_PRODUCT = """
+			INSERT INTO product (id, name, description, total_price, vat_rate, net_price, vat_amount)
+			VALUES (?, ?, 'Replication test product', 100, 0.22, 81.97, 18.03)
+			ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name
+			""";
+
+	@TestConfiguration
+	static class StandInReplica {
+
+		@Bean
+		DynamicPropertyRegistrar replicaProperties(JdbcConnectionDetails primary) {
+			String url = replicaUrl(primary.getJdbcUrl());
+			var jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(primary.getJdbcUrl(), primary.getUsername(), primary.getPassword()));
+			Integer exists = jdbcTemplate.queryForObject("SELECT count(*) FROM pg_database WHERE datname = ?", Integer.class, REPLICA_DATABASE);
+			if (exists == null || exists == 0) {
+				jdbcTemplate.execute("CREATE DATABASE " + REPLICA_DATABASE);
+			}
+			Flyway.configure()
+					.dataSource(url, primary.getUsername(), primary.getPassword())
+					.schemas("public")
+					// Same as the service, so that indexes can be created concurrently
+					.configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+					.load()
+					.migrate();
+			new JdbcTemplate(new DriverManagerDataSource(url, primary.getUsername(), primary.getPassword())).execute(RECOVERY_STUB);
+			return registry -> {
+				registry.add("cart.datasource.replicas.urls", () -> url);
+				registry.add("cart.datasource.replicas.username", primary::getUsername);
+				registry.add("cart.datasource.replicas.password", primary::getPassword);
+			};
+		}
+	}
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private JdbcConnectionDetails primary;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@BeforeEach
+	void setUp() throws InterruptedException {
+		new JdbcTemplate(dataSource).update(UPSERT_PRODUCT, PRODUCT_ID, "Primary version");
+		replica().update(UPSERT_PRODUCT, PRODUCT_ID, "Replica version");
+		setReplicationState(false, null, null, null, "0s");
+		awaitLag(lag -> lag == 0);
+	}
+
+	@Test
+	void getProduct_shouldReadFromReplica() throws Exception {
+		double replicaReads = reads("replica");
+		mockMvc.perform(get("/api/products/" + PRODUCT_ID))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.name").value("Replica version"));
+		mockMvc.perform(get("/api/products").param("name", "version").param("fields", "name"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].name").value("Replica version"));
+		assertEquals(replicaReads + 2, reads("replica"));
+	}
+
+	@Test
+	void getProductAfterWrite_shouldReadFromPrimary() throws Exception {
+		MvcResult result = mockMvc.perform(post("/api/products").contentType(MediaType.APPLICATION_JSON).content("""
+						{"name": "Written product", "description": "Replication test product", "totalPrice": 10, "vatRate": 0.22}
+						"""))
+				.andExpect(status().isCreated())
+				.andReturn();
+		Cookie cookie = result.getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+		assertNotNull(cookie);
+
+		double primaryReads = reads("primary");
+		mockMvc.perform(get("/api/products/" + PRODUCT_ID).cookie(cookie))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.name").value("Primary version"));
+		assertEquals(primaryReads + 1, reads("primary"));
+	}
+
+	@Test
+	void getProductFromDisconnectedReplica_shouldReadFromPrimary() throws Exception {
+		// Without a WAL receiver the replica has replayed all it received, however old it is
+		setReplicationState(true, null, "0/3000000", "0/3000000", "1h");
+		awaitLag(Double::isNaN);
+		assertReadFromPrimary();
+	}
+
+	@Test
+	void getProductFromLaggingReplica_shouldReadFromPrimary() throws Exception {
+		setReplicationState(true, "streaming", "0/3000100", "0/3000000", "10s");
+		awaitLag(lag -> lag > 5);
+		assertReadFromPrimary();
+	}
+
+	private void assertReadFromPrimary() throws Exception {
+		double primaryReads = reads("primary");
+		mockMvc.perform(get("/api/products/" + PRODUCT_ID))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.name").value("Primary version"));
+		assertEquals(primaryReads + 1, reads("primary"));
+	}
+
+	private void setReplicationState(
+			boolean inRecovery,
+			@Nullable String receiverStatus,
+			@Nullable String receiveLsn,
+			@Nullable String replayLsn,
+			String replayAge
+	) {
+		JdbcTemplate replica = replica();
+		replica.update("DELETE FROM recovery_stub.state");
+		replica.update(SET_REPLICATION_STATE, inRecovery, receiverStatus, receiveLsn, replayLsn, replayAge);
+	}
+
+	private void awaitLag(DoublePredicate expected) throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			if (expected.test(registry.get("cart.datasource.replica.lag").gauge().value())) {
+				return;
+			}
+			Thread.sleep(100);
+		}
+		fail("The replica lag is " + registry.get("cart.datasource.replica.lag").gauge().value());
+	}
+
+	private JdbcTemplate replica() {
+		return new JdbcTemplate(new DriverManagerDataSource(replicaUrl(primary.getJdbcUrl()), primary.getUsername(), primary.getPassword()));
+	}
+
+	private double reads(String target) {
+		return registry.get("cart.datasource.reads").tag("target", target).counter().count();
+	}
+
+	private static String replicaUrl(String primaryUrl) {
+		return primaryUrl.replaceFirst("^(jdbc:postgresql://[^/]+/)[^?]*", "$1" + REPLICA_DATABASE);
+	}
+}
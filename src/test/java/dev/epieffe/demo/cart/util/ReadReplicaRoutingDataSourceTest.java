@@ -0,0 +1,135 @@
+package dev.epieffe.demo.cart.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import jakarta.servlet.http.Cookie;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReadReplicaRoutingDataSourceTest {
+
+	private final DataSource primary = mock(DataSource.class);
+	private final DataSource replica0 = mock(DataSource.class);
+	private final DataSource replica1 = mock(DataSource.class);
+	private final Connection primaryConnection = mock(Connection.class);
+	private final Connection replica0Connection = mock(Connection.class);
+	private final Connection replica1Connection = mock(Connection.class);
+
+	private ReadReplicas replicas;
+	private ReadReplicaRoutingDataSource dataSource;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		when(primary.getConnection()).thenReturn(primaryConnection);
+		when(replica0.getConnection()).thenReturn(replica0Connection);
+		when(replica1.getConnection()).thenReturn(replica1Connection);
+		var registry = new SimpleMeterRegistry();
+		replicas = new ReadReplicas(List.of(replica0, replica1), Duration.ofSeconds(1), Duration.ofSeconds(1), registry);
+		replicas.updateLag(0, 0);
+		replicas.updateLag(1, 0.5);
+		dataSource = new ReadReplicaRoutingDataSource(primary, replicas, registry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void getConnection_shouldUsePrimaryOutsideReadOnlyTransactions() throws SQLException {
+		assertSame(primaryConnection, dataSource.getConnection());
+	}
+
+	@Test
+	void getConnectionForReadOnlyTransaction_shouldAlternateReplicas() throws SQLException {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		Connection first = dataSource.getConnection();
+		Connection second = dataSource.getConnection();
+		assertSame(first == replica0Connection ? replica1Connection : replica0Connection, second);
+		assertSame(first, dataSource.getConnection());
+	}
+
+	@Test
+	void getConnectionForReadOnlyTransaction_shouldSkipLaggingReplicas() throws SQLException {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		replicas.updateLag(1, 1.5);
+		assertSame(replica0Connection, dataSource.getConnection());
+		assertSame(replica0Connection, dataSource.getConnection());
+
+		// Replicas that could not be checked are not used either
+		replicas.updateLag(0, Double.NaN);
+		assertSame(primaryConnection, dataSource.getConnection());
+
+		replicas.updateLag(1, 0.1);
+		assertSame(replica1Connection, dataSource.getConnection());
+	}
+
+	@Test
+	void getConnectionForReadOnlyTransaction_shouldSkipUnreachableReplicas() throws SQLException {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		when(replica0.getConnection()).thenThrow(new SQLException("Connection refused"));
+		when(replica1.getConnection()).thenThrow(new SQLException("Connection refused"));
+		assertSame(primaryConnection, dataSource.getConnection());
+
+		// Until the next lag check
+		doReturn(replica0Connection).when(replica0).getConnection();
+		assertSame(primaryConnection, dataSource.getConnection());
+		replicas.updateLag(0, 0);
+		assertSame(replica0Connection, dataSource.getConnection());
+	}
+
+	@Test
+	void getConnectionForReadOnlyTransaction_shouldUsePrimaryAfterClientWrite() throws Exception {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		var filter = new ReadYourWritesFilter(Duration.ofSeconds(5));
+
+		var write = new MockHttpServletRequest("POST", "/api/products");
+		var response = new MockHttpServletResponse();
+		assertSame(primaryConnection, filterAndGetConnection(filter, write, response));
+		Cookie cookie = response.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+		assertNotNull(cookie);
+		assertEquals(5, cookie.getMaxAge());
+
+		var read = new MockHttpServletRequest("GET", "/api/products/1");
+		read.setCookies(cookie);
+		assertSame(primaryConnection, filterAndGetConnection(filter, read, new MockHttpServletResponse()));
+
+		read = new MockHttpServletRequest("GET", "/api/products/1");
+		assertNotSame(primaryConnection, filterAndGetConnection(filter, read, new MockHttpServletResponse()));
+	}
+
+	private Connection filterAndGetConnection(ReadYourWritesFilter filter, MockHttpServletRequest request,
+			MockHttpServletResponse response) throws Exception {
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+		var connection = new AtomicReference<Connection>();
+		filter.doFilter(request, response, (req, res) -> {
+			try {
+				connection.set(dataSource.getConnection());
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		return connection.get();
+	}
+}
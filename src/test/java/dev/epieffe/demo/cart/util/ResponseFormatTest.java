@@ -0,0 +1,28 @@
+package dev.epieffe.demo.cart.util;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ResponseFormatTest {
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', nullValues = "null", value = {
+			"null | JSON",
+			"*/* | JSON",
+			"application/json | JSON",
+			"application/cbor | CBOR",
+			"application/x-jackson-smile | SMILE",
+			"application/cbor, */* | CBOR",
+			"application/json;q=0.9, application/x-jackson-smile | SMILE",
+			"application/cbor;q=0.5, application/json | JSON",
+			"application/cbor;q=0.5, */* | JSON",
+			"application/cbor;q=0, */* | JSON",
+			"text/html | JSON",
+			"not a media type | JSON"
+	})
+	void negotiate_shouldPickBestAcceptedFormat(String accept, ResponseFormat expected) {
+		assertEquals(expected, ResponseFormat.negotiate(accept));
+	}
+}
@@ -0,0 +1,72 @@
+package dev.epieffe.demo.cart.util;
+
+import dev.epieffe.demo.cart.UseDockerDatabase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "cart.sql.statistics.response-headers=true")
+@AutoConfigureMockMvc
+@UseDockerDatabase
+@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_CLASS, scripts = "/sql/populate_products.sql")
+class SqlStatisticsIT {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	void requests_shouldReturnSqlStatistics() throws Exception {
+		mockMvc.perform(get("/api/products/1"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(SqlStatisticsFilter.STATEMENTS_HEADER, "1"))
+				.andExpect(header().string(SqlStatisticsFilter.ROWS_HEADER, "1"))
+				.andExpect(header().string("Server-Timing", startsWith("db;dur=")))
+				.andExpect(header().doesNotExist(SqlStatisticsFilter.N_PLUS_ONE_HEADER));
+		mockMvc.perform(get("/api/products").param("name", "no such product"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(SqlStatisticsFilter.ROWS_HEADER, "0"));
+
+		String json = """
+				{"shippingAddress": "via Roma, 5", "products": [{"productId": 1, "quantity": 2}, {"productId": 2, "quantity": 1}]}
+				""";
+		mockMvc.perform(post("/api/orders").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andExpect(status().isCreated())
+				.andExpect(header().exists(SqlStatisticsFilter.STATEMENTS_HEADER))
+				.andExpect(header().doesNotExist(SqlStatisticsFilter.N_PLUS_ONE_HEADER));
+	}
+
+	@Test
+	void repeatedStatements_shouldBeSuspectedNPlusOne() {
+		var jdbcTemplate = new JdbcTemplate(dataSource);
+		SqlStatistics statistics = SqlStatistics.start();
+		try {
+			for (long id = 1; id <= 4; id++) {
+				jdbcTemplate.queryForObject("SELECT name FROM product WHERE id = ?", String.class, id);
+			}
+			jdbcTemplate.queryForList("SELECT id FROM product WHERE id IN (1, 2)", Long.class);
+		} finally {
+			SqlStatistics.stop();
+		}
+		assertEquals(5, statistics.statements());
+		assertEquals(6, statistics.rows());
+		assertEquals(List.of(new SqlStatistics.Repeated("SELECT name FROM product WHERE id = ?", 4)), statistics.repeated(3));
+	}
+}
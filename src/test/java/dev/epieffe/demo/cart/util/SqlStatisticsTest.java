@@ -0,0 +1,40 @@
+package dev.epieffe.demo.cart.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SqlStatisticsTest {
+
+	@Test
+	void shape_shouldReplaceLiteralsAndWhitespace() {
+		assertEquals("select p1_0.id from product p1_0 where p1_0.id = ? and p1_0.name = ?",
+				SqlStatistics.shape("select p1_0.id\n\tfrom product p1_0\n\twhere p1_0.id = 42 and p1_0.name = 'it''s'"));
+		assertEquals("select * from product where total_price < ?", SqlStatistics.shape("select * from product where total_price < 19.99"));
+	}
+
+	@Test
+	void repeated_shouldGroupStatementsByShape() {
+		var statistics = new SqlStatistics();
+		for (int i = 0; i < 3; i++) {
+			statistics.statement("select * from order_product where order_id = " + i, 1000);
+		}
+		statistics.statement("select * from orders where id = ?", 1000);
+		statistics.statement("select * from orders where id = ?", 1000);
+		statistics.batch(1000);
+		statistics.batch(1000);
+		statistics.batch(1000);
+		statistics.fetch(1, 500);
+
+		assertEquals(8, statistics.statements());
+		assertEquals(1, statistics.rows());
+		assertEquals(8500, statistics.time().toNanos());
+		assertEquals(List.of(
+				new SqlStatistics.Repeated("select * from order_product where order_id = ?", 3),
+				new SqlStatistics.Repeated("select * from orders where id = ?", 2)
+		), statistics.repeated(2));
+		assertEquals(List.of(), statistics.repeated(4));
+	}
+}
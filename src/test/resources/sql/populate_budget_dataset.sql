@@ -0,0 +1,22 @@
+TRUNCATE TABLE orders CASCADE;
+TRUNCATE TABLE product CASCADE;
+
+-- 5000 products, ids 1 to 5000
+INSERT INTO product (id, name, description, total_price, vat_rate, net_price, vat_amount)
+SELECT i, 'Budget product ' || i, 'Product ' || i || ' of the performance budget dataset',
+	p.total_price, 0.22, round(p.total_price / 1.22, 2), p.total_price - round(p.total_price / 1.22, 2)
+FROM generate_series(1, 5000) i
+CROSS JOIN LATERAL (SELECT (10 + i % 990)::numeric + 0.99 AS total_price) p;
+
+-- 500 orders of 5 products each, with ids far from the ones generated by the sequence
+INSERT INTO orders (id, shipping_address, created_at, total_price, vat_amount)
+SELECT 10000000 + i, 'via Roma, ' || i, timestamp '2026-01-01' + i * interval '1 minute', 54.95, 9.90
+FROM generate_series(1, 500) i;
+
+INSERT INTO order_product (id, order_id, product_id, quantity, name, total_price, vat_amount, vat_rate)
+SELECT 20000000 + i * 5 + j, 10000000 + i, (i * 7 + j * 997) % 5000 + 1, 1, 'Budget product', 10.99, 1.98, 0.22
+FROM generate_series(1, 500) i, generate_series(0, 4) j;
+
+ANALYZE product;
+ANALYZE orders;
+ANALYZE order_product;
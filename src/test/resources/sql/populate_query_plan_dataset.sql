@@ -0,0 +1,28 @@
+TRUNCATE TABLE orders CASCADE;
+TRUNCATE TABLE product CASCADE;
+
+-- 100000 products, ids 1 to 100000, of 8 brands and 5 kinds
+INSERT INTO product (id, name, description, total_price, vat_rate, net_price, vat_amount)
+SELECT i, b.brand || ' model ' || i, 'A ' || k.kind || ' made by ' || b.brand,
+	p.total_price, 0.22, round(p.total_price / 1.22, 2), p.total_price - round(p.total_price / 1.22, 2)
+FROM generate_series(1, 100000) i
+CROSS JOIN LATERAL (SELECT (ARRAY['Samsung', 'Apple', 'Xiaomi', 'Sony', 'Lenovo', 'Asus', 'Huawei', 'Nokia'])[i % 8 + 1] AS brand) b
+CROSS JOIN LATERAL (SELECT (ARRAY['smartphone', 'laptop', 'tablet', 'headphones', 'monitor'])[i % 5 + 1] AS kind) k
+CROSS JOIN LATERAL (SELECT (10 + i % 1990)::numeric + 0.99 AS total_price) p;
+
+-- 50000 orders of 5 products each, one per minute, with ids far from the ones generated by the sequence
+INSERT INTO orders (id, shipping_address, created_at, total_price, vat_amount)
+SELECT 10000000 + i, 'via Roma, ' || i, timestamp '2026-01-01' + i * interval '1 minute', (50 + i % 950)::numeric + 0.95, 9.90
+FROM generate_series(1, 50000) i;
+
+INSERT INTO order_product (id, order_id, product_id, quantity, name, total_price, vat_amount, vat_rate)
+SELECT 20000000 + i * 5 + j, 10000000 + i, (i * 7 + j * 19997) % 100000 + 1, 1, 'Ordered product', 10.99, 1.98, 0.22
+FROM generate_series(1, 50000) i, generate_series(0, 4) j;
+
+-- So that the rows created by the tests running after this dataset get new ids
+SELECT setval('product_seq', (SELECT max(id) FROM product));
+SELECT setval('order_seq', (SELECT max(id) FROM order_product));
+
+ANALYZE product;
+ANALYZE orders;
+ANALYZE order_product;